@@ -81,6 +81,7 @@ public class AddressBookTest {
 
     @AfterClass(alwaysRun = true)
     public void tearDown() throws Exception {
+        webClient.close();
         webDriver.shutdown();
     }
 
@@ -83,39 +83,51 @@ public class PetClientProxyTest {
     public void testBasicPostGenerate() throws Throwable {
         logger.info("running test: testBasicPostGenerate");
         ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
-        Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
-        assertNotNull(pet);
+        try {
+            Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
+            assertNotNull(pet);
+        } finally {
+            WebProxy.close(client);
+        }
     }
 
     @Test(timeOut = 20000)
     public void testBasicGetGenerate() throws Throwable {
         logger.info("running test: testBasicGetGenerate");
         ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
-        Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
-        assertNotNull(pet);
+        try {
+            Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
+            assertNotNull(pet);
 
-        pet = client.get("myPet");
-        assertNotNull(pet);
+            pet = client.get("myPet");
+            assertNotNull(pet);
 
-        String petString = client.getString("myPet");
-        assertEquals(petString, "Pet{name='pouetpouet'}");
+            String petString = client.getString("myPet");
+            assertEquals(petString, "Pet{name='pouetpouet'}");
+        } finally {
+            WebProxy.close(client);
+        }
     }
 
     @Test(timeOut = 20000)
     public void testDelete() throws Throwable {
         logger.info("running test: testDelete");
         ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
-        Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
-        assertNotNull(pet);
-
-        pet = client.delete("myPet");
-        assertNotNull(pet);
-
         try {
-            client.getString("myPet");
-            fail("No exception");
-        } catch (WebException ex) {
-            assertEquals(ex.getClass(), WebException.class);
+            Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
+            assertNotNull(pet);
+
+            pet = client.delete("myPet");
+            assertNotNull(pet);
+
+            try {
+                client.getString("myPet");
+                fail("No exception");
+            } catch (WebException ex) {
+                assertEquals(ex.getClass(), WebException.class);
+            }
+        } finally {
+            WebProxy.close(client);
         }
     }
 
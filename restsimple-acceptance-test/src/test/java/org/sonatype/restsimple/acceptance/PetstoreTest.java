@@ -78,15 +78,19 @@ public class PetstoreTest {
         logger.info("running test: testPut");
 
         WebClient webClient = new WebAHCClient(serviceDefinition);
-        Map<String, String> m = new HashMap<String, String>();
-        m.put("Content-Type", acceptHeader);
+        try {
+            Map<String, String> m = new HashMap<String, String>();
+            m.put("Content-Type", acceptHeader);
 
-        Pet pet = (Pet) webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}");
-        assertNotNull(pet);
+            Pet pet = (Pet) webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}");
+            assertNotNull(pet);
 
-        pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
+            pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
 
-        assertNotNull(pet);
+            assertNotNull(pet);
+        } finally {
+            webClient.close();
+        }
     }
 
     @Test(timeOut = 20000)
@@ -94,20 +98,24 @@ public class PetstoreTest {
         logger.info("running test: testPut");
 
         WebClient webClient = new WebAHCClient(serviceDefinition);
-        Map<String, String> m = new HashMap<String, String>();
-        m.put("Content-Type", acceptHeader);
-
-        Pet pet = (Pet) webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}");
-        assertNotNull(pet);
-
-        pet = (Pet) webClient.clientOf(targetUrl + "/deletePet/myPet").headers(m).delete();
-        assertNotNull(pet);
-
         try {
-            pet = (Pet) webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get();
-            fail("No exception");
-        } catch (WebException ex) {
-            assertEquals(ex.getClass(), WebException.class);
+            Map<String, String> m = new HashMap<String, String>();
+            m.put("Content-Type", acceptHeader);
+
+            Pet pet = (Pet) webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}");
+            assertNotNull(pet);
+
+            pet = (Pet) webClient.clientOf(targetUrl + "/deletePet/myPet").headers(m).delete();
+            assertNotNull(pet);
+
+            try {
+                pet = (Pet) webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get();
+                fail("No exception");
+            } catch (WebException ex) {
+                assertEquals(ex.getClass(), WebException.class);
+            }
+        } finally {
+            webClient.close();
         }
     }
 
@@ -116,15 +124,19 @@ public class PetstoreTest {
         logger.info("running test: testPut");
 
         WebClient webClient = new WebAHCClient(serviceDefinition);
-        Map<String, String> m = new HashMap<String, String>();
-        m.put("Content-Type", acceptHeader);
+        try {
+            Map<String, String> m = new HashMap<String, String>();
+            m.put("Content-Type", acceptHeader);
 
-        Pet pet = webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}", Pet.class);
-        assertNotNull(pet);
+            Pet pet = webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}", Pet.class);
+            assertNotNull(pet);
 
-        pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
+            pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
 
-        assertNotNull(pet);
+            assertNotNull(pet);
+        } finally {
+            webClient.close();
+        }
     }
 
     @Test(timeOut = 20000)
@@ -132,15 +144,19 @@ public class PetstoreTest {
         logger.info("running test: testPut");
 
         WebClient webClient = new WebAHCClient();
-        Map<String, String> m = new HashMap<String, String>();
-        m.put("Content-Type", acceptHeader);
-        m.put("Accept", acceptHeader);
+        try {
+            Map<String, String> m = new HashMap<String, String>();
+            m.put("Content-Type", acceptHeader);
+            m.put("Accept", acceptHeader);
 
-        Pet pet = webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}", Pet.class);
-        assertNotNull(pet);
+            Pet pet = webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post("{\"name\":\"pouetpouet\"}", Pet.class);
+            assertNotNull(pet);
 
-        pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
+            pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
 
-        assertNotNull(pet);
+            assertNotNull(pet);
+        } finally {
+            webClient.close();
+        }
     }
 }
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.sonatype.restsimple.api;
 
+import org.sonatype.restsimple.spi.LazyMap;
+
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
@@ -20,6 +22,9 @@ import java.util.Map;
  * This class encapsulates the REST request, e.g the headers, the form parameters, the path and it's value. It also
  * contains the request's body typed object. The deserialization occurs before an {@link Action#action(ActionContext)}
  * gets invoked.
+ * <p/>
+ * The headers, parameters and matrix parameters may be passed as {@link LazyMap}, so they are only built if the
+ * {@link Action} reads them.
  */
 public class ActionContext<T> {
 
@@ -30,6 +35,7 @@ public class ActionContext<T> {
     private final ServiceDefinition.METHOD methodName;
     private final Map<String,String> pathParams;
     private final T object;
+    private String[] pathParamNames;
 
     public ActionContext(ServiceDefinition.METHOD methodName,
                          Map<String, Collection<String>> headers,
@@ -38,10 +44,10 @@ public class ActionContext<T> {
                          Map<String,String> pathParams,
                          T object) {
 
-        this.paramsStrings = paramsStrings;
+        this.paramsStrings = unmodifiable(paramsStrings);
         this.methodName = methodName;
         this.inputStream = inputStream;
-        this.headers = headers;
+        this.headers = unmodifiable(headers);
         this.object = object;
         this.matrixStrings = Collections.emptyMap();
         this.pathParams = pathParams;
@@ -54,14 +60,32 @@ public class ActionContext<T> {
                          InputStream inputStream,
                          Map<String,String> pathParams,
                          T object) {
+        this(methodName, headers, paramsStrings, matrixStrings, inputStream, pathParams, null, object);
+    }
+
+    /**
+     * Create an ActionContext whose {@link #pathParams()} may contain more than the template variables.
+     * @param pathParamNames the names of the template variables, in the order they are declared in the path. They are
+     * used by the positional accessors such as {@link #pathParam(int)}. If null, the keys of the path parameters are
+     * used.
+     */
+    public ActionContext(ServiceDefinition.METHOD methodName,
+                         Map<String, Collection<String>> headers,
+                         Map<String, Collection<String>> paramsStrings,
+                         Map<String, Collection<String>> matrixStrings,
+                         InputStream inputStream,
+                         Map<String,String> pathParams,
+                         String[] pathParamNames,
+                         T object) {
 
-        this.paramsStrings = paramsStrings;
+        this.paramsStrings = unmodifiable(paramsStrings);
         this.methodName = methodName;
         this.inputStream = inputStream;
-        this.headers = headers;
+        this.headers = unmodifiable(headers);
         this.object = object;
-        this.matrixStrings = matrixStrings;
+        this.matrixStrings = unmodifiable(matrixStrings);
         this.pathParams = pathParams;
+        this.pathParamNames = pathParamNames;
     }
 
     /**
@@ -70,7 +94,7 @@ public class ActionContext<T> {
      * @return a {@link Map} of parameters.
      */
     public Map<String, Collection<String>> matrixString() {
-        return Collections.unmodifiableMap(matrixStrings);
+        return matrixStrings;
 
     }
 
@@ -80,7 +104,7 @@ public class ActionContext<T> {
      * @return a {@link Map} of parameters.
      */
     public Map<String, Collection<String>> paramsString() {
-        return Collections.unmodifiableMap(paramsStrings);
+        return paramsStrings;
 
     }
 
@@ -90,11 +114,12 @@ public class ActionContext<T> {
      * @return a {@link Map} of request headers
      */
     public Map<String, Collection<String>> headers() {
-        return Collections.unmodifiableMap(headers);
+        return headers;
     }
 
     /**
-     * Return the request's input stream. If there is a body, use this method to read it.
+     * Return the request's input stream. If there is a body, use this method to read it. When
+     * {@link ServiceHandler#isStreaming()} is true, this is the request's own stream and the body hasn't been read.
      *
      * @return the request's input stream
      */
@@ -119,6 +144,69 @@ public class ActionContext<T> {
         return pathParams;
     }
 
+    /**
+     * Return the value of a path parameter, using its position in the path, e.g <tt>pathParam(1)</tt> returns the value
+     * of <tt>{id}</tt> for <tt>/{book}/{id}</tt>.
+     * @param index the position of the path parameter, starting at 0
+     * @return the value of the path parameter
+     * @throws IndexOutOfBoundsException if there is no such path parameter
+     */
+    public String pathParam(int index) {
+        String[] names = pathParamNames();
+        if (index < 0 || index >= names.length) {
+            throw new IndexOutOfBoundsException("No path parameter at " + index + ": " + pathParams);
+        }
+        return pathParams.get(names[index]);
+    }
+
+    /**
+     * Return the number of path parameters that can be read by their position, using {@link #pathParam(int)}.
+     * @return the number of path parameters declared in the path.
+     */
+    public int pathParamCount() {
+        return pathParamNames().length;
+    }
+
+    /**
+     * Return the value of a path parameter as an int, using its position in the path.
+     * @param index the position of the path parameter, starting at 0
+     * @return the value of the path parameter
+     * @throws ActionException with a 400 status code if the value isn't an int
+     */
+    public int pathParamAsInt(int index) {
+        return toInt(String.valueOf(index), pathParam(index));
+    }
+
+    /**
+     * Return the value of a path parameter as a long, using its position in the path.
+     * @param index the position of the path parameter, starting at 0
+     * @return the value of the path parameter
+     * @throws ActionException with a 400 status code if the value isn't a long
+     */
+    public long pathParamAsLong(int index) {
+        return toLong(String.valueOf(index), pathParam(index));
+    }
+
+    /**
+     * Return the value of a path parameter as an int.
+     * @param name the name of the path parameter
+     * @return the value of the path parameter
+     * @throws ActionException with a 400 status code if the path parameter is missing or isn't an int
+     */
+    public int pathParamAsInt(String name) {
+        return toInt(name, pathParams.get(name));
+    }
+
+    /**
+     * Return the value of a path parameter as a long.
+     * @param name the name of the path parameter
+     * @return the value of the path parameter
+     * @throws ActionException with a 400 status code if the path parameter is missing or isn't a long
+     */
+    public long pathParamAsLong(String name) {
+        return toLong(name, pathParams.get(name));
+    }
+
     /**
      * Return the T defined by the {@link ServiceHandler#consumeMediaType()};
      *
@@ -127,4 +215,34 @@ public class ActionContext<T> {
     public T get() {
         return object;
     }
+
+    private String[] pathParamNames() {
+        if (pathParamNames == null) {
+            pathParamNames = pathParams.keySet().toArray(new String[pathParams.size()]);
+        }
+        return pathParamNames;
+    }
+
+    private static int toInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ActionException(400, "Invalid path parameter " + name + ": " + value);
+        }
+    }
+
+    private static long toLong(String name, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ActionException(400, "Invalid path parameter " + name + ": " + value);
+        }
+    }
+
+    private static Map<String, Collection<String>> unmodifiable(Map<String, Collection<String>> map) {
+        if (map == null || map instanceof LazyMap) {
+            return map;
+        }
+        return Collections.unmodifiableMap(map);
+    }
 }
@@ -100,7 +100,11 @@ public class DefaultServiceDefinition implements ServiceDefinition {
 
                 //TODO: Could have several
                 if (serviceHandler.consumeMediaType() == null && mediaTypeToConsume.size() > 0) {
-                    serviceHandler.consumeWith(mediaTypeToConsume.get(0), null);
+                    if (serviceHandler.isStreaming()) {
+                        serviceHandler.consumeStreaming(mediaTypeToConsume.get(0));
+                    } else {
+                        serviceHandler.consumeWith(mediaTypeToConsume.get(0), null);
+                    }
                 }
             }
         }
@@ -121,7 +125,7 @@ public class DefaultServiceDefinition implements ServiceDefinition {
     @Override
     public List<MediaType> mediaToProduce() {
         if (mediaTypeToProduce.isEmpty()) {
-            mediaTypeToProduce.add(new MediaType( "text", "json"));
+            mediaTypeToProduce.add(MediaType.of("text", "json"));
         }
         return Collections.unmodifiableList(mediaTypeToProduce);
     }
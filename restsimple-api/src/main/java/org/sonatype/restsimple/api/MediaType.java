@@ -11,23 +11,50 @@
  *******************************************************************************/
 package org.sonatype.restsimple.api;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
- * Represent a Media type consumed or produced by an {@link Action}.
+ * Represent a Media type consumed or produced by an {@link Action}. A MediaType is immutable, and its string form is
+ * computed once. Use {@link #of(String)} to get the canonical instance of a media type, so instances can be compared
+ * by identity before falling back to {@link #equals(Object)}.
  */
 public final class MediaType {
-    public static MediaType JSON = new MediaType("application","json");
-    public static MediaType XML = new MediaType("application","xml");
-    public static MediaType TEXT = new MediaType("text","plain");
-    public static MediaType HTML = new MediaType("text","html");
-    
+
+    private static final String WILDCARD = "*";
+
+    /**
+     * The maximum number of canonical instances. Past this number {@link #of(String)} returns new instances, so
+     * media types read from requests can't grow the table forever.
+     */
+    private static final int MAX_INTERNED = 1024;
+
+    // Keyed by the strings looked up by of(), and by the canonical form of the media type.
+    private static final ConcurrentMap<String, MediaType> interned = new ConcurrentHashMap<String, MediaType>();
+
+    public static final MediaType JSON = of("application", "json");
+    public static final MediaType XML = of("application", "xml");
+    public static final MediaType TEXT = of("text", "plain");
+    public static final MediaType HTML = of("text", "html");
+
     private final String type;
     private final String subType;
+    private final Map<String, String> parameters;
+
+    // The string form, e.g "application/json;charset=utf-8"
+    private final String mediaType;
+    // The lower case string form, compared by equals()
+    private final String canonical;
+    private final int hash;
 
     /**
      * Create a media type that support wildcard
      */
     public MediaType() {
-        this("*", "*");
+        this(WILDCARD, WILDCARD);
     }
 
     /**
@@ -35,7 +62,7 @@ public final class MediaType {
      * @param type
      */
     public MediaType(String type) {
-        this(type, "*");
+        this(type, WILDCARD);
     }
 
     /**
@@ -44,8 +71,92 @@ public final class MediaType {
      * @param subType  the type, or the last part of "application/json"
      */
     public MediaType(String type, String subType) {
+        this(type, subType, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Create a media type representation with parameters, e.g "text/plain;charset=utf-8"
+     * @param type the type, or first part of "application/json"
+     * @param subType  the type, or the last part of "application/json"
+     * @param parameters the parameters name and value.
+     */
+    public MediaType(String type, String subType, Map<String, String> parameters) {
         this.type = type;
         this.subType = subType;
+        this.parameters = parameters.isEmpty() ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<String, String>(parameters));
+
+        StringBuilder b = new StringBuilder(type).append('/').append(subType);
+        StringBuilder c = new StringBuilder(type.toLowerCase()).append('/').append(subType.toLowerCase());
+        for (Map.Entry<String, String> e : this.parameters.entrySet()) {
+            b.append(';').append(e.getKey()).append('=').append(e.getValue());
+            c.append(';').append(e.getKey().toLowerCase()).append('=').append(e.getValue());
+        }
+        this.mediaType = b.toString();
+        this.canonical = c.toString();
+        this.hash = canonical.hashCode();
+    }
+
+    /**
+     * Return the canonical instance of a media type.
+     * @param mediaType a media type, e.g "application/json" or "text/plain;charset=utf-8"
+     * @return the canonical instance of a media type.
+     * @throws IllegalArgumentException if the media type has no sub type.
+     */
+    public static MediaType of(String mediaType) {
+        MediaType m = interned.get(mediaType);
+        if (m == null) {
+            m = intern(parse(mediaType));
+            if (interned.size() < MAX_INTERNED) {
+                interned.putIfAbsent(mediaType, m);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Return the canonical instance of a media type.
+     * @param type the type, or first part of "application/json"
+     * @param subType  the type, or the last part of "application/json"
+     * @return the canonical instance of a media type.
+     */
+    public static MediaType of(String type, String subType) {
+        String key = type + '/' + subType;
+        MediaType m = interned.get(key);
+        if (m == null) {
+            m = intern(new MediaType(type, subType));
+            if (interned.size() < MAX_INTERNED) {
+                interned.putIfAbsent(key, m);
+            }
+        }
+        return m;
+    }
+
+    private static MediaType intern(MediaType m) {
+        if (interned.size() >= MAX_INTERNED) {
+            MediaType previous = interned.get(m.canonical);
+            return previous != null ? previous : m;
+        }
+        MediaType previous = interned.putIfAbsent(m.canonical, m);
+        return previous != null ? previous : m;
+    }
+
+    private static MediaType parse(String mediaType) {
+        String[] tokens = mediaType.split(";");
+        String range = tokens[0].trim();
+        int slash = range.indexOf('/');
+        if (slash <= 0 || slash == range.length() - 1) {
+            throw new IllegalArgumentException("Invalid media type " + mediaType);
+        }
+
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        for (int i = 1; i < tokens.length; i++) {
+            int equals = tokens[i].indexOf('=');
+            if (equals > 0) {
+                parameters.put(tokens[i].substring(0, equals).trim(), tokens[i].substring(equals + 1).trim());
+            }
+        }
+        return new MediaType(range.substring(0, slash).trim(), range.substring(slash + 1).trim(), parameters);
     }
 
     /**
@@ -64,17 +175,74 @@ public final class MediaType {
         return subType;
     }
 
+    /**
+     * Return the Media's parameters, e.g the charset of "text/plain;charset=utf-8".
+     * @return an unmodifiable {@link Map} of parameters name and value.
+     */
+    public Map<String, String> parameters() {
+        return parameters;
+    }
+
+    /**
+     * Return true if the type is the wildcard, e.g "*&#47;*".
+     * @return true if the type is the wildcard.
+     */
+    public boolean isWildcardType() {
+        return type.equals(WILDCARD);
+    }
+
+    /**
+     * Return true if the sub type is the wildcard, e.g "application/*".
+     * @return true if the sub type is the wildcard.
+     */
+    public boolean isWildcardSubType() {
+        return subType.equals(WILDCARD);
+    }
+
+    /**
+     * Return true if this media type and another one have a media type in common, taking the wildcards into account.
+     * The parameters are not compared.
+     * @param other a {@link MediaType}
+     * @return true if the media types are compatible.
+     */
+    public boolean isCompatible(MediaType other) {
+        if (this == other) {
+            return true;
+        }
+        if (isWildcardType() || other.isWildcardType()) {
+            return true;
+        }
+        if (!type.equalsIgnoreCase(other.type)) {
+            return false;
+        }
+        return isWildcardSubType() || other.isWildcardSubType() || subType.equalsIgnoreCase(other.subType);
+    }
+
     /**
      * Return the complete Media Type.
      * @return
      */
     public String toMediaType(){
-        return type + "/" + subType();
+        return mediaType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MediaType that = (MediaType) o;
+        return hash == that.hash && canonical.equals(that.canonical);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
     @Override
     public String toString() {
-        return toMediaType();
+        return mediaType;
     }
 
-}
\ No newline at end of file
+}
@@ -25,7 +25,8 @@ abstract public class ServiceHandler {
     private final List<MediaType> mediaTypeToProduce = new ArrayList<MediaType>();
     private Class<?> consumerClazz;
     private MediaType consumerMediaType;
-    
+    private boolean streaming;
+
     /**
      * Create a new {@link ServiceHandler}
      *
@@ -88,6 +89,7 @@ abstract public class ServiceHandler {
                 ", mediaTypeToProduce=" + mediaTypeToProduce +
                 ", consumerClazz=" + consumerClazz +
                 ", consumerMediaType=" + consumerMediaType +
+                ", streaming=" + streaming +
                 '}';
     }
 
@@ -99,9 +101,32 @@ abstract public class ServiceHandler {
     public <T> ServiceHandler consumeWith(MediaType mediaType, Class<T> clazz) {
         consumerMediaType = mediaType;
         consumerClazz = clazz;
+        streaming = false;
+        return this;
+    }
+
+    /**
+     *  Pass the request's body to the {@link Action} without reading it. The body isn't unmarshalled, so
+     *  {@link ActionContext#get()} returns null, and the {@link Action} reads it, as it arrives, from
+     *  {@link ActionContext#inputStream()}, for example using a streaming JSON parser. Use it for large payloads
+     *  that shouldn't be held in memory.
+     *  @param mediaType A media type the request's body is expected to be.
+     */
+    public ServiceHandler consumeStreaming(MediaType mediaType) {
+        consumerMediaType = mediaType;
+        consumerClazz = null;
+        streaming = true;
         return this;
     }
 
+    /**
+     * Return true if the request's body is passed to the {@link Action} without being read.
+     * @return true if the request's body is passed to the {@link Action} without being read.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     /**
      * Return the {@link MediaType} used to unmarshall the request's body.
      * @return the {@link MediaType} used to unmarshall the request's body.
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.ServiceDefinition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An on-disk cache of the classes generated from {@link ServiceDefinition}, so they aren't generated again every time
+ * the application starts. Generators name their classes after a {@link #fingerprint(String)} of what they are generated
+ * from; a cached class is stored under its name and a fingerprint of the generator's own bytecode, so upgrading
+ * RestSimple never loads classes generated by an older version. Each file ends with a digest of the class, so a
+ * truncated or corrupt file is ignored and the class generated again.
+ */
+public class GeneratedClassCache {
+
+    // The length of a SHA-1 digest
+    private static final int DIGEST_LENGTH = 20;
+
+    private final File directory;
+
+    private final ConcurrentMap<Class<?>, String> generatorFingerprints = new ConcurrentHashMap<Class<?>, String>();
+
+    /**
+     * Create a cache storing its classes in a directory. The directory is created if it doesn't exist.
+     * @param directory the directory where classes are stored.
+     */
+    public GeneratedClassCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Return the directory where classes are stored.
+     * @return the directory where classes are stored.
+     */
+    public File directory() {
+        return directory;
+    }
+
+    /**
+     * Return the bytecode of a class, or null if the class isn't cached or its file is corrupt.
+     * @param generator the class generating the cached class.
+     * @param className the name of the class.
+     * @return the bytecode of a class, or null if the class isn't cached.
+     */
+    public byte[] get(Class<?> generator, String className) {
+        File file = file(generator, className);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        byte[] content;
+        try {
+            InputStream is = new FileInputStream(file);
+            try {
+                content = read(is);
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (content.length <= DIGEST_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[content.length - DIGEST_LENGTH];
+        System.arraycopy(content, 0, bytes, 0, bytes.length);
+        byte[] digest = new byte[DIGEST_LENGTH];
+        System.arraycopy(content, bytes.length, digest, 0, DIGEST_LENGTH);
+        return MessageDigest.isEqual(digest(bytes), digest) ? bytes : null;
+    }
+
+    /**
+     * Store the bytecode of a class.
+     * @param generator the class that generated the class.
+     * @param className the name of the class.
+     * @param bytes the class bytecode.
+     * @throws IOException if the class can't be stored.
+     */
+    public void put(Class<?> generator, String className, byte[] bytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        // Another node sharing the directory may be reading the file, so write it fully before it shows up.
+        File file = file(generator, className);
+        File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            OutputStream os = new FileOutputStream(tmp);
+            try {
+                os.write(bytes);
+                os.write(digest(bytes));
+            } finally {
+                os.close();
+            }
+            if (!tmp.renameTo(file) && !file.isFile()) {
+                throw new IOException("Unable to create " + file);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Compute a fingerprint, made of hexadecimal characters, of a description.
+     * @param description a description
+     * @return the fingerprint of a description.
+     */
+    public static String fingerprint(String description) {
+        try {
+            return fingerprint(description.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File file(Class<?> generator, String className) {
+        return new File(directory, className + "." + generatorFingerprint(generator).substring(0, 12) + ".class");
+    }
+
+    private String generatorFingerprint(Class<?> generator) {
+        String fingerprint = generatorFingerprints.get(generator);
+        if (fingerprint == null) {
+            fingerprint = "";
+            try {
+                InputStream is = generator.getResourceAsStream("/" + generator.getName().replace('.', '/') + ".class");
+                if (is != null) {
+                    try {
+                        fingerprint = fingerprint(read(is));
+                    } finally {
+                        is.close();
+                    }
+                }
+            } catch (IOException e) {
+                // Fall back to the name
+            }
+            if (fingerprint.length() == 0) {
+                fingerprint = fingerprint(generator.getName());
+            }
+            generatorFingerprints.put(generator, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private static String fingerprint(byte[] bytes) {
+        StringBuilder b = new StringBuilder();
+        for (byte v : digest(bytes)) {
+            b.append(Character.forDigit((v >> 4) & 0xf, 16)).append(Character.forDigit(v & 0xf, 16));
+        }
+        return b.toString();
+    }
+
+    private static byte[] digest(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+}
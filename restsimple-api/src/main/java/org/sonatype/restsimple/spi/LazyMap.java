@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.ActionContext;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An unmodifiable {@link Map} whose content is only built the first time it is read. It is used to pass the headers
+ * and the parameters of a request to an {@link ActionContext}, since most {@link org.sonatype.restsimple.api.Action}
+ * never read them.
+ * <p/>
+ * Like the {@link ActionContext} it belongs to, this class isn't thread safe.
+ */
+public abstract class LazyMap<K, V> extends AbstractMap<K, V> {
+
+    private Map<K, V> map;
+
+    /**
+     * Build the content of the map. Invoked the first time the map is read.
+     * @return the content of the map.
+     */
+    protected abstract Map<K, V> build();
+
+    /**
+     * Build the content of the map now, if it hasn't been read yet. Used when the map will be read by a thread
+     * that can't access what the map is built from.
+     */
+    public void load() {
+        map();
+    }
+
+    private Map<K, V> map() {
+        if (map == null) {
+            map = Collections.unmodifiableMap(build());
+        }
+        return map;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return map().entrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return map().keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return map().values();
+    }
+
+    @Override
+    public V get(Object key) {
+        return map().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map().isEmpty();
+    }
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.MediaType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A media range of an <tt>Accept</tt> header, e.g <tt>application/*;q=0.8</tt>, as defined by RFC 2616 section 14.1.
+ */
+public final class MediaRange {
+
+    private static final String WILDCARD = "*";
+
+    private final MediaType mediaType;
+    private final float quality;
+
+    public MediaRange(String type, String subType, float quality, Map<String, String> parameters) {
+        this.mediaType = new MediaType(type, subType, parameters);
+        this.quality = quality;
+    }
+
+    /**
+     * Parse the media ranges of an <tt>Accept</tt> header, in the order they are declared. Malformed media ranges are
+     * ignored, and a single <tt>*</tt> is read as <tt>*&#47;*</tt>.
+     * @param accept the value of an <tt>Accept</tt> header, e.g <tt>text/html, application/*;q=0.8</tt>
+     * @return the media ranges of the header.
+     */
+    public static List<MediaRange> parse(String accept) {
+        List<MediaRange> ranges = new ArrayList<MediaRange>();
+        if (accept == null) {
+            return ranges;
+        }
+
+        for (String element : split(accept, ',')) {
+            List<String> tokens = split(element, ';');
+            if (tokens.isEmpty()) {
+                continue;
+            }
+
+            String range = tokens.get(0);
+            String type;
+            String subType;
+            int slash = range.indexOf('/');
+            if (range.equals(WILDCARD)) {
+                type = WILDCARD;
+                subType = WILDCARD;
+            } else if (slash > 0 && slash < range.length() - 1) {
+                type = range.substring(0, slash).trim().toLowerCase();
+                subType = range.substring(slash + 1).trim().toLowerCase();
+            } else {
+                continue;
+            }
+            if (type.equals(WILDCARD) && !subType.equals(WILDCARD)) {
+                continue;
+            }
+
+            float quality = 1.0f;
+            boolean valid = true;
+            Map<String, String> parameters = new LinkedHashMap<String, String>();
+            for (int i = 1; i < tokens.size(); i++) {
+                String parameter = tokens.get(i);
+                int equals = parameter.indexOf('=');
+                if (equals <= 0) {
+                    continue;
+                }
+
+                String name = parameter.substring(0, equals).trim().toLowerCase();
+                String value = unquote(parameter.substring(equals + 1).trim());
+                if (name.equals("q")) {
+                    quality = quality(value);
+                    valid = quality >= 0;
+                    // What follows the quality are accept-extensions, not media type parameters.
+                    break;
+                }
+                parameters.put(name, value);
+            }
+
+            if (valid) {
+                ranges.add(new MediaRange(type, subType, quality, parameters));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Return the type, or <tt>*</tt>
+     * @return the type, or <tt>*</tt>
+     */
+    public String type() {
+        return mediaType.type();
+    }
+
+    /**
+     * Return the sub type, or <tt>*</tt>
+     * @return the sub type, or <tt>*</tt>
+     */
+    public String subType() {
+        return mediaType.subType();
+    }
+
+    /**
+     * Return the quality, between 0 and 1. A quality of 0 means the media range is not acceptable.
+     * @return the quality
+     */
+    public float quality() {
+        return quality;
+    }
+
+    /**
+     * Return the media type parameters, without the quality.
+     * @return an unmodifiable {@link Map} of parameters name and value.
+     */
+    public Map<String, String> parameters() {
+        return mediaType.parameters();
+    }
+
+    /**
+     * Return true if a {@link MediaType} belongs to this media range, see {@link MediaType#isCompatible(MediaType)}.
+     * A media range with parameters, e.g <tt>application/json;v=2</tt>, only includes the media types having the same
+     * parameters. The names and values of the parameters are compared ignoring case, and the media type may have more
+     * parameters than the media range.
+     * @param mediaType a {@link MediaType}
+     * @return true if a {@link MediaType} belongs to this media range.
+     */
+    public boolean includes(MediaType mediaType) {
+        if (!this.mediaType.isCompatible(mediaType)) {
+            return false;
+        }
+        for (Map.Entry<String, String> e : this.mediaType.parameters().entrySet()) {
+            if (!e.getValue().equalsIgnoreCase(parameter(mediaType, e.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return how specific this media range is. When several media ranges include a {@link MediaType}, the most
+     * specific one gives its quality.
+     * @return 0 for <tt>*&#47;*</tt>, 1 for <tt>type/*</tt>, 2 for <tt>type/subtype</tt>, plus the number of parameters.
+     */
+    public int specificity() {
+        if (mediaType.isWildcardType()) {
+            return 0;
+        }
+        return (mediaType.isWildcardSubType() ? 1 : 2) + mediaType.parameters().size();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(mediaType.toMediaType());
+        if (quality < 1.0f) {
+            b.append(";q=").append(quality);
+        }
+        return b.toString();
+    }
+
+    private static String parameter(MediaType mediaType, String name) {
+        for (Map.Entry<String, String> e : mediaType.parameters().entrySet()) {
+            if (e.getKey().equalsIgnoreCase(name)) {
+                return unquote(e.getValue());
+            }
+        }
+        return null;
+    }
+
+    private static float quality(String value) {
+        try {
+            float quality = Float.parseFloat(value);
+            return quality >= 0 && quality <= 1 ? quality : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Split a header value, ignoring the separators inside a quoted string, and drop the empty tokens.
+     */
+    private static List<String> split(String value, char separator) {
+        List<String> tokens = new ArrayList<String>();
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : separator;
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && (!quoted || i == value.length())) {
+                String token = value.substring(start, i).trim();
+                if (token.length() > 0) {
+                    tokens.add(token);
+                }
+                start = i + 1;
+            }
+        }
+        return tokens;
+    }
+}
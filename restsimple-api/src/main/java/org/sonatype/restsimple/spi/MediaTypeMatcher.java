@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.MediaType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Select, from a list of {@link MediaType} in order of preference, the one an <tt>Accept</tt> header prefers. Each
+ * media type gets the quality of the most specific {@link MediaRange} including it; the media type with the highest
+ * quality is selected, the first one in the list if several have the same quality.
+ * <p/>
+ * Clients send a few distinct <tt>Accept</tt> headers over and over, so the selection made for an <tt>Accept</tt>
+ * header is remembered, up to {@link #MAX_CACHED_HEADERS} headers. This class is thread safe.
+ */
+public final class MediaTypeMatcher {
+
+    public static final int MAX_CACHED_HEADERS = 256;
+
+    // Cached when no media type is acceptable, a ConcurrentHashMap doesn't hold null.
+    private static final MediaType NONE = new MediaType("", "");
+
+    private final MediaType[] mediaTypes;
+
+    private final ConcurrentMap<String, MediaType> selections = new ConcurrentHashMap<String, MediaType>();
+
+    /**
+     * Create a matcher for a list of {@link MediaType}. The list is copied.
+     * @param mediaTypes the {@link MediaType}, in order of preference.
+     */
+    public MediaTypeMatcher(List<MediaType> mediaTypes) {
+        this.mediaTypes = mediaTypes.toArray(new MediaType[mediaTypes.size()]);
+    }
+
+    /**
+     * Return the {@link MediaType} matched by this object.
+     * @return an unmodifiable list of {@link MediaType}
+     */
+    public List<MediaType> mediaTypes() {
+        return Collections.unmodifiableList(Arrays.asList(mediaTypes));
+    }
+
+    /**
+     * Return true if an <tt>Accept</tt> header accepts one of the {@link MediaType}, or if there are no
+     * {@link MediaType} to choose from.
+     * @param accept the value of the <tt>Accept</tt> header, or null if the request has none.
+     * @return true if the response is acceptable.
+     */
+    public boolean accepts(String accept) {
+        return mediaTypes.length == 0 || select(accept) != null;
+    }
+
+    /**
+     * Select the {@link MediaType} an <tt>Accept</tt> header prefers. A request without an <tt>Accept</tt> header
+     * accepts any media type.
+     * @param accept the value of the <tt>Accept</tt> header, or null if the request has none.
+     * @return the preferred {@link MediaType}, or null if none is acceptable.
+     */
+    public MediaType select(String accept) {
+        if (mediaTypes.length == 0) {
+            return null;
+        }
+        if (accept == null || accept.trim().length() == 0) {
+            return mediaTypes[0];
+        }
+
+        MediaType selected = selections.get(accept);
+        if (selected == null) {
+            selected = select(MediaRange.parse(accept));
+            if (selected == null) {
+                selected = NONE;
+            }
+            if (selections.size() < MAX_CACHED_HEADERS) {
+                selections.put(accept, selected);
+            }
+        }
+        return selected == NONE ? null : selected;
+    }
+
+    private MediaType select(List<MediaRange> ranges) {
+        MediaType selected = null;
+        float selectedQuality = 0;
+        for (MediaType mediaType : mediaTypes) {
+            MediaRange match = null;
+            for (MediaRange range : ranges) {
+                if (range.includes(mediaType) && (match == null || range.specificity() > match.specificity())) {
+                    match = range;
+                }
+            }
+            if (match != null && match.quality() > selectedQuality) {
+                selected = mediaType;
+                selectedQuality = match.quality();
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Return the media range an <tt>Accept</tt> header prefers, regardless of the {@link MediaType} of this object.
+     * @param accept the value of the <tt>Accept</tt> header, or null if the request has none.
+     * @return the acceptable {@link MediaRange} with the highest quality, the first one declared if several have
+     * the same quality, or null.
+     */
+    public static MediaRange preferred(String accept) {
+        MediaRange preferred = null;
+        for (MediaRange range : MediaRange.parse(accept)) {
+            if (range.quality() > 0 && (preferred == null || range.quality() > preferred.quality())) {
+                preferred = range;
+            }
+        }
+        return preferred;
+    }
+}
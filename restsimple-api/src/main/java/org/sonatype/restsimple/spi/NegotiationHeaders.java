@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.MediaType;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The negotiation headers of a route, generated the first time a request to a uri needs it and reused as long as the
+ * route is mapped. The header contains the uri requested, so it is kept for each uri, up to {@link #MAX_CACHED_URIS}
+ * uris. Only the headers of the last {@link NegotiationTokenGenerator} are kept, since an application uses a single
+ * one.
+ */
+final class NegotiationHeaders {
+
+    static final int MAX_CACHED_URIS = 256;
+
+    private final List<MediaType> mediaTypes;
+    private volatile Headers last;
+
+    NegotiationHeaders(List<MediaType> mediaTypes) {
+        this.mediaTypes = mediaTypes;
+    }
+
+    String get(NegotiationTokenGenerator generator, String uri) {
+        Headers h = last;
+        if (h == null || h.generator != generator) {
+            h = new Headers(generator);
+            last = h;
+        }
+
+        String value = h.values.get(uri);
+        if (value == null) {
+            value = generator.generateNegotiationHeader(uri, mediaTypes);
+            if (h.values.size() < MAX_CACHED_URIS) {
+                h.values.putIfAbsent(uri, value);
+            }
+        }
+        return value;
+    }
+
+    private final static class Headers {
+
+        final NegotiationTokenGenerator generator;
+        final ConcurrentMap<String, String> values = new ConcurrentHashMap<String, String>();
+
+        Headers(NegotiationTokenGenerator generator) {
+            this.generator = generator;
+        }
+    }
+}
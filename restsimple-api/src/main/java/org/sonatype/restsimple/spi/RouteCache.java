@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A bounded cache of {@link RouteMatch}, keyed by HTTP method and request's path. Entries are spread over a fixed
+ * number of stripes, each one evicting its least recently used entry once full, so concurrent lookups rarely contend
+ * on the same lock.
+ */
+final class RouteCache {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final Stripe[] stripes;
+
+    RouteCache(int maxSize) {
+        this(maxSize, MAX_STRIPES);
+    }
+
+    RouteCache(int maxSize, int maxStripes) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+
+        int count = Math.min(maxStripes, maxSize);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            // Spread the remainder so the stripes add up to maxSize
+            stripes[i] = new Stripe(maxSize / count + (i < maxSize % count ? 1 : 0));
+        }
+    }
+
+    RouteMatch get(String method, String path) {
+        String key = key(method, path);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    void put(String method, String path, RouteMatch routeMatch) {
+        String key = key(method, path);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, routeMatch);
+        }
+    }
+
+    private static String key(String method, String path) {
+        // Sitebricks passes the method in lower case, the servlet API in upper case.
+        return method.toLowerCase(Locale.ENGLISH) + ' ' + path;
+    }
+
+    private Stripe stripe(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & 0x7fffffff) % stripes.length];
+    }
+
+    private final static class Stripe extends LinkedHashMap<String, RouteMatch> {
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RouteMatch> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.ServiceHandler;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The result of mapping a request to a {@link ServiceHandler} using {@link ServiceHandlerMapper#match(String, String)}.
+ * The path parameters are extracted while the request's path is matched, so they can be passed as it is to
+ * {@link org.sonatype.restsimple.api.ActionContext#pathParams()}
+ */
+public final class RouteMatch {
+
+    private final ServiceHandler serviceHandler;
+    private final Map<String, String> pathParams;
+    private final String[] pathParamNames;
+    private final String template;
+    private final NegotiationHeaders negotiationHeaders;
+    private final MediaTypeMatcher producedMediaTypes;
+
+    public RouteMatch(ServiceHandler serviceHandler, Map<String, String> pathParams, String template) {
+        this(serviceHandler, pathParams, pathParams.keySet().toArray(new String[pathParams.size()]), template,
+                new NegotiationHeaders(serviceHandler.mediaToProduce()),
+                new MediaTypeMatcher(serviceHandler.mediaToProduce()));
+    }
+
+    RouteMatch(ServiceHandler serviceHandler, Map<String, String> pathParams, String[] pathParamNames, String template,
+               NegotiationHeaders negotiationHeaders, MediaTypeMatcher producedMediaTypes) {
+        this.serviceHandler = serviceHandler;
+        this.pathParams = Collections.unmodifiableMap(pathParams);
+        this.pathParamNames = pathParamNames;
+        this.template = template;
+        this.negotiationHeaders = negotiationHeaders;
+        this.producedMediaTypes = producedMediaTypes;
+    }
+
+    /**
+     * Return the matched {@link ServiceHandler}
+     * @return the matched {@link ServiceHandler}
+     */
+    public ServiceHandler serviceHandler() {
+        return serviceHandler;
+    }
+
+    /**
+     * Return the path parameters, in the order they are declared in the template.
+     * @return an unmodifiable {@link Map} of path parameters name and value.
+     */
+    public Map<String, String> pathParams() {
+        return pathParams;
+    }
+
+    /**
+     * Return the names of the template variables, in the order they are declared in the template. The array is shared
+     * by every request matching the same route, and must not be modified.
+     * @return the names of the template variables.
+     */
+    public String[] pathParamNames() {
+        return pathParamNames;
+    }
+
+    /**
+     * Return the template used to match the request's path, e.g <tt>/foo/getPet/{pet}</tt>
+     * @return the template used to match the request's path.
+     */
+    public String template() {
+        return template;
+    }
+
+    /**
+     * Return the {@link MediaTypeMatcher} of the {@link ServiceHandler#mediaToProduce()} of the matched
+     * {@link ServiceHandler}. It is created once per route, when the {@link ServiceHandler} is mapped.
+     * @return the {@link MediaTypeMatcher} of the produced media types.
+     */
+    public MediaTypeMatcher producedMediaTypes() {
+        return producedMediaTypes;
+    }
+
+    /**
+     * Return the value of the {@link NegotiationTokenGenerator#challengedHeaderName()} header for the matched
+     * {@link ServiceHandler}. The value is generated once for each uri, and then shared by every request matching the
+     * same route with the same uri.
+     * @param generator the {@link NegotiationTokenGenerator}
+     * @param uri the uri challenged, e.g the request's path
+     * @return the value of the challenged header.
+     */
+    public String negotiationHeader(NegotiationTokenGenerator generator, String uri) {
+        return negotiationHeaders.get(generator, uri);
+    }
+
+    @Override
+    public String toString() {
+        return "RouteMatch{" +
+                "serviceHandler=" + serviceHandler +
+                ", pathParams=" + pathParams +
+                ", template='" + template + '\'' +
+                '}';
+    }
+}
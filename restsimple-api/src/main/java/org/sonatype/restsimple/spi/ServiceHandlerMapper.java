@@ -12,22 +12,48 @@
 package org.sonatype.restsimple.spi;
 
 import com.google.inject.Singleton;
+import org.sonatype.restsimple.api.ServiceDefinition;
 import org.sonatype.restsimple.api.ServiceHandler;
 import org.sonatype.restsimple.spi.uri.UriTemplate;
+import org.sonatype.restsimple.spi.uri.UriTemplateTrie;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A URI mapper for {@link ServiceHandler}. It is recommended to let Guice inject instance of that class. Having multiple
  * instance can cause mapping issue (not found) if the wrong instance of that class get used.
+ * <p/>
+ * {@link ServiceHandler} can be added and removed while requests are mapped: lookups never lock and always see a
+ * complete routing table.
  */
 @Singleton
 public class ServiceHandlerMapper {
 
-    private final HashMap<ServiceHandlerInfo, ServiceHandler> maps = new HashMap<ServiceHandlerInfo, ServiceHandler>();
+    /**
+     * The routing table currently in use. A {@link Snapshot} is never modified once published, so request threads
+     * read it without locking; writers build a new one and swap it.
+     */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>(Snapshot.EMPTY);
+
+    private final Object writeLock = new Object();
+
+    private final AtomicLong routeCacheHits = new AtomicLong();
+
+    private final AtomicLong routeCacheMisses = new AtomicLong();
+
+    private int routeCacheSize;
 
     public ServiceHandlerMapper() {
     }
@@ -37,9 +63,41 @@ public class ServiceHandlerMapper {
      * @param serviceHandlers the list of {@link ServiceHandler}
      */
     public ServiceHandlerMapper(List<ServiceHandler> serviceHandlers) {
-        for (ServiceHandler s: serviceHandlers) {
-            addServiceHandler("", s);
+        addServiceHandlers("", serviceHandlers);
+    }
+
+    /**
+     * Cache the result of the lookups made using {@link #map(String, String)} and {@link #match(String, String)},
+     * for an exact HTTP method and path. The cache is cleared every time a {@link ServiceHandler} is added or removed.
+     * @param maxSize the maximum number of cached lookups, or 0 to disable the cache.
+     * @return this
+     */
+    public ServiceHandlerMapper withRouteCache(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
         }
+
+        synchronized (writeLock) {
+            routeCacheSize = maxSize;
+            snapshot.set(new Snapshot(snapshot.get().routes, routeCacheSize));
+        }
+        return this;
+    }
+
+    /**
+     * Return the number of lookups answered by the route cache.
+     * @return the number of lookups answered by the route cache.
+     */
+    public long routeCacheHits() {
+        return routeCacheHits.get();
+    }
+
+    /**
+     * Return the number of lookups the route cache could not answer.
+     * @return the number of lookups the route cache could not answer.
+     */
+    public long routeCacheMisses() {
+        return routeCacheMisses.get();
     }
 
     /**
@@ -48,16 +106,47 @@ public class ServiceHandlerMapper {
      * @return this
      */
     public ServiceHandlerMapper addServiceHandler(String path, ServiceHandler serviceHandler) {
+        return addServiceHandlers(path, Collections.singletonList(serviceHandler));
+    }
+
+    /**
+     * Add a list of {@link ServiceHandler}. The routing table is rebuilt once, and all the {@link ServiceHandler}
+     * become visible at the same time.
+     * @param path the path the {@link ServiceHandler}'s path are relative to.
+     * @param serviceHandlers the list of {@link ServiceHandler}
+     * @return this
+     */
+    public ServiceHandlerMapper addServiceHandlers(String path, Collection<ServiceHandler> serviceHandlers) {
+        synchronized (writeLock) {
+            Map<ServiceHandlerInfo, Route> routes = new LinkedHashMap<ServiceHandlerInfo, Route>(snapshot.get().routes);
+            for (ServiceHandler serviceHandler : serviceHandlers) {
+                String method = serviceHandler.getHttpMethod().name().toLowerCase();
+                String template = convert(realPath(path, serviceHandler));
+                routes.put(new ServiceHandlerInfo(method, template), new Route(serviceHandler, new UriTemplate(template)));
+            }
+            snapshot.set(new Snapshot(routes, routeCacheSize));
+        }
+        return this;
+    }
+
+    /**
+     * Add all the {@link ServiceHandler} of a {@link ServiceDefinition}, atomically.
+     * @param serviceDefinition a {@link ServiceDefinition}
+     * @return this
+     */
+    public ServiceHandlerMapper addServiceDefinition(ServiceDefinition serviceDefinition) {
+        return addServiceHandlers(serviceDefinition.path(), serviceDefinition.serviceHandlers());
+    }
+
+    private static String realPath(String path, ServiceHandler serviceHandler) {
         String realPath = serviceHandler.path();
         if (!path.equals("")) {
             realPath = path + (serviceHandler.path().startsWith("/") ? serviceHandler.path() : "/" + serviceHandler.path());
         }
-        
-        maps.put(new ServiceHandlerInfo(serviceHandler.getHttpMethod().name().toLowerCase(), convert(realPath)), serviceHandler);
-        return this;
+        return realPath;
     }
 
-    private String convert(String path) {
+    private static String convert(String path) {
         if (path.equals("/")) {
             return path;
         }
@@ -73,7 +162,7 @@ public class ServiceHandlerMapper {
                 newPath.append("/").append(token);
             }
         }
-        return newPath.toString();
+        return newPath.length() == 0 ? "/" : newPath.toString();
     }
 
     /**
@@ -82,10 +171,46 @@ public class ServiceHandlerMapper {
      * @return this
      */
     public ServiceHandlerMapper removeServiceHandler(ServiceHandler serviceHandler) {
-        maps.remove(serviceHandler.path());
+        return removeServiceHandlers(Collections.singletonList(serviceHandler));
+    }
+
+    /**
+     * Remove a list of {@link ServiceHandler}. The routing table is rebuilt once, and all the {@link ServiceHandler}
+     * stop being mapped at the same time.
+     * @param serviceHandlers the list of {@link ServiceHandler}
+     * @return this
+     */
+    public ServiceHandlerMapper removeServiceHandlers(Collection<ServiceHandler> serviceHandlers) {
+        synchronized (writeLock) {
+            Map<ServiceHandlerInfo, Route> routes = new LinkedHashMap<ServiceHandlerInfo, Route>(snapshot.get().routes);
+            boolean removed = false;
+            for (Iterator<Route> i = routes.values().iterator(); i.hasNext(); ) {
+                ServiceHandler mapped = i.next().serviceHandler;
+                for (ServiceHandler serviceHandler : serviceHandlers) {
+                    if (mapped == serviceHandler) {
+                        i.remove();
+                        removed = true;
+                        break;
+                    }
+                }
+            }
+
+            if (removed) {
+                snapshot.set(new Snapshot(routes, routeCacheSize));
+            }
+        }
         return this;
     }
 
+    /**
+     * Remove all the {@link ServiceHandler} of a {@link ServiceDefinition}, atomically.
+     * @param serviceDefinition a {@link ServiceDefinition}
+     * @return this
+     */
+    public ServiceHandlerMapper removeServiceDefinition(ServiceDefinition serviceDefinition) {
+        return removeServiceHandlers(serviceDefinition.serviceHandlers());
+    }
+
     /**
      * Map the current resource method to its's associated {@link ServiceHandler}
      * @param method The HTTP metod name
@@ -93,22 +218,134 @@ public class ServiceHandlerMapper {
      * @return a {@link ServiceHandler}, or null if not mapped.
      */
     public ServiceHandler map(String method, String path) {
+        Snapshot s = snapshot.get();
+        if (s.cache != null) {
+            RouteMatch routeMatch = match(s, method, path);
+            return routeMatch == null ? null : routeMatch.serviceHandler();
+        }
+
+        UriTemplateTrie<Route> trie = s.trie(method);
+        if (trie == null || path == null) return null;
+
+        Route route = trie.match(normalize(path), null);
+        return route == null ? null : route.serviceHandler;
+    }
+
+    /**
+     * Return the value of the {@link NegotiationTokenGenerator#challengedHeaderName()} header of a mapped
+     * {@link ServiceHandler}, as {@link RouteMatch#negotiationHeader(NegotiationTokenGenerator, String)} does. Use it with
+     * {@link #map(String, String)} when the path parameters aren't needed.
+     * @param serviceHandler a {@link ServiceHandler} returned by {@link #map(String, String)}
+     * @param generator the {@link NegotiationTokenGenerator}
+     * @param uri the uri challenged, e.g the request's path
+     * @return the value of the challenged header, or null if the {@link ServiceHandler} isn't mapped.
+     */
+    public String negotiationHeader(ServiceHandler serviceHandler, NegotiationTokenGenerator generator, String uri) {
+        Route route = snapshot.get().handlers.get(serviceHandler);
+        return route == null ? null : route.negotiationHeaders.get(generator, uri);
+    }
+
+    /**
+     * Map the current resource method to its's associated {@link ServiceHandler}, and extract the path parameters
+     * from the request's path.
+     * @param method The HTTP metod name
+     * @param path The current request's path
+     * @return a {@link RouteMatch}, or null if not mapped.
+     */
+    public RouteMatch match(String method, String path) {
+        return match(snapshot.get(), method, path);
+    }
+
+    private RouteMatch match(Snapshot s, String method, String path) {
+        UriTemplateTrie<Route> trie = s.trie(method);
+        if (trie == null || path == null) return null;
+
+        path = normalize(path);
+        RouteMatch routeMatch;
+        if (s.cache != null) {
+            routeMatch = s.cache.get(method, path);
+            if (routeMatch != null) {
+                routeCacheHits.incrementAndGet();
+                return routeMatch;
+            }
+            routeCacheMisses.incrementAndGet();
+        }
 
-        if (path == null) return null;
+        Map<String, String> pathParams = new LinkedHashMap<String, String>();
+        Route route = trie.match(path, pathParams);
+        if (route == null) return null;
 
+        routeMatch = new RouteMatch(route.serviceHandler, pathParams, route.pathParamNames, route.template.getTemplate(),
+                route.negotiationHeaders, route.producedMediaTypes);
+        if (s.cache != null) {
+            s.cache.put(method, path, routeMatch);
+        }
+        return routeMatch;
+    }
+
+    private static String normalize(String path) {
         // JAXRS remove the / for PathParam, where Sitebricks don't
-        if (!path.startsWith("/")) {
-            path = "/" + path;
+        return path.startsWith("/") ? path : "/" + path;
+    }
+
+    /**
+     * An immutable routing table: one trie per HTTP method, registered under its lower and upper case name. The
+     * route cache, if any, belongs to the snapshot so it is discarded with it.
+     */
+    private final static class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Collections.<ServiceHandlerInfo, Route>emptyMap(), 0);
+
+        final Map<ServiceHandlerInfo, Route> routes;
+        final Map<String, UriTemplateTrie<Route>> tries = new HashMap<String, UriTemplateTrie<Route>>();
+        final Map<ServiceHandler, Route> handlers = new IdentityHashMap<ServiceHandler, Route>();
+        final RouteCache cache;
+
+        Snapshot(Map<ServiceHandlerInfo, Route> routes, int routeCacheSize) {
+            this.routes = routes;
+            this.cache = routeCacheSize > 0 ? new RouteCache(routeCacheSize) : null;
+            for (Map.Entry<ServiceHandlerInfo, Route> e : routes.entrySet()) {
+                if (!handlers.containsKey(e.getValue().serviceHandler)) {
+                    handlers.put(e.getValue().serviceHandler, e.getValue());
+                }
+                String method = e.getKey().method;
+                UriTemplateTrie<Route> trie = tries.get(method);
+                if (trie == null) {
+                    trie = new UriTemplateTrie<Route>();
+                    tries.put(method, trie);
+                    tries.put(method.toUpperCase(), trie);
+                }
+                trie.add(e.getValue().template, e.getValue());
+            }
         }
 
-        final Map<String, String> m = new HashMap<String, String>();
-        for (Map.Entry<ServiceHandlerInfo, ServiceHandler> e : maps.entrySet()) {
-            UriTemplate t = new UriTemplate(e.getKey().path);
-            if (t.match(path, m) && e.getKey().method.equalsIgnoreCase(method)) {
-                return e.getValue();
+        UriTemplateTrie<Route> trie(String method) {
+            if (method == null) return null;
+
+            UriTemplateTrie<Route> trie = tries.get(method);
+            if (trie == null) {
+                trie = tries.get(method.toLowerCase());
             }
+            return trie;
+        }
+    }
+
+    private final static class Route {
+
+        public final ServiceHandler serviceHandler;
+        public final UriTemplate template;
+        public final String[] pathParamNames;
+        public final NegotiationHeaders negotiationHeaders;
+        public final MediaTypeMatcher producedMediaTypes;
+
+        public Route(ServiceHandler serviceHandler, UriTemplate template) {
+            this.serviceHandler = serviceHandler;
+            this.template = template;
+            Set<String> names = new LinkedHashSet<String>(template.getTemplateVariables());
+            this.pathParamNames = names.toArray(new String[names.size()]);
+            this.negotiationHeaders = new NegotiationHeaders(serviceHandler.mediaToProduce());
+            this.producedMediaTypes = new MediaTypeMatcher(serviceHandler.mediaToProduce());
         }
-        return null;
     }
 
     private final static class ServiceHandlerInfo {
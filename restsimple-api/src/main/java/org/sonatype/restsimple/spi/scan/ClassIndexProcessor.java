@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.scan;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An annotation processor writing, in {@link #INDEX}, the classes annotated with the annotations RestSimple looks
+ * for, and the classes it compiled. The processor is registered in META-INF/services, so it runs every time a project
+ * depending on RestSimple is compiled, and {@link Classes} reads the index instead of reading every class of a
+ * package. Other runtime annotations can be indexed with <tt>-Arestsimple.index.annotations=a.B,c.D</tt>.
+ * <p/>
+ * The index contains three kinds of lines:
+ * <ul>
+ * <li><tt>indexes</tt> followed by the names of the indexed annotations.</li>
+ * <li><tt>class</tt> followed by the name of a compiled top level class.</li>
+ * <li>the name of an annotation followed by the name of a class annotated with it.</li>
+ * </ul>
+ * {@link Classes} only uses an index listing every top level class of its directory or jar. When the classes of
+ * several jars are merged into one, for example by the maven-shade-plugin, their indexes must be appended, using an
+ * <tt>AppendingTransformer</tt> for <tt>META-INF/restsimple/classes.index</tt>, or the merged jar is scanned.
+ */
+@SupportedAnnotationTypes({
+        "org.sonatype.restsimple.annotation.Service",
+        "javax.ws.rs.Path",
+        "javax.ws.rs.PathParam",
+        "com.google.sitebricks.At",
+        "com.google.sitebricks.Show",
+        "com.google.sitebricks.rendering.EmbedAs",
+        "com.google.sitebricks.rendering.With"})
+@SupportedOptions(ClassIndexProcessor.ANNOTATIONS_OPTION)
+public class ClassIndexProcessor extends AbstractProcessor {
+
+    public final static String INDEX = "META-INF/restsimple/classes.index";
+
+    /**
+     * The option adding, comma separated, annotations to index.
+     */
+    public final static String ANNOTATIONS_OPTION = "restsimple.index.annotations";
+
+    final static String INDEXES = "indexes";
+    final static String CLASS = "class";
+
+    private final Set<String> entries = new TreeSet<String>();
+    private final Set<String> classes = new TreeSet<String>();
+    private final Set<String> compiled = new HashSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new TreeSet<String>(super.getSupportedAnnotationTypes());
+        String option = processingEnv == null ? null : processingEnv.getOptions().get(ANNOTATIONS_OPTION);
+        if (option != null) {
+            for (String type : option.split(",")) {
+                if (type.trim().length() > 0) {
+                    types.add(type.trim());
+                }
+            }
+        }
+        return types;
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        if (roundEnv.processingOver()) {
+            write(elements);
+            return false;
+        }
+
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            classes.add(CLASS + " " + elements.getBinaryName(type));
+        }
+        addCompiled(elements, ElementFilter.typesIn(roundEnv.getRootElements()));
+        for (TypeElement annotation : annotations) {
+            Retention retention = annotation.getAnnotation(Retention.class);
+            if (retention == null || retention.value() != RetentionPolicy.RUNTIME) {
+                continue;
+            }
+            for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                entries.add(annotation.getQualifiedName() + " " + elements.getBinaryName(type));
+            }
+        }
+        return false;
+    }
+
+    private void addCompiled(Elements elements, Iterable<TypeElement> types) {
+        for (TypeElement type : types) {
+            compiled.add(elements.getBinaryName(type).toString());
+            addCompiled(elements, ElementFilter.typesIn(type.getEnclosedElements()));
+        }
+    }
+
+    private void write(Elements elements) {
+        Set<String> indexed = getSupportedAnnotationTypes();
+
+        // An incremental compilation only sees the modified classes, so keep the entries of the others.
+        try {
+            FileObject previous = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(previous.openInputStream(), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(' ');
+                    if (separator == -1) {
+                        continue;
+                    }
+                    String kind = line.substring(0, separator);
+                    String className = line.substring(separator + 1);
+                    if (kind.equals(INDEXES) || compiled.contains(className)
+                            || elements.getTypeElement(className.replace('$', '.')) == null) {
+                        continue;
+                    }
+                    if (kind.equals(CLASS)) {
+                        classes.add(line);
+                    } else if (indexed.contains(kind)) {
+                        entries.add(line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // No previous index
+        }
+
+        if (classes.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject index = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX,
+                    new Element[0]);
+            Writer writer = new OutputStreamWriter(index.openOutputStream(), "UTF-8");
+            try {
+                writer.write(INDEXES);
+                for (String annotation : indexed) {
+                    writer.write(' ');
+                    writer.write(annotation);
+                }
+                writer.write('\n');
+                for (String entry : classes) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Unable to write " + INDEX + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.scan;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+
+/**
+ * A directory or a jar containing some of the packages scanned by {@link Classes}. Its classes are read once, looking
+ * for all the {@link Classes} at the same time.
+ */
+final class ClassPathRoot implements Callable<Map<Classes, Set<Class<?>>>> {
+
+    private final static Logger log = Logger.getLogger(Classes.class.getName());
+
+    private final String root;
+    private final ClassLoader classLoader;
+    private final Classes[] classes;
+    private final boolean readAnnotations;
+
+    /**
+     * The scanned packages, and the URL of their directory.
+     */
+    private final Map<String, URL> packages = new TreeMap<String, URL>();
+
+    private final Map<Classes, Set<Class<?>>> found = new LinkedHashMap<Classes, Set<Class<?>>>();
+
+    ClassPathRoot(String root, ClassLoader classLoader, Classes[] classes) {
+        this.root = root;
+        this.classLoader = classLoader;
+        this.classes = classes;
+
+        boolean readAnnotations = false;
+        for (Classes c : classes) {
+            readAnnotations |= c.annotations() != null;
+            found.put(c, new LinkedHashSet<Class<?>>());
+        }
+        this.readAnnotations = readAnnotations;
+    }
+
+    void add(String packageName, URL url) {
+        // A sub package is scanned with its parent
+        for (String p : packages.keySet()) {
+            if (packageName.equals(p) || packageName.startsWith(p + '.')) {
+                return;
+            }
+        }
+        for (String p : packages.keySet().toArray(new String[packages.size()])) {
+            if (p.startsWith(packageName + '.')) {
+                packages.remove(p);
+            }
+        }
+        packages.put(packageName, url);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Classes, Set<Class<?>>> call() {
+        if (findClassesInIndex()) {
+            return found;
+        }
+
+        URL url = packages.values().iterator().next();
+        String protocol = url.getProtocol();
+        if ("file".equals(protocol)) {
+            for (Map.Entry<String, URL> e : packages.entrySet()) {
+                findClassesInDirPackage(e.getKey(), toPath(e.getValue()));
+            }
+        } else if ("jar".equals(protocol)) {
+            findClassesInJar(url);
+        }
+        return found;
+    }
+
+    /**
+     * Add the classes listed in the {@link ClassIndexProcessor#INDEX} of the root.
+     * @return false if there is no index, if some {@link Classes} can't use it, or if it doesn't list every top level
+     * class of the scanned packages, for example because the root merges the classes of several jars.
+     */
+    private boolean findClassesInIndex() {
+        Set<String> annotations = new HashSet<String>();
+        for (Classes c : classes) {
+            if (c.annotations() == null) {
+                return false;
+            }
+            annotations.addAll(c.annotations());
+        }
+
+        InputStream is;
+        try {
+            is = new URL(new URL(root), ClassIndexProcessor.INDEX).openStream();
+        } catch (IOException e) {
+            return false;
+        }
+
+        Set<String> indexed = null;
+        Set<String> listed = new HashSet<String>();
+        Map<String, Set<String>> classNames = new LinkedHashMap<String, Set<String>>();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator == -1) {
+                    continue;
+                }
+
+                String kind = line.substring(0, separator);
+                if (kind.equals(ClassIndexProcessor.INDEXES)) {
+                    // Merged indexes only index the annotations all of them index.
+                    Set<String> lineIndexed = new HashSet<String>(Arrays.asList(line.substring(separator + 1).split(" ")));
+                    if (indexed == null) {
+                        indexed = lineIndexed;
+                    } else {
+                        indexed.retainAll(lineIndexed);
+                    }
+                    continue;
+                }
+
+                String className = line.substring(separator + 1);
+                if (!inPackages(className)) {
+                    continue;
+                }
+                if (kind.equals(ClassIndexProcessor.CLASS)) {
+                    listed.add(className);
+                } else if (annotations.contains(kind)) {
+                    Set<String> classAnnotations = classNames.get(className);
+                    if (classAnnotations == null) {
+                        classAnnotations = new HashSet<String>();
+                        classNames.put(className, classAnnotations);
+                    }
+                    classAnnotations.add(kind);
+                }
+            }
+        } catch (IOException e) {
+            throw new Classes.PackageScanFailedException("Could not read from index: " + root, e);
+        } finally {
+            close(is);
+        }
+
+        if (indexed == null || !indexed.containsAll(annotations)) {
+            return false;
+        }
+        if (!listed.equals(topLevelClasses())) {
+            log.fine("The index of " + root + " doesn't list all its classes, scanning them");
+            return false;
+        }
+
+        for (Map.Entry<String, Set<String>> e : classNames.entrySet()) {
+            Class<?> clazz;
+            try {
+                clazz = Class.forName(e.getKey(), false, classLoader);
+            } catch (ClassNotFoundException ex) {
+                // The index was written before the class got removed
+                log.warning("Ignoring the indexed class " + e.getKey() + " the ClassLoader can't find");
+                continue;
+            }
+            add(clazz, e.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Return the names of the top level classes of the scanned packages, only listing the directories or the jar.
+     */
+    private Set<String> topLevelClasses() {
+        Set<String> classNames = new HashSet<String>();
+        URL url = packages.values().iterator().next();
+        String protocol = url.getProtocol();
+        if ("file".equals(protocol)) {
+            for (Map.Entry<String, URL> e : packages.entrySet()) {
+                topLevelClassesInDir(e.getKey(), new File(toPath(e.getValue())), classNames);
+            }
+        } else if ("jar".equals(protocol)) {
+            Set<String> packageDirNames = packageDirNames();
+            Enumeration<JarEntry> entries = jar(url).entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.charAt(0) == '/') {
+                    name = name.substring(1);
+                }
+                if (isTopLevelClass(name.substring(name.lastIndexOf('/') + 1)) && startsWithAny(name, packageDirNames)) {
+                    classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
+                }
+            }
+        }
+        return classNames;
+    }
+
+    private static void topLevelClassesInDir(String packageName, File dir, Set<String> classNames) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                topLevelClassesInDir(packageName + "." + name, file, classNames);
+            } else if (isTopLevelClass(name)) {
+                classNames.add(packageName + '.' + name.substring(0, name.length() - 6));
+            }
+        }
+    }
+
+    private static boolean isTopLevelClass(String fileName) {
+        return fileName.endsWith(".class") && fileName.indexOf('$') == -1 && !fileName.equals("package-info.class");
+    }
+
+    private Set<String> packageDirNames() {
+        Set<String> packageDirNames = new HashSet<String>();
+        for (String p : packages.keySet()) {
+            packageDirNames.add(p.replace('.', '/') + '/');
+        }
+        return packageDirNames;
+    }
+
+    private static JarFile jar(URL url) {
+        try {
+            return ((JarURLConnection) url.openConnection()).getJarFile();
+        } catch (IOException e) {
+            throw new Classes.PackageScanFailedException("Could not read from jar url: " + url, e);
+        }
+    }
+
+    private void findClassesInJar(URL url) {
+        JarFile jar = jar(url);
+        Set<String> packageDirNames = packageDirNames();
+
+        // Only iterate over the entries once, whatever the number of packages
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (name.charAt(0) == '/') {
+                name = name.substring(1);
+            }
+            if (entry.isDirectory() || !name.endsWith(".class") || !startsWithAny(name, packageDirNames)) {
+                continue;
+            }
+
+            String className = name.substring(0, name.length() - 6).replace('/', '.');
+            /* Issue #26 - package-info causes ISE during package scan. This ia a bit of a hack for just
+             * package-info. TODO Determine better handling of unexpected classloader issues.
+             */
+            if (className.endsWith(".package-info")) {
+                continue;
+            }
+
+            Set<String> classAnnotations = Collections.emptySet();
+            if (readAnnotations) {
+                try {
+                    classAnnotations = annotations(jar.getInputStream(entry));
+                } catch (IOException e) {
+                    throw new Classes.PackageScanFailedException("Could not read from jar url: " + url, e);
+                }
+            }
+            add(className, classAnnotations);
+        }
+    }
+
+    private void findClassesInDirPackage(String packageName, String packagePath) {
+        File dir = new File(packagePath);
+
+        if (!dir.exists() || !dir.isDirectory()) {
+            return;
+        }
+
+        File[] dirfiles = dir.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory() || (file.getName().endsWith(".class"));
+            }
+        });
+
+        for (File file : dirfiles) {
+            if (file.isDirectory()) {
+                findClassesInDirPackage(packageName + "." + file.getName(), file.getAbsolutePath());
+            } else {
+                String className = file.getName().substring(0, file.getName().length() - 6);
+                if ("package-info".equals(className)) {
+                    continue;
+                }
+
+                Set<String> classAnnotations = Collections.emptySet();
+                if (readAnnotations) {
+                    try {
+                        classAnnotations = annotations(new FileInputStream(file));
+                    } catch (IOException e) {
+                        throw new Classes.PackageScanFailedException("Could not read from file: " + file, e);
+                    }
+                }
+                //include class
+                add(packageName + '.' + className, classAnnotations);
+            }
+        }
+    }
+
+    /**
+     * Load a class if one of the {@link Classes} may match it.
+     */
+    private void add(String className, Set<String> classAnnotations) {
+        boolean mayMatch = false;
+        for (Classes c : classes) {
+            mayMatch |= c.mayMatch(classAnnotations);
+        }
+        if (!mayMatch) {
+            return;
+        }
+
+        Class<?> clazz;
+        try {
+            // Don't run the static initializers of classes that don't match
+            clazz = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            log.severe("A class discovered by the scanner could not be found by the ClassLoader, " +
+                    "something very odd has happened with the classloading (see root cause): " +
+                    e.toString());
+
+            throw new IllegalStateException(
+                    "A class discovered by the scanner could not be found by the ClassLoader", e);
+        }
+        add(clazz, classAnnotations);
+    }
+
+    private void add(Class<?> clazz, Set<String> classAnnotations) {
+        for (Classes c : classes) {
+            if (c.mayMatch(classAnnotations) && c.matches(clazz)) {
+                found.get(c).add(clazz);
+            }
+        }
+    }
+
+    private boolean inPackages(String className) {
+        for (String p : packages.keySet()) {
+            if (className.startsWith(p + '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWithAny(String name, Set<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the runtime annotations of a class file, without loading the class.
+     */
+    private static Set<String> annotations(InputStream is) throws IOException {
+        try {
+            AnnotationCollector collector = new AnnotationCollector();
+            new ClassReader(is).accept(collector, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return collector.annotations;
+        } finally {
+            close(is);
+        }
+    }
+
+    private static void close(InputStream is) {
+        try {
+            is.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+    }
+
+    private static String toPath(final URL url) {
+        String path = url.getPath();
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0, length = path.length(); i < length; i++) {
+            char c = path.charAt(i);
+            if ('/' == c) {
+                buf.append(File.separatorChar);
+            } else if ('%' == c && i < length - 2) {
+                buf.append((char) Integer.parseInt(path.substring(++i, ++i + 1), 16));
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    private final static class AnnotationCollector implements ClassVisitor {
+
+        final Set<String> annotations = new HashSet<String>();
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            if (visible) {
+                annotations.add(Type.getType(desc).getClassName());
+            }
+            return null;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+        }
+
+        @Override
+        public void visitOuterClass(String owner, String name, String desc) {
+        }
+
+        @Override
+        public void visitAttribute(Attribute attr) {
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            return null;
+        }
+
+        @Override
+        public void visitEnd() {
+        }
+    }
+}
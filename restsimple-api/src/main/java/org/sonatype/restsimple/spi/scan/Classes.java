@@ -12,23 +12,40 @@
 package org.sonatype.restsimple.spi.scan;
 
 import com.google.inject.matcher.Matcher;
+import com.google.inject.matcher.Matchers;
 
-import java.io.File;
-import java.io.FileFilter;
 import java.io.IOException;
-import java.net.JarURLConnection;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.lang.reflect.AnnotatedElement;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.logging.Logger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Utility class that finds all the classes in a given package.
  * (based on a similar utility in TestNG)
  * <p/>
+ * When created with {@link #annotatedWith(Class[])}, the classes of a directory or a jar containing the
+ * {@link ClassIndexProcessor#INDEX} are looked up in the index instead of being scanned, as long as the index lists
+ * every top level class of the scanned packages. The other classes are only loaded if their class file carries one of
+ * the annotations.
+ * <p/>
+ * {@link #in(Collection, Classes[])} looks for several {@link Classes} in several packages at once, reading every
+ * directory and jar once. Different directories and jars are read in parallel, the classes of one jar by one thread.
+ * <p/>
  * Created on Feb 24, 2006
  *
  * @author <a href="mailto:cedric@beust.com">Cedric Beust</a>
@@ -37,10 +54,11 @@ import java.util.logging.Logger;
 public class Classes {
 
     private final Matcher<? super Class<?>> matcher;
-    private final Logger log = Logger.getLogger(Classes.class.getName());
+    private final Set<String> annotations;
 
-    private Classes(Matcher<? super Class<?>> matcher) {
+    private Classes(Matcher<? super Class<?>> matcher, Set<String> annotations) {
         this.matcher = matcher;
+        this.annotations = annotations;
     }
 
     /**
@@ -51,140 +69,143 @@ public class Classes {
      *                                    happening with classloaders.
      */
     public Set<Class<?>> in(Package pack) {
-        String packageName = pack.getName();
-        String packageOnly = pack.getName();
-
-        final boolean recursive = true;
+        return in(Collections.singleton(pack), this).get(this);
+    }
 
-        Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
-        String packageDirName = packageOnly.replace('.', '/');
+    /**
+     * Find the classes matching each of <tt>classes</tt> in packages.
+     *
+     * @param packages A list of packages to scan, recursively.
+     * @param classes  the {@link Classes} to look for.
+     * @return the classes found for each of <tt>classes</tt>.
+     * @throws PackageScanFailedException Thrown when error reading from disk or jar.
+     * @throws IllegalStateException      Thrown when something very odd is
+     *                                    happening with classloaders.
+     */
+    public static Map<Classes, Set<Class<?>>> in(Collection<Package> packages, Classes... classes) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+        // A package may be spread over several directories and jars, and a jar may contain several packages.
+        Map<String, ClassPathRoot> roots = new LinkedHashMap<String, ClassPathRoot>();
+        for (Package pack : packages) {
+            String packageDirName = pack.getName().replace('.', '/');
+
+            Enumeration<URL> dirs;
+            try {
+                dirs = classLoader.getResources(packageDirName);
+            } catch (IOException e) {
+                throw new PackageScanFailedException(
+                        "Could not read from package directory: " + packageDirName, e);
+            }
 
-        Enumeration<URL> dirs;
-        try {
-            dirs = Thread.currentThread().getContextClassLoader().getResources(packageDirName);
+            while (dirs.hasMoreElements()) {
+                URL url = dirs.nextElement();
+                String location = url.toString();
+                int index = location.lastIndexOf(packageDirName);
+                String root = index == -1 ? location : location.substring(0, index);
 
-        } catch (IOException e) {
-            throw new PackageScanFailedException(
-                    "Could not read from package directory: " + packageDirName, e);
+                ClassPathRoot classPathRoot = roots.get(root);
+                if (classPathRoot == null) {
+                    classPathRoot = new ClassPathRoot(root, classLoader, classes);
+                    roots.put(root, classPathRoot);
+                }
+                classPathRoot.add(pack.getName(), url);
+            }
         }
 
-        while (dirs.hasMoreElements()) {
-            URL url = dirs.nextElement();
-            String protocol = url.getProtocol();
-
-            if ("file".equals(protocol)) {
-                findClassesInDirPackage(packageOnly, toPath(url), recursive, classes);
-            } else if ("jar".equals(protocol)) {
-                JarFile jar;
-
-                try {
-                    jar = ((JarURLConnection) url.openConnection()).getJarFile();
-                } catch (IOException e) {
-                    throw new PackageScanFailedException("Could not read from jar url: " + url, e);
-                }
+        Map<Classes, Set<Class<?>>> found = new LinkedHashMap<Classes, Set<Class<?>>>();
+        for (Classes c : classes) {
+            found.put(c, new LinkedHashSet<Class<?>>());
+        }
 
-                Enumeration<JarEntry> entries = jar.entries();
-                while (entries.hasMoreElements()) {
-                    JarEntry entry = entries.nextElement();
-                    String name = entry.getName();
-                    if (name.charAt(0) == '/') {
-                        name = name.substring(1);
-                    }
-                    if (name.startsWith(packageDirName)) {
-                        int idx = name.lastIndexOf('/');
-                        if (idx != -1) {
-                            packageName = name.substring(0, idx).replace('/', '.');
-                        }
-
-                        if ((idx != -1) || recursive) {
-                            //it's not inside a deeper dir
-                            if (name.endsWith(".class") && !entry.isDirectory()) {
-                                String className = name.substring(packageName.length() + 1, name.length() - 6);
-                                //include this class in our results
-
-                                /* Issue #26 - package-info causes ISE during package scan. This ia a bit of a hack for just
-                                * package-info. TODO Determine better handling of unexpected classloader issues.
-                                */
-                                if (!"package-info".equalsIgnoreCase(className)) {
-                                    add(packageName, classes, className);
-                                }
-//                  vResult.add();
-                            }
-                        }
-                    }
-                }
+        for (Map<Classes, Set<Class<?>>> rootFound : scan(roots.values())) {
+            for (Map.Entry<Classes, Set<Class<?>>> e : rootFound.entrySet()) {
+                found.get(e.getKey()).addAll(e.getValue());
             }
         }
-
-        return classes;
+        return found;
     }
 
-    private void add(String packageName, Set<Class<?>> classes, String className) {
+    private static List<Map<Classes, Set<Class<?>>>> scan(Collection<ClassPathRoot> roots) {
+        List<Map<Classes, Set<Class<?>>>> found = new ArrayList<Map<Classes, Set<Class<?>>>>();
+        int threads = Math.min(roots.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+            for (ClassPathRoot root : roots) {
+                found.add(root.call());
+            }
+            return found;
+        }
 
-        Class<?> clazz;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
-            clazz = Class.forName(packageName + '.' + className);
-        } catch (ClassNotFoundException e) {
-            log.severe("A class discovered by the scanner could not be found by the ClassLoader, " +
-                    "something very odd has happened with the classloading (see root cause): " +
-                    e.toString());
-
-            throw new IllegalStateException(
-                    "A class discovered by the scanner could not be found by the ClassLoader", e);
+            List<Future<Map<Classes, Set<Class<?>>>>> futures = new ArrayList<Future<Map<Classes, Set<Class<?>>>>>();
+            for (ClassPathRoot root : roots) {
+                futures.add(executor.submit(root));
+            }
+            for (Future<Map<Classes, Set<Class<?>>>> future : futures) {
+                found.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning packages", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
-
-        if (matcher.matches(clazz))
-            classes.add(clazz);
+        return found;
     }
 
-    private void findClassesInDirPackage(String packageName,
-                                         String packagePath,
-                                         final boolean recursive,
-                                         Set<Class<?>> classes) {
-        File dir = new File(packagePath);
-
-        if (!dir.exists() || !dir.isDirectory()) {
-            return;
+    /**
+     * Return true if a class may match, using the annotations of its class file.
+     */
+    boolean mayMatch(Set<String> classAnnotations) {
+        if (annotations == null) {
+            return true;
         }
-
-        File[] dirfiles = dir.listFiles(new FileFilter() {
-            public boolean accept(File file) {
-                return (recursive && file.isDirectory()) || (file.getName().endsWith(".class"));
-            }
-        });
-
-        for (File file : dirfiles) {
-            if (file.isDirectory()) {
-                findClassesInDirPackage(packageName + "." + file.getName(),
-                        file.getAbsolutePath(),
-                        recursive,
-                        classes);
-            } else {
-                String className = file.getName().substring(0, file.getName().length() - 6);
-                //include class
-                add(packageName, classes, className);
+        for (String annotation : classAnnotations) {
+            if (annotations.contains(annotation)) {
+                return true;
             }
         }
+        return false;
+    }
+
+    boolean matches(Class<?> clazz) {
+        return matcher.matches(clazz);
+    }
+
+    /**
+     * Return the names of the annotations looked for, or null if the {@link Matcher} needs the class.
+     */
+    Set<String> annotations() {
+        return annotations;
     }
 
     public static Classes matching(Matcher<? super Class<?>> matcher) {
-        return new Classes(matcher);
+        return new Classes(matcher, null);
     }
 
-    private static String toPath(final URL url) {
-        String path = url.getPath();
-        StringBuilder buf = new StringBuilder();
-        for (int i = 0, length = path.length(); i < length; i++) {
-            char c = path.charAt(i);
-            if ('/' == c) {
-                buf.append(File.separatorChar);
-            } else if ('%' == c && i < length - 2) {
-                buf.append((char) Integer.parseInt(path.substring(++i, ++i + 1), 16));
-            } else {
-                buf.append(c);
-            }
+    /**
+     * Find the classes annotated with at least one of <tt>annotations</tt>, using the index written by
+     * {@link ClassIndexProcessor} when it is available.
+     * @param annotations runtime annotations
+     * @return a {@link Classes}
+     */
+    public static Classes annotatedWith(Class<? extends Annotation>... annotations) {
+        Matcher<AnnotatedElement> matcher = Matchers.not(Matchers.any());
+        Set<String> names = new HashSet<String>();
+        boolean inherited = false;
+        for (Class<? extends Annotation> annotation : annotations) {
+            matcher = Matchers.annotatedWith(annotation).or(matcher);
+            names.add(annotation.getName());
+            inherited |= annotation.isAnnotationPresent(Inherited.class);
         }
-        return buf.toString();
+        // The sub classes of a class annotated with an @Inherited annotation can't be found from their class file
+        return new Classes(matcher, inherited ? null : names);
     }
 
     /**
@@ -197,5 +218,3 @@ public class Classes {
     }
 
 }
-
-
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2011 Sonatype, Inc. All rights reserved.
+ *
+ * This program is licensed to you under the Apache License Version 2.0,
+ * and you may not use this file except in compliance with the Apache License Version 2.0.
+ * You may obtain a copy of the Apache License Version 2.0 at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the Apache License Version 2.0 is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Apache License Version 2.0 for the specific language governing permissions and limitations there under.
+ */
+package org.sonatype.restsimple.spi.uri;
+
+import java.util.List;
+
+/**
+ * A matcher for templates made of literal characters and template variables without explicit regular expressions,
+ * e.g <tt>/pet/{pet}</tt>. It scans the URI directly and gives the same result as the regular expression generated
+ * by {@link UriTemplateParser}, where each template variable is a reluctant <tt>[^/]+?</tt>.
+ */
+final class SegmentMatcher {
+
+    /**
+     * The literal characters around the template variables. There is always one more literal than template
+     * variables; literals may be empty.
+     */
+    private final String[] literals;
+
+    SegmentMatcher(List<String> literals) {
+        this.literals = literals.toArray(new String[literals.size()]);
+    }
+
+    /**
+     * Get the number of template variables.
+     *
+     * @return the number of template variables.
+     */
+    int groupCount() {
+        return literals.length - 1;
+    }
+
+    /**
+     * Match a URI.
+     *
+     * @param uri the uri to match.
+     * @param captures the array receiving the start and end index of each template variable value. Its length must be
+     *        at least twice {@link #groupCount()}.
+     * @return true if the URI matches, otherwise false.
+     */
+    boolean match(CharSequence uri, int[] captures) {
+        return match(uri, 0, 0, captures);
+    }
+
+    private boolean match(CharSequence uri, int literal, int pos, int[] captures) {
+        String s = literals[literal];
+        int length = uri.length();
+        if (length - pos < s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (uri.charAt(pos++) != s.charAt(i)) {
+                return false;
+            }
+        }
+
+        if (literal == literals.length - 1) {
+            return pos == length;
+        }
+
+        // Shortest value first, like the reluctant quantifier does.
+        for (int end = pos + 1; end <= length && uri.charAt(end - 1) != '/'; end++) {
+            captures[literal * 2] = pos;
+            captures[literal * 2 + 1] = end;
+            if (match(uri, literal + 1, end, captures)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -84,6 +84,11 @@ public class UriPattern {
     private final Pattern regexPattern;
     
     private final int[] groupIndexes;
+
+    /**
+     * The matcher used in place of {@link #regexPattern}, or null.
+     */
+    private final SegmentMatcher segmentMatcher;
     
     /**
      *  Construct an empty pattern.
@@ -92,6 +97,7 @@ public class UriPattern {
         this.regex = "";
         this.regexPattern = null;
         this.groupIndexes = null;
+        this.segmentMatcher = null;
     }
 
     /**
@@ -149,6 +155,23 @@ public class UriPattern {
         this.regex = regexPattern.toString();
         this.regexPattern = regexPattern;
         this.groupIndexes = groupIndexes;
+        this.segmentMatcher = null;
+    }
+
+    /**
+     * Construct a new URI pattern from a template that can be matched without using a regular expression.
+     *
+     * @param templateParser the parser of a template for which {@link UriTemplateParser#isSimple()} is true.
+     * @throws IllegalArgumentException if the template cannot be matched without using a regular expression.
+     */
+    UriPattern(UriTemplateParser templateParser) {
+        if (!templateParser.isSimple())
+            throw new IllegalArgumentException();
+
+        this.regex = templateParser.getPattern().toString();
+        this.regexPattern = templateParser.getPattern();
+        this.groupIndexes = templateParser.getGroupIndexes();
+        this.segmentMatcher = new SegmentMatcher(templateParser.getLiterals());
     }
 
     /**
@@ -206,6 +229,50 @@ public class UriPattern {
     }
 
     private static final EmptyStringMatchResult EMPTY_STRING_MATCH_RESULT = new EmptyStringMatchResult();
+
+    private static final class SegmentMatchResult implements MatchResult {
+        private final CharSequence uri;
+        private final int[] captures;
+
+        SegmentMatchResult(CharSequence uri, int[] captures) {
+            this.uri = uri;
+            this.captures = captures;
+        }
+
+        public int start() {
+            return 0;
+        }
+
+        public int start(int group) {
+            if (group > groupCount())
+                throw new IndexOutOfBoundsException();
+
+            return (group > 0) ? captures[(group - 1) * 2] : start();
+        }
+
+        public int end() {
+            return uri.length();
+        }
+
+        public int end(int group) {
+            if (group > groupCount())
+                throw new IndexOutOfBoundsException();
+
+            return (group > 0) ? captures[(group - 1) * 2 + 1] : end();
+        }
+
+        public String group() {
+            return uri.toString();
+        }
+
+        public String group(int group) {
+            return uri.subSequence(start(group), end(group)).toString();
+        }
+
+        public int groupCount() {
+            return captures.length / 2;
+        }
+    }
     
     private final class GroupIndexMatchResult implements MatchResult {
         private final MatchResult r;
@@ -264,6 +331,11 @@ public class UriPattern {
             return (regexPattern == null) ? EMPTY_STRING_MATCH_RESULT : null;
         else if (regexPattern == null)
             return null;
+
+        if (segmentMatcher != null) {
+            int[] captures = new int[segmentMatcher.groupCount() * 2];
+            return segmentMatcher.match(uri, captures) ? new SegmentMatchResult(uri, captures) : null;
+        }
         
         // Match the URI to the URI template regular expression
         Matcher m = regexPattern.matcher(uri);
@@ -297,6 +369,18 @@ public class UriPattern {
             return (regexPattern == null) ? true : false;
         else if (regexPattern == null)
             return false;
+
+        if (segmentMatcher != null) {
+            int[] captures = new int[segmentMatcher.groupCount() * 2];
+            if (!segmentMatcher.match(uri, captures))
+                return false;
+
+            groupValues.clear();
+            for (int i = 0; i < captures.length; i += 2) {
+                groupValues.add(uri.subSequence(captures[i], captures[i + 1]).toString());
+            }
+            return true;
+        }
                 
         // Match the URI to the URI template regular expression
         Matcher m = regexPattern.matcher(uri);
@@ -349,6 +433,25 @@ public class UriPattern {
             return (regexPattern == null) ? true : false;
         else if (regexPattern == null)
             return false;
+
+        if (segmentMatcher != null) {
+            int[] captures = new int[segmentMatcher.groupCount() * 2];
+            if (!segmentMatcher.match(uri, captures))
+                return false;
+
+            groupValues.clear();
+            for (int i = 0; i < groupNames.size(); i++) {
+                String name = groupNames.get(i);
+                String currentValue = uri.subSequence(captures[i * 2], captures[i * 2 + 1]).toString();
+
+                String previousValue = groupValues.get(name);
+                if (previousValue != null && !previousValue.equals(currentValue))
+                    return false;
+
+                groupValues.put(name, currentValue);
+            }
+            return true;
+        }
         
         // Match the URI to the URI template regular expression
         Matcher m = regexPattern.matcher(uri);
@@ -234,11 +234,17 @@ public class UriTemplate {
 
     /**
      * Create the URI pattern from a URI template parser.
+     * <p>
+     * A template without explicit regular expressions is matched without
+     * using its regular expression, see {@link UriTemplateParser#isSimple()}.
      *
      * @param templateParser the URI template parser.
      * @return the URI pattern.
      */
     protected UriPattern createUriPattern(UriTemplateParser templateParser) {
+        if (templateParser.isSimple()) {
+            return new UriPattern(templateParser);
+        }
         return new UriPattern(templateParser.getPattern(), templateParser.getGroupIndexes()); 
     }
     
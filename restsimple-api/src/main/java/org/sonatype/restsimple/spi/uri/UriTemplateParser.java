@@ -87,6 +87,11 @@ public class UriTemplateParser {
 
     private static final Pattern TEMPLATE_VALUE_PATTERN = Pattern.compile("[^/]+?");
 
+    /**
+     * Literal characters that are not escaped, and are interpreted by the regular expression.
+     */
+    static final String UNESCAPED_REGEX_CHARACTERS = "\\^$|*+[]{}";
+
     private interface CharacterIterator {
         boolean hasNext();
         char next();
@@ -143,6 +148,12 @@ public class UriTemplateParser {
     private final List<String> names = new ArrayList<String>();
 
     private final List<Integer> groupCounts = new ArrayList<Integer>();
+
+    private final List<String> literals = new ArrayList<String>();
+
+    private final StringBuilder currentLiteral = new StringBuilder();
+
+    private boolean simple = true;
     
     private final Map<String, Pattern> nameToPattern = new HashMap<String, Pattern>();
 
@@ -258,6 +269,26 @@ public class UriTemplateParser {
         return numOfExplicitRegexes;
     }
 
+    /**
+     * Return true if the template can be matched without using a regular expression: the template has no explicit
+     * regular expressions and its literal characters have no special meaning in a regular expression.
+     *
+     * @return true if the template can be matched without using a regular expression.
+     */
+    public final boolean isSimple() {
+        return simple && numOfExplicitRegexes == 0;
+    }
+
+    /**
+     * Get the literal characters found before, between and after the template variables. The list always contains
+     * one more element than {@link #getNames()}.
+     *
+     * @return the list of literal characters.
+     */
+    public final List<String> getLiterals() {
+        return literals;
+    }
+
     /**
      * Get the number of literal characters.
      * 
@@ -289,6 +320,7 @@ public class UriTemplateParser {
                 }
             }
             processLiteralCharacters();
+            literals.add(currentLiteral.toString());
         } catch (NoSuchElementException ex) {
             throw new IllegalArgumentException(
                     "Invalid syntax for the template, \"" + template +
@@ -304,12 +336,15 @@ public class UriTemplateParser {
             String s = encodeLiteralCharacters(literalCharactersBuffer.toString());
 
             normalizedTemplate.append(s);
+            currentLiteral.append(s);
 
             // Escape if reserved regex character
             for (int i = 0; i < s.length(); i++) {
                 char c = s.charAt(i);
                 if (RESERVED_REGEX_CHARACTERS.contains(c))
                     regex.append("\\");
+                else if (UNESCAPED_REGEX_CHARACTERS.indexOf(c) != -1)
+                    simple = false;
                 regex.append(c);
             }
 
@@ -361,6 +396,8 @@ public class UriTemplateParser {
         }        
         String name = nameBuffer.toString();
         names.add(name);
+        literals.add(currentLiteral.toString());
+        currentLiteral.setLength(0);
 
         try {
             if (nameRegexString.length() > 0)
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.uri;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A segment trie of {@link UriTemplate}. Literal segments are resolved using a hash lookup and default template
+ * variables, e.g <tt>{name}</tt>, are resolved using a capture node, so the cost of a lookup depends on the depth of
+ * the path instead of the number of templates. No regular expression gets compiled or executed when a template is
+ * represented by the trie.
+ * <p/>
+ * Templates that cannot be represented segment by segment (explicit regular expressions, variables mixed with
+ * literal characters inside a segment, or a variable declared more than once) are kept aside and matched using their
+ * {@link UriTemplate}, compiled once when added.
+ * <p/>
+ * This class is not thread safe.
+ *
+ * @param <T> the value associated with a template.
+ */
+public class UriTemplateTrie<T> {
+
+    private final Node<T> root = new Node<T>();
+
+    private final List<Entry<T>> fallbacks = new ArrayList<Entry<T>>();
+
+    private int maxCaptures;
+
+    /**
+     * Add a template and its associated value. A value previously associated with the same template gets replaced.
+     *
+     * @param template a {@link UriTemplate}
+     * @param value the value to return when the template matches.
+     * @return this
+     */
+    public UriTemplateTrie<T> add(UriTemplate template, T value) {
+        String[] segments = segments(template);
+        if (segments == null) {
+            for (int i = 0; i < fallbacks.size(); i++) {
+                if (fallbacks.get(i).template.getTemplate().equals(template.getTemplate())) {
+                    fallbacks.set(i, new Entry<T>(template, value, null));
+                    return this;
+                }
+            }
+            fallbacks.add(new Entry<T>(template, value, null));
+            return this;
+        }
+
+        Node<T> node = root;
+        List<String> names = new ArrayList<String>();
+        for (String segment : segments) {
+            String name = variableName(segment);
+            if (name != null) {
+                names.add(name);
+                if (node.capture == null) {
+                    node.capture = new Node<T>();
+                }
+                node = node.capture;
+            } else {
+                if (node.literals == null) {
+                    node.literals = new HashMap<String, Node<T>>();
+                }
+                Node<T> child = node.literals.get(segment);
+                if (child == null) {
+                    child = new Node<T>();
+                    node.literals.put(segment, child);
+                }
+                node = child;
+            }
+        }
+        node.entry = new Entry<T>(template, value, names.toArray(new String[names.size()]));
+        maxCaptures = Math.max(maxCaptures, names.size());
+        return this;
+    }
+
+    /**
+     * Return true if no template has been added.
+     *
+     * @return true if no template has been added.
+     */
+    public boolean isEmpty() {
+        return root.literals == null && root.capture == null && root.entry == null && fallbacks.isEmpty();
+    }
+
+    /**
+     * Match a path against the templates. Literal segments are always preferred over template variables.
+     *
+     * @param path a path starting with a '/'
+     * @param templateVariableToValue a {@link Map} populated with the template variables value, or null
+     * if the values aren't needed.
+     * @return the value associated with the matching template, or null if no template match.
+     */
+    public T match(String path, Map<String, String> templateVariableToValue) {
+        if (path == null || path.length() == 0 || path.charAt(0) != '/') {
+            return null;
+        }
+
+        int[] captures = new int[maxCaptures * 2];
+        Entry<T> e = find(root, path, 1, captures, 0);
+        if (e != null) {
+            if (templateVariableToValue != null) {
+                templateVariableToValue.clear();
+                for (int i = 0; i < e.names.length; i++) {
+                    templateVariableToValue.put(e.names[i], path.substring(captures[i * 2], captures[i * 2 + 1]));
+                }
+            }
+            return e.value;
+        }
+
+        Map<String, String> values = templateVariableToValue != null ? templateVariableToValue : new HashMap<String, String>();
+        for (Entry<T> f : fallbacks) {
+            if (f.template.match(path, values)) {
+                return f.value;
+            }
+        }
+        return null;
+    }
+
+    private Entry<T> find(Node<T> node, String path, int start, int[] captures, int captureCount) {
+        int end = path.indexOf('/', start);
+        boolean last = end == -1;
+        if (last) {
+            end = path.length();
+        }
+
+        if (node.literals != null) {
+            Node<T> literal = node.literals.get(path.substring(start, end));
+            if (literal != null) {
+                Entry<T> e = last ? literal.entry : find(literal, path, end + 1, captures, captureCount);
+                if (e != null) {
+                    return e;
+                }
+            }
+        }
+
+        if (node.capture != null && end > start) {
+            captures[captureCount * 2] = start;
+            captures[captureCount * 2 + 1] = end;
+            return last ? node.capture.entry : find(node.capture, path, end + 1, captures, captureCount + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Split a template into segments, or return null if the template cannot be represented by the trie.
+     */
+    private static String[] segments(UriTemplate template) {
+        String t = template.getTemplate();
+        if (template.getNumberOfExplicitRegexes() > 0 || t.length() == 0 || t.charAt(0) != '/') {
+            return null;
+        }
+
+        String[] segments = t.substring(1).split("/", -1);
+        Set<String> names = new HashSet<String>();
+        for (String segment : segments) {
+            String name = variableName(segment);
+            if (name != null) {
+                if (!names.add(name)) {
+                    return null;
+                }
+            } else {
+                // Literal characters the regex engine would interpret are left to the UriTemplate.
+                for (int i = 0; i < segment.length(); i++) {
+                    if (UriTemplateParser.UNESCAPED_REGEX_CHARACTERS.indexOf(segment.charAt(i)) != -1) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Return the variable name if the segment is made of a single template variable, e.g <tt>{name}</tt>
+     */
+    private static String variableName(String segment) {
+        int length = segment.length();
+        if (length < 3 || segment.charAt(0) != '{' || segment.charAt(length - 1) != '}'
+                || segment.indexOf('{', 1) != -1 || segment.indexOf('}') != length - 1) {
+            return null;
+        }
+
+        String name = segment.substring(1, length - 1);
+        int colon = name.indexOf(':');
+        if (colon != -1) {
+            name = name.substring(0, colon);
+        }
+        return name.trim();
+    }
+
+    private final static class Node<T> {
+        Map<String, Node<T>> literals;
+        Node<T> capture;
+        Entry<T> entry;
+    }
+
+    private final static class Entry<T> {
+        final UriTemplate template;
+        final T value;
+        final String[] names;
+
+        Entry(UriTemplate template, T value, String[] names) {
+            this.template = template;
+            this.value = value;
+            this.names = names;
+        }
+    }
+}
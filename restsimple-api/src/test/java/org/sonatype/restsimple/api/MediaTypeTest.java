@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.api;
+
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class MediaTypeTest {
+
+    @Test
+    public void testEquals() {
+        MediaType json = new MediaType("Application", "JSON");
+        assertEquals(json, MediaType.JSON);
+        assertEquals(json.hashCode(), MediaType.JSON.hashCode());
+        assertEquals(json.toMediaType(), "Application/JSON");
+
+        // The parameter names are compared ignoring case, not their values.
+        MediaType text = new MediaType("text", "plain", Collections.singletonMap("charset", "utf-8"));
+        assertEquals(MediaType.of("text/plain;Charset=utf-8"), text);
+        assertFalse(MediaType.of("text/plain;charset=UTF-8").equals(text));
+        assertFalse(text.equals(MediaType.TEXT));
+    }
+
+    @Test
+    public void testParameters() {
+        MediaType text = MediaType.of("text/plain; charset=utf-8 ;format=flowed");
+        assertEquals(text.type(), "text");
+        assertEquals(text.subType(), "plain");
+        assertEquals(text.parameters().get("charset"), "utf-8");
+        assertEquals(text.parameters().get("format"), "flowed");
+        assertEquals(text.toMediaType(), "text/plain;charset=utf-8;format=flowed");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoSubType() {
+        MediaType.of("application/");
+    }
+
+    @Test
+    public void testOf() {
+        assertSame(MediaType.of("application", "json"), MediaType.JSON);
+        assertSame(MediaType.of("application/json"), MediaType.JSON);
+        assertSame(MediaType.of("Application/JSON"), MediaType.JSON);
+        assertSame(MediaType.of("Application", "JSON"), MediaType.JSON);
+        assertSame(MediaType.of("text/plain;charset=utf-8"), MediaType.of("text/plain;Charset=utf-8"));
+    }
+
+    @Test
+    public void testIsCompatible() {
+        assertTrue(MediaType.JSON.isCompatible(MediaType.of("Application/Json")));
+        assertTrue(MediaType.JSON.isCompatible(new MediaType("application")));
+        assertTrue(new MediaType().isCompatible(MediaType.XML));
+        assertTrue(MediaType.XML.isCompatible(new MediaType()));
+        assertTrue(MediaType.JSON.isCompatible(MediaType.of("application/json;v=2")));
+        assertFalse(MediaType.JSON.isCompatible(MediaType.XML));
+        assertFalse(MediaType.JSON.isCompatible(new MediaType("text")));
+    }
+
+    @Test(dependsOnMethods = {"testEquals", "testParameters", "testNoSubType", "testOf", "testIsCompatible"})
+    public void testInternedBound() {
+        MediaType first = MediaType.of("application/vnd.bound");
+
+        // Fill the table past its bound.
+        for (int i = 0; i < 2048; i++) {
+            MediaType.of("application/vnd.bound" + i);
+        }
+
+        // The media types interned before are still returned, the others are new instances.
+        assertSame(MediaType.of("application/vnd.bound"), first);
+        assertSame(MediaType.of("application", "json"), MediaType.JSON);
+        MediaType last = MediaType.of("application/vnd.bound2047");
+        assertNotSame(MediaType.of("application/vnd.bound2047"), last);
+        assertEquals(MediaType.of("application/vnd.bound2047"), last);
+        assertNotSame(MediaType.of("application", "vnd.bound2047"), MediaType.of("application", "vnd.bound2047"));
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.spi.scan.Compilation;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class GeneratedClassCacheTest {
+
+    private final static byte[] BYTES = {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe, 0, 0, 0, 50, 1, 2, 3};
+
+    @Test
+    public void testHit() throws IOException {
+        GeneratedClassCache cache = new GeneratedClassCache(Compilation.tempDir("cache"));
+        assertNull(cache.get(GeneratedClassCacheTest.class, "gen.Resource"));
+
+        cache.put(GeneratedClassCacheTest.class, "gen.Resource", BYTES);
+        assertEquals(cache.get(GeneratedClassCacheTest.class, "gen.Resource"), BYTES);
+        assertNull(cache.get(GeneratedClassCacheTest.class, "gen.Other"));
+
+        // Another instance, like the next start of the application.
+        assertEquals(new GeneratedClassCache(cache.directory()).get(GeneratedClassCacheTest.class, "gen.Resource"), BYTES);
+    }
+
+    @Test
+    public void testGeneratorChanged() throws Exception {
+        Class<?> generator = generator("1");
+        Class<?> upgraded = generator("2");
+
+        GeneratedClassCache cache = new GeneratedClassCache(Compilation.tempDir("cache"));
+        cache.put(generator, "gen.Resource", BYTES);
+
+        assertEquals(cache.get(generator, "gen.Resource"), BYTES);
+        assertNull(cache.get(upgraded, "gen.Resource"));
+        assertNull(new GeneratedClassCache(cache.directory()).get(upgraded, "gen.Resource"));
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        GeneratedClassCache cache = new GeneratedClassCache(Compilation.tempDir("cache"));
+        cache.put(GeneratedClassCacheTest.class, "gen.Resource", BYTES);
+
+        RandomAccessFile file = new RandomAccessFile(cached(cache), "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+        assertNull(cache.get(GeneratedClassCacheTest.class, "gen.Resource"));
+
+        // Too short to have a digest.
+        file = new RandomAccessFile(cached(cache), "rw");
+        try {
+            file.setLength(4);
+        } finally {
+            file.close();
+        }
+        assertNull(cache.get(GeneratedClassCacheTest.class, "gen.Resource"));
+    }
+
+    @Test
+    public void testCorruptFile() throws IOException {
+        GeneratedClassCache cache = new GeneratedClassCache(Compilation.tempDir("cache"));
+        cache.put(GeneratedClassCacheTest.class, "gen.Resource", BYTES);
+
+        RandomAccessFile file = new RandomAccessFile(cached(cache), "rw");
+        try {
+            file.seek(5);
+            file.write(42);
+        } finally {
+            file.close();
+        }
+        assertNull(cache.get(GeneratedClassCacheTest.class, "gen.Resource"));
+
+        // Generated again.
+        cache.put(GeneratedClassCacheTest.class, "gen.Resource", BYTES);
+        assertEquals(cache.get(GeneratedClassCacheTest.class, "gen.Resource"), BYTES);
+    }
+
+    /**
+     * Load a version of the same generator class, from its own ClassLoader.
+     */
+    private static Class<?> generator(String version) throws Exception {
+        File dir = Compilation.tempDir("generator");
+        Compilation.compile(dir, Collections.<String>emptyList(),
+                "gen.Generator", "package gen; public class Generator { String version = \"" + version + "\"; }");
+        return new URLClassLoader(new URL[]{dir.toURI().toURL()}, null).loadClass("gen.Generator");
+    }
+
+    private static File cached(GeneratedClassCache cache) {
+        File[] files = cache.directory().listFiles();
+        assertEquals(files.length, 1);
+        return files[0];
+    }
+}
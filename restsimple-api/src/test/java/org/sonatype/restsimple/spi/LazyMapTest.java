@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class LazyMapTest {
+
+    @Test
+    public void testBuiltOnFirstRead() {
+        CountingMap map = new CountingMap();
+        assertEquals(map.builds, 0);
+
+        assertEquals(map.get("a"), Arrays.asList("1", "2"));
+        assertTrue(map.containsKey("b"));
+        assertEquals(map.size(), 2);
+        assertFalse(map.isEmpty());
+        assertEquals(map.builds, 1);
+    }
+
+    @Test
+    public void testLoad() {
+        CountingMap map = new CountingMap();
+        map.load();
+        assertEquals(map.builds, 1);
+
+        map.load();
+        assertEquals(map.keySet().size(), 2);
+        assertEquals(map.builds, 1);
+    }
+
+    @Test
+    public void testUnmodifiable() {
+        CountingMap map = new CountingMap();
+        try {
+            map.put("c", Arrays.asList("3"));
+            fail("The map can be modified");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            map.keySet().remove("a");
+            fail("The map can be modified");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testEquals() {
+        Map<String, Collection<String>> expected = new HashMap<String, Collection<String>>();
+        expected.put("a", Arrays.asList("1", "2"));
+        expected.put("b", Arrays.<String>asList());
+
+        assertEquals(new CountingMap(), expected);
+        assertEquals(expected, new CountingMap());
+    }
+
+    private final static class CountingMap extends LazyMap<String, Collection<String>> {
+
+        int builds;
+
+        @Override
+        protected Map<String, Collection<String>> build() {
+            builds++;
+            Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
+            map.put("a", Arrays.asList("1", "2"));
+            map.put("b", Arrays.<String>asList());
+            return map;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.MediaType;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class MediaTypeMatcherTest {
+
+    private final static MediaType JSON = MediaType.of("application", "json");
+    private final static MediaType JSON_V2 = MediaType.of("application/json;v=2");
+    private final static MediaType XML = MediaType.of("application", "xml");
+
+    @Test
+    public void testParse() {
+        MediaRange range = MediaRange.parse("text/html, Application/JSON;V=\"2\";q=0.5;ext=1, *").get(1);
+        assertEquals(range.type(), "application");
+        assertEquals(range.subType(), "json");
+        assertEquals(range.quality(), 0.5f);
+        assertEquals(range.parameters().get("v"), "2");
+        assertFalse(range.parameters().containsKey("ext"));
+        assertEquals(MediaRange.parse("text/html, Application/JSON;V=\"2\";q=0.5;ext=1, *").size(), 3);
+    }
+
+    @Test
+    public void testIncludes() {
+        MediaRange json = MediaRange.parse("application/json").get(0);
+        assertTrue(json.includes(JSON));
+        assertTrue(json.includes(JSON_V2));
+        assertFalse(json.includes(XML));
+
+        MediaRange jsonV2 = MediaRange.parse("application/json;V=2").get(0);
+        assertTrue(jsonV2.includes(JSON_V2));
+        assertTrue(jsonV2.includes(MediaType.of("application/json;v=2;charset=utf-8")));
+        assertFalse(jsonV2.includes(JSON));
+        assertFalse(jsonV2.includes(MediaType.of("application/json;v=3")));
+
+        assertTrue(MediaRange.parse("application/*").get(0).includes(XML));
+        assertTrue(MediaRange.parse("*/*").get(0).includes(XML));
+    }
+
+    @Test
+    public void testSelect() {
+        MediaTypeMatcher matcher = new MediaTypeMatcher(Arrays.asList(JSON, XML));
+        assertSame(matcher.select(null), JSON);
+        assertSame(matcher.select("application/xml"), XML);
+        assertSame(matcher.select("application/json;q=0.5, application/xml"), XML);
+        assertSame(matcher.select("application/*;q=0.5, application/json;q=0.1"), XML);
+        assertNull(matcher.select("text/html"));
+        assertFalse(matcher.accepts("text/html"));
+        assertTrue(matcher.accepts("*/*"));
+    }
+
+    @Test
+    public void testParameterizedRange() {
+        // The excluded version doesn't apply to the media type without the parameter.
+        MediaTypeMatcher matcher = new MediaTypeMatcher(Arrays.asList(JSON));
+        assertSame(matcher.select("application/json;v=2;q=0, application/json"), JSON);
+        assertNull(matcher.select("application/json;v=2"));
+
+        matcher = new MediaTypeMatcher(Arrays.asList(JSON_V2, JSON));
+        assertSame(matcher.select("application/json;v=2;q=0, application/json"), JSON);
+        assertSame(matcher.select("application/json;v=2, application/json;q=0.5"), JSON_V2);
+    }
+
+    @Test
+    public void testPreferred() {
+        assertEquals(MediaTypeMatcher.preferred("text/html;q=0.5, application/json").toString(), "application/json");
+        assertNull(MediaTypeMatcher.preferred("text/html;q=0"));
+    }
+}
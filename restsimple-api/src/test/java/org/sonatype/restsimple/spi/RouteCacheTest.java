@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.Action;
+import org.sonatype.restsimple.api.ActionContext;
+import org.sonatype.restsimple.api.ActionException;
+import org.sonatype.restsimple.api.GetServiceHandler;
+import org.sonatype.restsimple.api.ServiceHandler;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class RouteCacheTest {
+
+    private final Action<Object, Object> action = new Action<Object, Object>() {
+        @Override
+        public Object action(ActionContext<Object> actionContext) throws ActionException {
+            return null;
+        }
+    };
+
+    @Test
+    public void testHitsAndMisses() {
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper()
+                .addServiceHandler("", new GetServiceHandler("/pet/:id", action))
+                .withRouteCache(10);
+
+        RouteMatch first = mapper.match("get", "/pet/1");
+        assertEquals(mapper.routeCacheMisses(), 1);
+        assertEquals(mapper.routeCacheHits(), 0);
+
+        assertSame(mapper.match("get", "/pet/1"), first);
+        assertEquals(mapper.routeCacheHits(), 1);
+
+        mapper.match("get", "/pet/2");
+        assertEquals(mapper.routeCacheMisses(), 2);
+    }
+
+    @Test
+    public void testMethodCaseSharesEntries() {
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper()
+                .addServiceHandler("", new GetServiceHandler("/pet/:id", action))
+                .withRouteCache(10);
+
+        RouteMatch first = mapper.match("GET", "/pet/1");
+        assertSame(mapper.match("get", "/pet/1"), first);
+        assertSame(mapper.match("Get", "/pet/1"), first);
+        assertEquals(mapper.routeCacheMisses(), 1);
+        assertEquals(mapper.routeCacheHits(), 2);
+    }
+
+    @Test
+    public void testDisabled() {
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper()
+                .addServiceHandler("", new GetServiceHandler("/pet/:id", action));
+
+        assertNotNull(mapper.match("get", "/pet/1"));
+        assertNotNull(mapper.match("get", "/pet/1"));
+        assertEquals(mapper.routeCacheHits(), 0);
+        assertEquals(mapper.routeCacheMisses(), 0);
+    }
+
+    @Test
+    public void testClearedWhenRoutesChange() {
+        ServiceHandler serviceHandler = new GetServiceHandler("/pet/:id", action);
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper()
+                .addServiceHandler("", serviceHandler)
+                .withRouteCache(10);
+
+        assertNotNull(mapper.match("get", "/pet/1"));
+        mapper.removeServiceHandler(serviceHandler);
+        assertNull(mapper.match("get", "/pet/1"));
+        assertNull(mapper.map("get", "/pet/1"));
+    }
+
+    @Test
+    public void testEviction() {
+        RouteMatch routeMatch = new ServiceHandlerMapper()
+                .addServiceHandler("", new GetServiceHandler("/pet/:id", action))
+                .match("get", "/pet/1");
+
+        RouteCache single = new RouteCache(1);
+        single.put("get", "/pet/1", routeMatch);
+        single.put("get", "/pet/2", routeMatch);
+        assertNull(single.get("get", "/pet/1"));
+        assertSame(single.get("get", "/pet/2"), routeMatch);
+
+        RouteCache cache = new RouteCache(32);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("get", "/pet/" + i, routeMatch);
+        }
+        int cached = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.get("get", "/pet/" + i) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached > 0 && cached <= 32, cached + " cached lookups");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        RouteMatch routeMatch = new ServiceHandlerMapper()
+                .addServiceHandler("", new GetServiceHandler("/pet/:id", action))
+                .match("get", "/pet/1");
+
+        RouteCache cache = new RouteCache(2, 1);
+        cache.put("get", "/pet/1", routeMatch);
+        cache.put("get", "/pet/2", routeMatch);
+        assertSame(cache.get("get", "/pet/1"), routeMatch);
+        cache.put("get", "/pet/3", routeMatch);
+
+        assertSame(cache.get("get", "/pet/1"), routeMatch);
+        assertNull(cache.get("get", "/pet/2"));
+        assertSame(cache.get("get", "/pet/3"), routeMatch);
+    }
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi;
+
+import org.sonatype.restsimple.api.Action;
+import org.sonatype.restsimple.api.ActionContext;
+import org.sonatype.restsimple.api.ActionException;
+import org.sonatype.restsimple.api.DefaultServiceDefinition;
+import org.sonatype.restsimple.api.GetServiceHandler;
+import org.sonatype.restsimple.api.MediaType;
+import org.sonatype.restsimple.api.PostServiceHandler;
+import org.sonatype.restsimple.api.ServiceDefinition;
+import org.sonatype.restsimple.api.ServiceHandler;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class ServiceHandlerMapperTest {
+
+    private final Action<Object, Object> action = new Action<Object, Object>() {
+        @Override
+        public Object action(ActionContext<Object> actionContext) throws ActionException {
+            return null;
+        }
+    };
+
+    @Test
+    public void testMatch() {
+        ServiceHandler get = new GetServiceHandler("/pet/:id", action);
+        ServiceHandler post = new PostServiceHandler("/pet/:id", action);
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper()
+                .addServiceHandler("", get)
+                .addServiceHandler("", post);
+
+        RouteMatch match = mapper.match("GET", "/pet/1");
+        assertSame(match.serviceHandler(), get);
+        assertEquals(match.pathParams().get("id"), "1");
+        assertSame(mapper.map("post", "pet/2"), post);
+        assertNull(mapper.map("delete", "/pet/1"));
+        assertNull(mapper.map("get", "/pet/1/2"));
+    }
+
+    @Test
+    public void testPathParamNames() {
+        ServiceDefinition pets = new DefaultServiceDefinition()
+                .withPath("/stores/:store")
+                .withHandler(new GetServiceHandler("/pets/:id", action));
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper().addServiceDefinition(pets);
+
+        RouteMatch match = mapper.match("GET", "/stores/shop/pets/1");
+        assertEquals(match.pathParamNames(), new String[]{"store", "id"});
+        assertSame(mapper.match("GET", "/stores/other/pets/2").pathParamNames(), match.pathParamNames());
+    }
+
+    @Test
+    public void testNegotiationHeader() {
+        final AtomicInteger generated = new AtomicInteger();
+        NegotiationTokenGenerator generator = new RFC2295NegotiationTokenGenerator() {
+            @Override
+            public String generateNegotiationHeader(String uri, List<MediaType> mediaTypes) {
+                generated.incrementAndGet();
+                return super.generateNegotiationHeader(uri, mediaTypes);
+            }
+        };
+        ServiceHandler get = new GetServiceHandler("/pet/:id", action).producing(new MediaType("application", "json"));
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper().addServiceHandler("/store", get);
+
+        // Generated once for each requested path.
+        String header = mapper.match("GET", "/store/pet/1").negotiationHeader(generator, "/store/pet/1");
+        assertEquals(header, "{\"/store/pet/1\" 1.0 {type application/json}}");
+        assertSame(mapper.match("GET", "/store/pet/1").negotiationHeader(generator, "/store/pet/1"), header);
+        assertSame(mapper.negotiationHeader(mapper.map("GET", "/store/pet/1"), generator, "/store/pet/1"), header);
+        assertEquals(generated.get(), 1);
+
+        assertEquals(mapper.match("GET", "/store/pet/2").negotiationHeader(generator, "/store/pet/2"),
+                "{\"/store/pet/2\" 1.0 {type application/json}}");
+        assertEquals(generated.get(), 2);
+
+        assertNull(mapper.negotiationHeader(new GetServiceHandler("/pet/:id", action), generator, "/pet/1"));
+    }
+
+    @Test
+    public void testRemoveByIdentity() {
+        ServiceHandler mapped = new GetServiceHandler("/pet/:id", action);
+        ServiceHandler samePath = new GetServiceHandler("/pet/:id", action);
+        ServiceHandler other = new GetServiceHandler("/store/:id", action);
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper()
+                .addServiceHandler("", mapped)
+                .addServiceHandler("", other);
+
+        // Not the mapped instance, even if it has the same method and path.
+        mapper.removeServiceHandler(samePath);
+        assertSame(mapper.map("get", "/pet/1"), mapped);
+
+        mapper.removeServiceHandler(mapped);
+        assertNull(mapper.map("get", "/pet/1"));
+        assertSame(mapper.map("get", "/store/1"), other);
+    }
+
+    @Test
+    public void testRemoveServiceDefinition() {
+        ServiceDefinition pets = new DefaultServiceDefinition()
+                .withPath("/pets")
+                .withHandler(new GetServiceHandler("/:id", action))
+                .withHandler(new PostServiceHandler("/:id", action));
+        ServiceHandler other = new GetServiceHandler("/store/:id", action);
+        ServiceHandlerMapper mapper = new ServiceHandlerMapper()
+                .addServiceDefinition(pets)
+                .addServiceHandler("", other);
+
+        assertNotNull(mapper.map("get", "/pets/1"));
+        assertNotNull(mapper.map("post", "/pets/1"));
+
+        mapper.removeServiceDefinition(pets);
+        assertNull(mapper.map("get", "/pets/1"));
+        assertNull(mapper.map("post", "/pets/1"));
+        assertSame(mapper.map("get", "/store/1"), other);
+    }
+
+    @Test(timeOut = 20000)
+    public void testAddAndRemoveWhileMatching() throws Throwable {
+        final ServiceHandler stable = new GetServiceHandler("/stable/:id", action);
+        final ServiceHandlerMapper mapper = new ServiceHandlerMapper().addServiceHandler("", stable);
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch started = new CountDownLatch(4);
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        while (!done.get()) {
+                            RouteMatch match = mapper.match("get", "/stable/1");
+                            if (match == null || match.serviceHandler() != stable) {
+                                throw new AssertionError("Lost the stable route: " + match);
+                            }
+                            // Either mapped or not, but never a partially built table.
+                            match = mapper.match("get", "/dynamic/7/1");
+                            if (match != null && !match.pathParams().get("id").equals("1")) {
+                                throw new AssertionError("Invalid path parameters: " + match.pathParams());
+                            }
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            };
+            reader.start();
+            readers.add(reader);
+        }
+
+        started.await();
+        List<ServiceHandler> dynamic = new ArrayList<ServiceHandler>();
+        for (int i = 0; i < 500; i++) {
+            ServiceHandler serviceHandler = new GetServiceHandler("/dynamic/" + (i % 10) + "/:id", action);
+            mapper.addServiceHandler("", serviceHandler);
+            dynamic.add(serviceHandler);
+            if (dynamic.size() > 5) {
+                mapper.removeServiceHandler(dynamic.remove(0));
+            }
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        assertSame(mapper.map("get", "/stable/1"), stable);
+        for (ServiceHandler serviceHandler : dynamic) {
+            assertSame(mapper.map("get", serviceHandler.path().replace(":id", "1")), serviceHandler);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.scan;
+
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ClassIndexProcessorTest {
+
+    private final static String SERVICE = "org.sonatype.restsimple.annotation.Service";
+
+    @Test
+    public void testIndex() throws Exception {
+        File output = Compilation.tempDir("index");
+        Compilation.compileIndexed(output,
+                "idx.A", "package idx; @" + SERVICE + " public class A { @" + SERVICE + " public static class Inner {} }",
+                "idx.B", "package idx; @Deprecated public class B {}",
+                "idx.C", "package idx; public class C {}");
+
+        List<String> index = read(output);
+        assertTrue(index.get(0).startsWith(ClassIndexProcessor.INDEXES + " "));
+        assertTrue(Arrays.asList(index.get(0).split(" ")).contains(SERVICE));
+        assertEquals(index.subList(1, index.size()), Arrays.asList(
+                "class idx.A",
+                "class idx.B",
+                "class idx.C",
+                SERVICE + " idx.A",
+                SERVICE + " idx.A$Inner"));
+    }
+
+    @Test
+    public void testAnnotationsOption() throws Exception {
+        File output = Compilation.tempDir("index");
+        Compilation.compile(output, Arrays.asList("-processor", ClassIndexProcessor.class.getName(),
+                "-A" + ClassIndexProcessor.ANNOTATIONS_OPTION + "=idx.Marker"),
+                "idx.Marker", "package idx; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Marker {}",
+                "idx.Source", "package idx; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.SOURCE) public @interface Source {}",
+                "idx.A", "package idx; @Marker public class A {}",
+                "idx.B", "package idx; @Source public class B {}");
+
+        List<String> index = read(output);
+        assertTrue(Arrays.asList(index.get(0).split(" ")).contains("idx.Marker"));
+        assertTrue(index.contains("idx.Marker idx.A"));
+        // Only runtime annotations can be looked for.
+        assertFalse(index.contains("idx.Source idx.B"));
+    }
+
+    @Test
+    public void testNoIndexWithoutIndexedAnnotation() throws Exception {
+        File output = Compilation.tempDir("index");
+        Compilation.compileIndexed(output, "idx.A", "package idx; public class A {}");
+
+        assertFalse(new File(output, ClassIndexProcessor.INDEX).exists());
+    }
+
+    @Test
+    public void testIncrementalCompilation() throws Exception {
+        File output = Compilation.tempDir("index");
+        Compilation.compileIndexed(output,
+                "idx.A", "package idx; @" + SERVICE + " public class A {}",
+                "idx.B", "package idx; public class B {}",
+                "idx.C", "package idx; @" + SERVICE + " public class C {}");
+
+        // Only B is compiled again, A and C are still on the class path.
+        Compilation.compileIndexed(output, "idx.B", "package idx; @" + SERVICE + " public class B {}");
+        List<String> index = read(output);
+        assertEquals(index.subList(1, index.size()), Arrays.asList(
+                "class idx.A",
+                "class idx.B",
+                "class idx.C",
+                SERVICE + " idx.A",
+                SERVICE + " idx.B",
+                SERVICE + " idx.C"));
+
+        // C is deleted.
+        new File(output, "idx/C.class").delete();
+        Compilation.compileIndexed(output, "idx.B", "package idx; @" + SERVICE + " public class B { A a; }");
+        index = read(output);
+        assertEquals(index.subList(1, index.size()), Arrays.asList(
+                "class idx.A",
+                "class idx.B",
+                SERVICE + " idx.A",
+                SERVICE + " idx.B"));
+    }
+
+    private static List<String> read(File output) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(new File(output, ClassIndexProcessor.INDEX)), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
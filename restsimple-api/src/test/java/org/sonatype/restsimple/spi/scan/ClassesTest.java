@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.scan;
+
+import com.google.inject.matcher.Matchers;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ClassesTest {
+
+    private final static String SERVICE = "org.sonatype.restsimple.annotation.Service";
+
+    private final static String[] SOURCES = {
+            "scan.Anchor", "package scan; public class Anchor {}",
+            "scan.Marker", "package scan; @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Marker {}",
+            "scan.Inheritable", "package scan; @java.lang.annotation.Inherited @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Inheritable {}",
+            "scan.Annotated", "package scan; @" + SERVICE + " public class Annotated { public static class Nested {} }",
+            "scan.Plain", "package scan; public class Plain {}",
+            "scan.Marked", "package scan; @Marker public class Marked {}",
+            "scan.Base", "package scan; @Inheritable public class Base {}",
+            "scan.Sub", "package scan; public class Sub extends Base {}",
+            "scan.sub.SubAnnotated", "package scan.sub; @" + SERVICE + " public class SubAnnotated {}"
+    };
+
+    private File indexed;
+    private File scanned;
+
+    @BeforeClass
+    public void compile() throws IOException {
+        indexed = Compilation.tempDir("indexed");
+        Compilation.compileIndexed(indexed, SOURCES);
+
+        scanned = Compilation.tempDir("scanned");
+        Compilation.compile(scanned, Arrays.asList("-proc:none"), SOURCES);
+    }
+
+    @Test
+    public void testIndexIsUsed() throws Exception {
+        File dir = copy(indexed);
+        // An index not listing an annotated class, but listing all the classes, is trusted.
+        removeFromIndex(dir, SERVICE + " scan.Annotated");
+
+        assertEquals(find(loader(dir), services()), names("scan.sub.SubAnnotated"));
+    }
+
+    @Test
+    public void testIndexNotListingEveryClass() throws Exception {
+        File dir = copy(indexed);
+        // Like the only index left in a jar merging several jars.
+        removeFromIndex(dir, SERVICE + " scan.Annotated", "class scan.Annotated");
+
+        assertEquals(find(loader(dir), services()), names("scan.Annotated", "scan.sub.SubAnnotated"));
+    }
+
+    @Test
+    public void testIndexWithoutTheAnnotation() throws Exception {
+        RecordingClassLoader loader = loader(indexed);
+        Class<? extends Annotation> marker = loader.loadClass("scan.Marker").asSubclass(Annotation.class);
+
+        assertEquals(find(loader, Classes.annotatedWith(marker)), names("scan.Marked"));
+    }
+
+    @Test
+    public void testDirectory() throws Exception {
+        RecordingClassLoader loader = loader(scanned);
+
+        assertEquals(find(loader, services()), names("scan.Annotated", "scan.sub.SubAnnotated"));
+        // The annotations are read from the class files, so the other classes aren't loaded.
+        assertFalse(loader.loaded.contains("scan.Plain"));
+        assertFalse(loader.loaded.contains("scan.Marked"));
+        assertFalse(loader.loaded.contains("scan.Annotated$Nested"));
+    }
+
+    @Test
+    public void testJar() throws Exception {
+        RecordingClassLoader loader = loader(Compilation.jar(File.createTempFile("restsimple", ".jar"), scanned));
+
+        assertEquals(find(loader, services()), names("scan.Annotated", "scan.sub.SubAnnotated"));
+        assertFalse(loader.loaded.contains("scan.Plain"));
+        assertFalse(loader.loaded.contains("scan.Marked"));
+    }
+
+    @Test
+    public void testJarWithIndex() throws Exception {
+        File dir = copy(indexed);
+        removeFromIndex(dir, SERVICE + " scan.Annotated");
+        RecordingClassLoader loader = loader(Compilation.jar(File.createTempFile("restsimple", ".jar"), dir));
+
+        assertEquals(find(loader, services()), names("scan.sub.SubAnnotated"));
+    }
+
+    @Test
+    public void testMergedJar() throws Exception {
+        File other = Compilation.tempDir("other");
+        Compilation.compileIndexed(other, "scan.Other", "package scan; @" + SERVICE + " public class Other {}");
+        // The index of the other jar wins, and doesn't list the classes of the first one.
+        RecordingClassLoader loader = loader(Compilation.jar(File.createTempFile("restsimple", ".jar"), other, indexed));
+
+        assertEquals(find(loader, services()), names("scan.Annotated", "scan.Other", "scan.sub.SubAnnotated"));
+    }
+
+    @Test
+    public void testInheritedAnnotation() throws Exception {
+        RecordingClassLoader loader = loader(indexed);
+        Class<? extends Annotation> inheritable = loader.loadClass("scan.Inheritable").asSubclass(Annotation.class);
+
+        // Sub has no annotation in its class file.
+        assertEquals(find(loader, Classes.annotatedWith(inheritable)), names("scan.Base", "scan.Sub"));
+    }
+
+    @Test
+    public void testSeveralRootsAndClasses() throws Exception {
+        File other = Compilation.tempDir("other");
+        Compilation.compile(other, Arrays.asList("-proc:none"),
+                "scan.Other", "package scan; @" + SERVICE + " public class Other {}");
+        RecordingClassLoader loader = loader(scanned, Compilation.jar(File.createTempFile("restsimple", ".jar"), other));
+
+        Classes services = services(loader);
+        Classes subClasses = Classes.matching(Matchers.subclassesOf(loader.loadClass("scan.Base")));
+        Map<Classes, Set<Class<?>>> found = scan(loader, services, subClasses);
+
+        assertEquals(names(found.get(services)), names("scan.Annotated", "scan.Other", "scan.sub.SubAnnotated"));
+        assertEquals(names(found.get(subClasses)), names("scan.Base", "scan.Sub"));
+    }
+
+    private static Classes services() {
+        return Classes.annotatedWith(org.sonatype.restsimple.annotation.Service.class);
+    }
+
+    private static Classes services(ClassLoader loader) throws ClassNotFoundException {
+        return Classes.annotatedWith(loader.loadClass(SERVICE).asSubclass(Annotation.class));
+    }
+
+    private static Set<String> find(RecordingClassLoader loader, Classes classes) throws Exception {
+        return names(scan(loader, classes).get(classes));
+    }
+
+    private static Map<Classes, Set<Class<?>>> scan(RecordingClassLoader loader, Classes... classes) throws Exception {
+        Package pack = loader.loadClass("scan.Anchor").getPackage();
+        loader.loaded.clear();
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            return Classes.in(Collections.singleton(pack), classes);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private static Set<String> names(Set<Class<?>> classes) {
+        Set<String> names = new HashSet<String>();
+        for (Class<?> c : classes) {
+            names.add(c.getName());
+        }
+        return names;
+    }
+
+    private static Set<String> names(String... names) {
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
+    private static RecordingClassLoader loader(File... roots) throws IOException {
+        URL[] urls = new URL[roots.length];
+        for (int i = 0; i < roots.length; i++) {
+            urls[i] = roots[i].toURI().toURL();
+        }
+        return new RecordingClassLoader(urls);
+    }
+
+    private static File copy(File dir) throws IOException {
+        File copy = Compilation.tempDir("copy");
+        copy(dir, copy);
+        return copy;
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        for (File file : from.listFiles()) {
+            File target = new File(to, file.getName());
+            if (file.isDirectory()) {
+                target.mkdirs();
+                copy(file, target);
+            } else {
+                FileInputStream in = new FileInputStream(file);
+                FileOutputStream out = new FileOutputStream(target);
+                try {
+                    byte[] buffer = new byte[4096];
+                    for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                        out.write(buffer, 0, n);
+                    }
+                } finally {
+                    in.close();
+                    out.close();
+                }
+            }
+        }
+    }
+
+    private static void removeFromIndex(File dir, String... lines) throws IOException {
+        File index = new File(dir, ClassIndexProcessor.INDEX);
+        List<String> kept = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                kept.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        for (String line : lines) {
+            assertTrue(kept.remove(line), line);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+        try {
+            for (String line : kept) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Record the classes it loads itself.
+     */
+    private final static class RecordingClassLoader extends URLClassLoader {
+
+        final Set<String> loaded = Collections.synchronizedSet(new HashSet<String>());
+
+        RecordingClassLoader(URL[] urls) {
+            super(urls, ClassesTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            loaded.add(name);
+            return super.findClass(name);
+        }
+    }
+}
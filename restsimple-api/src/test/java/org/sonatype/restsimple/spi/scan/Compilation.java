@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.scan;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Compile sources, with or without the {@link ClassIndexProcessor}, for the tests needing classes of their own.
+ */
+public final class Compilation {
+
+    private Compilation() {
+    }
+
+    public static File tempDir(String name) throws IOException {
+        File dir = File.createTempFile("restsimple", name);
+        dir.delete();
+        dir.mkdirs();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Compile sources into a directory.
+     * @param output the directory, also added to the class path.
+     * @param options the options of javac, for example -proc:none.
+     * @param sources pairs of class name and source.
+     */
+    public static void compile(File output, List<String> options, String... sources) {
+        List<JavaFileObject> files = new ArrayList<JavaFileObject>();
+        for (int i = 0; i < sources.length; i += 2) {
+            final String source = sources[i + 1];
+            files.add(new SimpleJavaFileObject(URI.create("string:///" + sources[i].replace('.', '/') + ".java"),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            });
+        }
+
+        List<String> allOptions = new ArrayList<String>(Arrays.asList("-d", output.getPath(), "-classpath",
+                output.getPath() + File.pathSeparator + System.getProperty("java.class.path")));
+        allOptions.addAll(options);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (!compiler.getTask(null, null, null, allOptions, null, files).call()) {
+            throw new IllegalStateException("Unable to compile " + Arrays.asList(sources));
+        }
+    }
+
+    public static void compileIndexed(File output, String... sources) {
+        compile(output, Arrays.asList("-processor", ClassIndexProcessor.class.getName()), sources);
+    }
+
+    /**
+     * Write the files of directories in a jar, the first one winning, like a shaded jar without transformer.
+     */
+    public static File jar(File jar, File... dirs) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            List<String> names = new ArrayList<String>();
+            for (File dir : dirs) {
+                add(out, dir, "", names);
+            }
+        } finally {
+            out.close();
+        }
+        jar.deleteOnExit();
+        return jar;
+    }
+
+    private static void add(JarOutputStream out, File dir, String prefix, List<String> names) throws IOException {
+        for (File file : dir.listFiles()) {
+            String name = prefix + file.getName();
+            if (file.isDirectory()) {
+                if (!names.contains(name + "/")) {
+                    names.add(name + "/");
+                    out.putNextEntry(new JarEntry(name + "/"));
+                }
+                add(out, file, name + "/", names);
+            } else if (!names.contains(name)) {
+                names.add(name);
+                out.putNextEntry(new JarEntry(name));
+                InputStream in = new FileInputStream(file);
+                try {
+                    byte[] buffer = new byte[4096];
+                    for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                        out.write(buffer, 0, n);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.uri;
+
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.regex.MatchResult;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class SegmentMatcherTest {
+
+    private static final String[] TEMPLATE_PARTS = {
+            "/", "/", "a", "pet", ".", "-", "%20", "{x}", "{y}", "{z}"
+    };
+
+    private static final String[] PATH_PARTS = {
+            "/", "/", "a", "pet", ".", "-", "%20", " ", "1", "a.b", "x-y"
+    };
+
+    @Test
+    public void testLiteralsAroundVariables() {
+        assertSameMatch("/pet/{id}.json", "/pet/12.json");
+        assertSameMatch("/pet/{id}.json", "/pet/a.b.json");
+        assertSameMatch("/pet/{id}.json", "/pet/.json");
+        assertSameMatch("/pet/{a}-{b}", "/pet/x-y-z");
+        assertSameMatch("/pet/{id}", "/pet/1/");
+        assertSameMatch("/pet/{id}/", "/pet/1/");
+        assertSameMatch("/pet/%20{id}", "/pet/%201");
+        assertSameMatch("/pet/%20{id}", "/pet/ 1");
+    }
+
+    @Test
+    public void testSimpleTemplatesUseSegmentMatcher() {
+        assertTrue(new UriTemplateParser("/pet/{id}.json").isSimple());
+        assertFalse(new UriTemplateParser("/pet/{id: [0-9]+}").isSimple());
+        assertFalse(new UriTemplateParser("/pet/a+b").isSimple());
+    }
+
+    @Test
+    public void testRandomTemplatesAgreeWithRegex() {
+        Random random = new Random(4);
+        int matches = 0;
+        for (int i = 0; i < 2000; i++) {
+            String template = concat(random, TEMPLATE_PARTS, "/");
+            for (int j = 0; j < 10; j++) {
+                if (assertSameMatch(template, concat(random, PATH_PARTS, "/"))) {
+                    matches++;
+                }
+            }
+        }
+        assertTrue(matches > 100, "Only " + matches + " matches");
+    }
+
+    /**
+     * Assert that the {@link SegmentMatcher} of a template matches the same values as its regular expression.
+     * @return true if the template matches.
+     */
+    private static boolean assertSameMatch(String template, String path) {
+        UriTemplateParser parser = new UriTemplateParser(template);
+        if (!parser.isSimple()) {
+            return false;
+        }
+
+        MatchResult expected = new UriPattern(parser.getPattern(), parser.getGroupIndexes()).match(path);
+        MatchResult result = new UriPattern(parser).match(path);
+        if (expected == null) {
+            assertNull(result, template + " " + path);
+            return false;
+        }
+
+        assertNotNull(result, template + " " + path);
+        assertEquals(result.groupCount(), expected.groupCount(), template + " " + path);
+        for (int i = 0; i <= expected.groupCount(); i++) {
+            assertEquals(result.group(i), expected.group(i), template + " " + path + " group " + i);
+        }
+        return true;
+    }
+
+    private static String concat(Random random, String[] parts, String prefix) {
+        StringBuilder b = new StringBuilder(prefix);
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            b.append(parts[random.nextInt(parts.length)]);
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.spi.uri;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class UriTemplateTrieTest {
+
+    private static final String[] TEMPLATE_SEGMENTS = {
+            "a", "b", "pet", "a.b", "%20x", "a+b", "{x}", "{y}", "{z}", "pre{p}", "{q}.json", "{id: [0-9]+}", ""
+    };
+
+    private static final String[] PATH_SEGMENTS = {
+            "a", "b", "pet", "a.b", "%20x", " x", "a+b", "aab", "1", "42", "pre1", "pet.json", ""
+    };
+
+    @Test
+    public void testLiteralOverCapture() {
+        UriTemplateTrie<String> trie = new UriTemplateTrie<String>()
+                .add(new UriTemplate("/pet/{id}"), "capture")
+                .add(new UriTemplate("/pet/new"), "literal");
+
+        Map<String, String> values = new HashMap<String, String>();
+        assertEquals(trie.match("/pet/new", values), "literal");
+        assertTrue(values.isEmpty());
+        assertEquals(trie.match("/pet/1", values), "capture");
+        assertEquals(values.get("id"), "1");
+    }
+
+    @Test
+    public void testBacktrackFromLiteral() {
+        UriTemplateTrie<String> trie = new UriTemplateTrie<String>()
+                .add(new UriTemplate("/a/b/c"), "literal")
+                .add(new UriTemplate("/a/{x}/d"), "capture");
+
+        Map<String, String> values = new HashMap<String, String>();
+        assertEquals(trie.match("/a/b/c", values), "literal");
+        assertEquals(trie.match("/a/b/d", values), "capture");
+        assertEquals(values.get("x"), "b");
+        assertNull(trie.match("/a/b/e", values));
+    }
+
+    @Test
+    public void testRegexTemplate() {
+        UriTemplateTrie<String> trie = new UriTemplateTrie<String>()
+                .add(new UriTemplate("/pet/{id: [0-9]+}"), "regex");
+
+        Map<String, String> values = new HashMap<String, String>();
+        assertEquals(trie.match("/pet/12", values), "regex");
+        assertEquals(values.get("id"), "12");
+        assertNull(trie.match("/pet/abc", values));
+        assertAgrees("/pet/{id: [0-9]+}", "/pet/12");
+        assertAgrees("/pet/{id: [0-9]+}", "/pet/abc");
+    }
+
+    @Test
+    public void testPercentEncodedLiteral() {
+        UriTemplateTrie<String> trie = new UriTemplateTrie<String>()
+                .add(new UriTemplate("/pet/%20name"), "encoded");
+
+        assertEquals(trie.match("/pet/%20name", null), "encoded");
+        assertNull(trie.match("/pet/ name", null));
+        assertAgrees("/pet/%20name", "/pet/%20name");
+        assertAgrees("/pet/%20name", "/pet/ name");
+    }
+
+    @Test
+    public void testTrailingSlash() {
+        for (String template : new String[]{"/pet/{id}", "/pet/{id}/", "/pet/", "/pet"}) {
+            for (String path : new String[]{"/pet/1", "/pet/1/", "/pet/", "/pet", "/pet//"}) {
+                assertAgrees(template, path);
+            }
+        }
+    }
+
+    @Test
+    public void testReplace() {
+        UriTemplateTrie<String> trie = new UriTemplateTrie<String>()
+                .add(new UriTemplate("/pet/{id}"), "first")
+                .add(new UriTemplate("/pet/{id}"), "second");
+
+        assertEquals(trie.match("/pet/1", null), "second");
+    }
+
+    @Test
+    public void testRandomTemplatesAgreeWithUriTemplate() {
+        Random random = new Random(4);
+        int matches = 0;
+        for (int i = 0; i < 500; i++) {
+            List<UriTemplate> templates = new ArrayList<UriTemplate>();
+            UriTemplateTrie<UriTemplate> trie = new UriTemplateTrie<UriTemplate>();
+            for (int j = 0; j < 4; j++) {
+                UriTemplate template;
+                try {
+                    template = new UriTemplate(path(random, TEMPLATE_SEGMENTS));
+                } catch (IllegalArgumentException e) {
+                    // e.g the same variable declared with different regular expressions
+                    continue;
+                }
+                templates.add(template);
+                trie.add(template, template);
+            }
+
+            for (int j = 0; j < 20; j++) {
+                String path = path(random, PATH_SEGMENTS);
+                for (UriTemplate template : templates) {
+                    assertAgrees(template.getTemplate(), path);
+                }
+
+                Map<String, String> values = new HashMap<String, String>();
+                UriTemplate matched = trie.match(path, values);
+                if (matched == null) {
+                    for (UriTemplate template : templates) {
+                        assertFalse(template.match(path, new HashMap<String, String>()),
+                                template.getTemplate() + " matches " + path);
+                    }
+                } else {
+                    matches++;
+                    Map<String, String> expected = new HashMap<String, String>();
+                    assertTrue(matched.match(path, expected), matched.getTemplate() + " doesn't match " + path);
+                    assertEquals(values, expected, matched.getTemplate() + " " + path);
+                }
+            }
+        }
+        assertTrue(matches > 100, "Only " + matches + " matches");
+    }
+
+    /**
+     * Assert that a trie made of a single template gives the same result as the template's regular expression.
+     */
+    private static void assertAgrees(String template, String path) {
+        UriTemplate uriTemplate = new UriTemplate(template);
+        UriTemplateTrie<String> trie = new UriTemplateTrie<String>().add(uriTemplate, template);
+
+        Map<String, String> expected = new HashMap<String, String>();
+        boolean matches = uriTemplate.match(path, expected);
+        Map<String, String> values = new HashMap<String, String>();
+        String matched = trie.match(path, values);
+
+        assertEquals(matched != null, matches, template + " " + path);
+        if (matches) {
+            assertEquals(values, expected, template + " " + path);
+        }
+    }
+
+    private static String path(Random random, String[] segments) {
+        StringBuilder b = new StringBuilder();
+        int length = 1 + random.nextInt(3);
+        for (int i = 0; i < length; i++) {
+            b.append('/').append(segments[random.nextInt(segments.length)]);
+        }
+        return b.toString();
+    }
+}
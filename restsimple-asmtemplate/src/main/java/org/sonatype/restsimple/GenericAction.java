@@ -15,43 +15,47 @@ import org.sonatype.restsimple.api.Action;
 import org.sonatype.restsimple.api.ActionContext;
 import org.sonatype.restsimple.api.ActionException;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Map;
-
+/**
+ * NOTE: This class is not used, but MethodServiceDefinitionBuilder generates some form of it for every mapped method,
+ * invoking the method directly on the typed instance.
+ */
 public class GenericAction implements Action<String,Integer> {
 
-    private final Object object;
-    private final Method method;
-       
-    public GenericAction(Object object, Method method) {
+    private final Resource object;
+
+    public GenericAction(Resource object) {
         this.object = object;
-        this.method = method;
     }
 
     @Override
     public String action(final ActionContext<Integer> objectActionContext) throws ActionException {
         try {
-            return (String) method.invoke(object, new Object[] {getActionType(objectActionContext)});
-        } catch (IllegalAccessException e) {
-            throw new ActionException(e);
-        } catch (InvocationTargetException e) {
+            return object.read((Integer) getActionType(objectActionContext));
+        } catch (ActionException e) {
+            throw e;
+        } catch (Throwable e) {
             throw new ActionException(e);
         }
     }
 
     private final static Object getActionType(ActionContext<Integer> objectActionContext) {
         Object o = objectActionContext.get();
-        if (String.class.isAssignableFrom(o.getClass()) && String.class.cast(o).equalsIgnoreCase("")) {
-            Map<String,String> pathParams = objectActionContext.pathParams();
-
-            // The last key value is what we are looking for
-            for (Map.Entry<String,String> e : pathParams.entrySet()) {
-                if (!e.getValue().isEmpty()) {
-                    o = e.getValue();
+        if (String.class.isAssignableFrom(o.getClass()) && ((String) o).equalsIgnoreCase("")) {
+            // The last non empty path parameter is what we are looking for
+            for (int i = objectActionContext.pathParamCount() - 1; i >= 0; i--) {
+                String value = objectActionContext.pathParam(i);
+                if (!value.isEmpty()) {
+                    return value;
                 }
             }
-                    }
+        }
         return o;
     }
+
+    public static class Resource {
+
+        public String read(Integer id) {
+            return String.valueOf(id);
+        }
+    }
 }
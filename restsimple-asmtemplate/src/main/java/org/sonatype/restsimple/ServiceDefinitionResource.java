@@ -19,6 +19,8 @@ import org.sonatype.restsimple.api.ActionContext;
 import org.sonatype.restsimple.api.ActionException;
 import org.sonatype.restsimple.api.ServiceDefinition;
 import org.sonatype.restsimple.api.ServiceHandler;
+import org.sonatype.restsimple.jaxrs.impl.RequestMaps;
+import org.sonatype.restsimple.spi.RouteMatch;
 import org.sonatype.restsimple.spi.ServiceHandlerMapper;
 
 import javax.servlet.http.HttpServletRequest;
@@ -33,17 +35,11 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MultivaluedMap;
-import javax.ws.rs.core.PathSegment;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -69,7 +65,7 @@ public class ServiceDefinitionResource {
     @Consumes("application/vnd.org.sonatype.rest+json")
     @Produces("application/vnd.org.sonatype.rest+json")
     public Object get(@Context UriInfo uriInfo) {
-        Object response = invokeAction("get", uriInfo, null, mapMatrixParam(uriInfo), null);
+        Object response = invokeAction("get", uriInfo, null, RequestMaps.matrixParams(uriInfo), null);
         return response;
     }
 
@@ -78,7 +74,7 @@ public class ServiceDefinitionResource {
     @Consumes("application/vnd.org.sonatype.rest+json")
     @Produces("application/vnd.org.sonatype.rest+json")
     public Response head(@Context UriInfo uriInfo) {
-        Object response = invokeAction("head", uriInfo, null, mapMatrixParam(uriInfo), null);
+        Object response = invokeAction("head", uriInfo, null, RequestMaps.matrixParams(uriInfo), null);
         return Response.ok().build();
     }
 
@@ -88,7 +84,7 @@ public class ServiceDefinitionResource {
     @Produces("application/vnd.org.sonatype.rest+json")
     public Response put(@Context UriInfo uriInfo, Object jacksonObject) {
         URI location = UriBuilder.fromResource(getClass()).build(new String[]{"", "", ""});
-        Object response = invokeAction("put", uriInfo, uriInfo.getQueryParameters(), mapMatrixParam(uriInfo), jacksonObject);
+        Object response = invokeAction("put", uriInfo, uriInfo.getQueryParameters(), RequestMaps.matrixParams(uriInfo), jacksonObject);
         return Response.created(location).entity(response).build();
     }
 
@@ -96,7 +92,7 @@ public class ServiceDefinitionResource {
     @POST
     @Consumes("application/x-www-form-urlencoded")
     public Response post(@Context UriInfo uriInfo, MultivaluedMap<String, String> formParams) {
-        Object response = invokeAction("post", uriInfo, formParams, mapMatrixParam(uriInfo), null);
+        Object response = invokeAction("post", uriInfo, formParams, RequestMaps.matrixParams(uriInfo), null);
         if (response == null) {
             return Response.status(Response.Status.NO_CONTENT).build();
         } else {
@@ -109,7 +105,7 @@ public class ServiceDefinitionResource {
     @Consumes("application/vnd.org.sonatype.rest+json")
     @Produces("application/vnd.org.sonatype.rest+json")
     public Response postWithBody(@Context UriInfo uriInfo, Object jacksonObject) {
-        Object response = invokeAction("post", uriInfo, uriInfo.getQueryParameters(), mapMatrixParam(uriInfo), jacksonObject);
+        Object response = invokeAction("post", uriInfo, uriInfo.getQueryParameters(), RequestMaps.matrixParams(uriInfo), jacksonObject);
         if (response == null) {
             return Response.status(Response.Status.NO_CONTENT).build();
         } else {
@@ -122,7 +118,7 @@ public class ServiceDefinitionResource {
     @Consumes("application/vnd.org.sonatype.rest+json")
     @Produces("application/vnd.org.sonatype.rest+json")
     public Response delete(@Context UriInfo uriInfo, Object jacksonObject) {
-        Object response = invokeAction("delete", uriInfo, null, mapMatrixParam(uriInfo), jacksonObject);
+        Object response = invokeAction("delete", uriInfo, null, RequestMaps.matrixParams(uriInfo), jacksonObject);
         return Response.ok(response).build();
     }
 
@@ -132,11 +128,12 @@ public class ServiceDefinitionResource {
                                     Map<String, Collection<String>> matrixParams,
                                     T body) {
 
-        ServiceHandler serviceHandler = mapper.map(methodName, uriInfo.getPath());
-        if (serviceHandler == null) {
+        RouteMatch route = mapper.match(methodName, uriInfo.getPath());
+        if (route == null) {
             throw new WebApplicationException(Response.status(405).entity("Method not allowed").build());
         }
 
+        ServiceHandler serviceHandler = route.serviceHandler();
         if (!serviceHandler.getHttpMethod().name().equalsIgnoreCase(methodName)) {
             throw new WebApplicationException(Response.status(405).entity("Method not allowed").build());
         }
@@ -144,14 +141,9 @@ public class ServiceDefinitionResource {
         Object response = null;
         Action action = serviceHandler.getAction();
 
-        Map<String,String> map = new HashMap<String,String>();
-        for (Map.Entry<String,List<String>> l : uriInfo.getPathParameters().entrySet()) {
-            map.put(l.getKey(), l.getValue().get(0));
-        }
-
         try {
-            ActionContext<T> actionContext = new ActionContext<T>(mapMethod(request.getMethod()), mapHeaders(),
-                    mapFormParams(formParams), matrixParams, request.getInputStream(), map, body);
+            ActionContext<T> actionContext = new ActionContext<T>(mapMethod(request.getMethod()), RequestMaps.headers(request),
+                    RequestMaps.formParams(formParams), matrixParams, request.getInputStream(), route.pathParams(), body);
             response = action.action(actionContext);
         } catch (ActionException ex) {
             throw new WebApplicationException(ex, ex.getStatusCode());
@@ -162,23 +154,6 @@ public class ServiceDefinitionResource {
         return response;
     }
 
-    private Map<String, Collection<String>> mapFormParams(MultivaluedMap<String, String> formParams) {
-        Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
-        if (formParams != null) {
-            for (String hn : formParams.keySet()) {
-                List<String> l;
-                if (map.get(hn) != null) {
-                    map.get(hn).addAll(formParams.get(hn));
-                } else {
-                    l = new ArrayList<String>();
-                    l.addAll(formParams.get(hn));
-                    map.put(hn, l);
-                }
-            }
-        }
-        return Collections.unmodifiableMap(map);
-    }
-
     private ServiceDefinition.METHOD mapMethod(String method) {
         if (method.equalsIgnoreCase("GET")) {
             return ServiceDefinition.METHOD.GET;
@@ -194,33 +169,4 @@ public class ServiceDefinitionResource {
             throw new IllegalStateException("Invalid Method");
         }
     }
-
-    private Map<String, Collection<String>> mapHeaders() {
-        Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
-        Enumeration<String> e = request.getHeaderNames();
-        String hn;
-        List<String> l;
-        while (e.hasMoreElements()) {
-            hn = e.nextElement();
-            if (map.get(hn) != null) {
-                map.get(hn).add(request.getHeader(hn));
-            } else {
-                l = new ArrayList<String>();
-                l.add(request.getHeader(hn));
-                map.put(hn, l);
-            }
-        }
-        return Collections.unmodifiableMap(map);
-    }
-
-    private Map<String, Collection<String>> mapMatrixParam(UriInfo uriInfo) {
-        Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
-        List<PathSegment> params = uriInfo.getPathSegments();
-        for (PathSegment p : params) {
-            for (String key : p.getMatrixParameters().keySet()) {
-                map.put(key, p.getMatrixParameters().get(key));
-            }
-        }
-        return Collections.unmodifiableMap(map);
-    }
 }
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.restsimple.api.Action;
+import org.sonatype.restsimple.api.ActionContext;
+import org.sonatype.restsimple.api.DefaultServiceDefinition;
+import org.sonatype.restsimple.api.GetServiceHandler;
+import org.sonatype.restsimple.api.MediaType;
+import org.sonatype.restsimple.api.PostServiceHandler;
+import org.sonatype.restsimple.api.ServiceDefinition;
+import org.sonatype.restsimple.common.test.petstore.Pet;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.sonatype.restsimple.spi.RouteMatch;
+import org.sonatype.restsimple.spi.ServiceHandlerMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the server side dispatch of a request to an {@link Action}, without the HTTP layer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionBenchmark {
+
+    private final MediaType JSON = new MediaType(PetstoreAction.APPLICATION, PetstoreAction.JSON);
+
+    private PetstoreAction action;
+
+    private ServiceHandlerMapper mapper;
+
+    private Map<String, Collection<String>> headers;
+
+    private Map<String, Collection<String>> empty;
+
+    private Map<String, String> pathParams;
+
+    private InputStream inputStream;
+
+    private Pet pet;
+
+    @Setup
+    public void setUp() {
+        action = new PetstoreAction();
+
+        ServiceDefinition serviceDefinition = new DefaultServiceDefinition()
+                .withHandler(new GetServiceHandler("/getPet/:pet", action).consumeWith(JSON, Pet.class).producing(JSON))
+                .withHandler(new PostServiceHandler("/addPet/:pet", action).consumeWith(JSON, Pet.class).producing(JSON));
+        mapper = new ServiceHandlerMapper();
+        mapper.addServiceDefinition(serviceDefinition);
+
+        headers = new HashMap<String, Collection<String>>();
+        List<String> accept = new ArrayList<String>();
+        accept.add(JSON.toMediaType());
+        headers.put("Accept", accept);
+        List<String> contentType = new ArrayList<String>();
+        contentType.add(JSON.toMediaType());
+        headers.put("Content-Type", contentType);
+
+        empty = Collections.emptyMap();
+        pathParams = Collections.singletonMap("pet", "myPet");
+        inputStream = new ByteArrayInputStream(new byte[0]);
+        pet = new Pet("pouetpouet");
+
+        action.action(new ActionContext<Pet>(ServiceDefinition.METHOD.POST, headers, empty, empty, inputStream,
+                pathParams, pet));
+    }
+
+    @Benchmark
+    public ActionContext<Pet> actionContext() {
+        return new ActionContext<Pet>(ServiceDefinition.METHOD.GET, headers, empty, empty, inputStream,
+                pathParams, null);
+    }
+
+    @Benchmark
+    public Pet typedActionDispatch() {
+        return action.action(new ActionContext<Pet>(ServiceDefinition.METHOD.GET, headers, empty, empty, inputStream,
+                pathParams, null));
+    }
+
+    /**
+     * What a generated resource does for a <tt>GET /getPet/myPet</tt>, once the HTTP layer is removed.
+     */
+    @Benchmark
+    public Object petstoreGet() {
+        RouteMatch routeMatch = mapper.match("get", "/getPet/myPet");
+        Action<Object, Object> a = routeMatch.serviceHandler().getAction();
+        return a.action(new ActionContext<Object>(ServiceDefinition.METHOD.GET, headers, empty, empty, inputStream,
+                routeMatch.pathParams(), ""));
+    }
+
+    /**
+     * What a generated resource does for a <tt>POST /addPet/myPet</tt>, once the HTTP layer is removed.
+     */
+    @Benchmark
+    public Object petstorePost() {
+        RouteMatch routeMatch = mapper.match("post", "/addPet/myPet");
+        Action<Object, Object> a = routeMatch.serviceHandler().getAction();
+        return a.action(new ActionContext<Object>(ServiceDefinition.METHOD.POST, headers, empty, empty, inputStream,
+                routeMatch.pathParams(), pet));
+    }
+}
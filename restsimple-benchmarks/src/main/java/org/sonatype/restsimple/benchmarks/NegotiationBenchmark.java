@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.restsimple.api.GetServiceHandler;
+import org.sonatype.restsimple.api.MediaType;
+import org.sonatype.restsimple.client.RFC2295NegotiationHandler;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.sonatype.restsimple.spi.MediaRange;
+import org.sonatype.restsimple.spi.MediaTypeMatcher;
+import org.sonatype.restsimple.spi.RFC2295NegotiationTokenGenerator;
+import org.sonatype.restsimple.spi.RouteMatch;
+import org.sonatype.restsimple.spi.ServiceHandlerMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark both sides of the content negotiation: the server generating the <tt>Alternates</tt> header and matching
+ * the <tt>Accept</tt> header, and the client choosing a media type from the <tt>Alternates</tt> header.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NegotiationBenchmark {
+
+    private RFC2295NegotiationTokenGenerator tokenGenerator;
+
+    private RFC2295NegotiationHandler negotiationHandler;
+
+    private List<MediaType> produced;
+
+    private List<MediaType> accepted;
+
+    private Map<String, List<String>> headers;
+
+    private RouteMatch route;
+
+    private MediaTypeMatcher matcher;
+
+    private String accept = "text/html, application/xhtml+xml, application/vnd.org.sonatype.rest+json;q=0.9, */*;q=0.8";
+
+    @Setup
+    public void setUp() {
+        tokenGenerator = new RFC2295NegotiationTokenGenerator();
+        negotiationHandler = new RFC2295NegotiationHandler();
+
+        produced = new ArrayList<MediaType>();
+        produced.add(new MediaType("application", "vnd.org.sonatype.rest+xml"));
+        produced.add(new MediaType("application", "vnd.org.sonatype.rest+txt"));
+        produced.add(new MediaType("application", "vnd.org.sonatype.rest+json"));
+
+        GetServiceHandler serviceHandler = new GetServiceHandler("/getPet/:pet", new PetstoreAction());
+        for (MediaType mediaType : produced) {
+            serviceHandler.producing(mediaType);
+        }
+        route = new ServiceHandlerMapper().addServiceHandler("/petstore", serviceHandler)
+                .match("get", "/petstore/getPet/myPet");
+
+        matcher = new MediaTypeMatcher(produced);
+
+        accepted = Collections.singletonList(new MediaType("application", "vnd.org.sonatype.rest+json"));
+
+        headers = new HashMap<String, List<String>>();
+        headers.put("Alternates",
+                Collections.singletonList(tokenGenerator.generateNegotiationHeader("/petstore/getPet/myPet", produced)));
+    }
+
+    @Benchmark
+    public String generateNegotiationHeader() {
+        return tokenGenerator.generateNegotiationHeader("/petstore/getPet/myPet", produced);
+    }
+
+    @Benchmark
+    public String cachedNegotiationHeader() {
+        return route.negotiationHeader(tokenGenerator, "/petstore/getPet/myPet");
+    }
+
+    @Benchmark
+    public List<MediaRange> parseAccept() {
+        return MediaRange.parse(accept);
+    }
+
+    @Benchmark
+    public MediaType selectMediaType() {
+        return matcher.select(accept);
+    }
+
+    @Benchmark
+    public String negotiate() {
+        return negotiationHandler.negotiate(accepted, headers, 406, "Not Acceptable");
+    }
+}
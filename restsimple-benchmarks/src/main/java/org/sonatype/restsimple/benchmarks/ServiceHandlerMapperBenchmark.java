@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.restsimple.api.Action;
+import org.sonatype.restsimple.api.DefaultServiceDefinition;
+import org.sonatype.restsimple.api.GetServiceHandler;
+import org.sonatype.restsimple.api.PostServiceHandler;
+import org.sonatype.restsimple.api.ServiceDefinition;
+import org.sonatype.restsimple.api.ServiceHandler;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.sonatype.restsimple.spi.RouteMatch;
+import org.sonatype.restsimple.spi.ServiceHandlerMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark {@link ServiceHandlerMapper} lookups with a growing number of {@link ServiceHandler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceHandlerMapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int handlers;
+
+    private ServiceHandlerMapper mapper;
+
+    private String firstPath;
+
+    private String lastPath;
+
+    private String unmappedPath;
+
+    @Setup
+    public void setUp() {
+        Action action = new PetstoreAction();
+        ServiceDefinition serviceDefinition = new DefaultServiceDefinition().withPath("/petstore");
+        for (int i = 0; i < handlers; i++) {
+            serviceDefinition.withHandler(new GetServiceHandler("/getPet" + i + "/:pet", action));
+            serviceDefinition.withHandler(new PostServiceHandler("/addPet" + i + "/:pet", action));
+        }
+
+        mapper = new ServiceHandlerMapper();
+        mapper.addServiceDefinition(serviceDefinition);
+
+        firstPath = "petstore/getPet0/myPet";
+        lastPath = "petstore/getPet" + (handlers - 1) + "/myPet";
+        unmappedPath = "petstore/removePet/myPet";
+    }
+
+    @Benchmark
+    public ServiceHandler mapFirst() {
+        return mapper.map("get", firstPath);
+    }
+
+    @Benchmark
+    public ServiceHandler mapLast() {
+        return mapper.map("get", lastPath);
+    }
+
+    @Benchmark
+    public ServiceHandler mapUnmapped() {
+        return mapper.map("get", unmappedPath);
+    }
+
+    @Benchmark
+    public RouteMatch matchLast() {
+        return mapper.match("get", lastPath);
+    }
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.restsimple.spi.uri.UriTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark {@link UriTemplate} matching and URI creation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriTemplateBenchmark {
+
+    private UriTemplate simple;
+
+    private UriTemplate regex;
+
+    private Map<String, String> values;
+
+    @Setup
+    public void setUp() {
+        simple = new UriTemplate("/petstore/getPet/{pet}");
+        regex = new UriTemplate("/petstore/getPet/{pet: [a-zA-Z]+}");
+        values = new HashMap<String, String>();
+        values.put("pet", "myPet");
+    }
+
+    @Benchmark
+    public boolean matchSimple() {
+        return simple.match("/petstore/getPet/myPet", new HashMap<String, String>());
+    }
+
+    @Benchmark
+    public boolean matchRegex() {
+        return regex.match("/petstore/getPet/myPet", new HashMap<String, String>());
+    }
+
+    @Benchmark
+    public String createURIFromMap() {
+        return simple.createURI(values);
+    }
+
+    @Benchmark
+    public String createURIFromValues() {
+        return simple.createURI("myPet");
+    }
+
+    @Benchmark
+    public UriTemplate compile() {
+        return new UriTemplate("/petstore/getPet/{pet}");
+    }
+}
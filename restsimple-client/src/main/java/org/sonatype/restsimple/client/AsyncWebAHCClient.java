@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.client;
+
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.FluentCaseInsensitiveStringsMap;
+import com.ning.http.client.RequestBuilder;
+import com.ning.http.client.Response;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.representation.Form;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.sonatype.restsimple.api.MediaType;
+import org.sonatype.restsimple.api.ServiceDefinition;
+import org.sonatype.spice.jersey.client.ahc.AhcHttpClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link AsyncWebClient} build on top of the {@link WebAHCClient}: requests are prepared and their response
+ * de-serialized exactly like {@link WebAHCClient} does, but are executed using the non blocking AsyncHttpClient API.
+ * <pre>
+ * {@code
+ *
+ *      AsyncWebClient web = new AsyncWebAHCClient(serviceDefinition);
+        Future<Pet> pet = web.clientOf(targetUrl + "/addPet/myPet")
+                .headers(m)
+                .post(new Pet("pouetpouet"), Pet.class);
+ * }
+ * </pre>
+ * Instances sharing the same {@link WebAHCClient} share its configuration and its connections.
+ */
+public class AsyncWebAHCClient implements AsyncWebClient {
+
+    private final static int NOT_ACCEPTABLE = 406;
+
+    private final WebAHCClient webClient;
+
+    /**
+     * Create an AsyncWebAHCClient Client
+     */
+    public AsyncWebAHCClient() {
+        this(new WebAHCClient());
+    }
+
+    /**
+     * Create an AsyncWebAHCClient Client and populate it using the {@link ServiceDefinition}
+     *
+     * @param serviceDefinition a {@link ServiceDefinition}
+     */
+    public AsyncWebAHCClient(ServiceDefinition serviceDefinition) {
+        this(new WebAHCClient(serviceDefinition));
+    }
+
+    /**
+     * Create an AsyncWebAHCClient Client and populate it using the {@link ServiceDefinition}.
+     *
+     * @param serviceDefinition a {@link ServiceDefinition}
+     * @param negotiateHandler  an implementation of {@link NegotiationHandler}
+     */
+    public AsyncWebAHCClient(ServiceDefinition serviceDefinition, NegotiationHandler negotiateHandler) {
+        this(new WebAHCClient(serviceDefinition, negotiateHandler));
+    }
+
+    /**
+     * Create an AsyncWebAHCClient Client which uses the configuration and the connections of a {@link WebAHCClient}
+     *
+     * @param webClient a {@link WebAHCClient}
+     */
+    public AsyncWebAHCClient(WebAHCClient webClient) {
+        this.webClient = webClient;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncWebClient headers(Map<String, String> headers) {
+        webClient.headers(headers);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncWebClient queryString(Map<String, String> queryString) {
+        webClient.queryString(queryString);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncWebClient matrixParams(Map<String, String> matrixParams) {
+        webClient.matrixParams(matrixParams);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncWebClient clientOf(String uri) {
+        webClient.clientOf(uri);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> post(Map<String, String> formParams, Class<T> t) {
+        return post(formParams, t, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> post(Map<String, String> formParams, Class<T> t, Callback<T> callback) {
+        Form form = new Form();
+        for (Map.Entry<String, String> e : formParams.entrySet()) {
+            form.add(e.getKey(), e.getValue());
+        }
+        return execute(WebClient.TYPE.POST, form, true, t, callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> post(Object o, Class<T> t) {
+        return post(o, t, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> post(Object o, Class<T> t, Callback<T> callback) {
+        return execute(WebClient.TYPE.POST, webClient.quoteString(o), false, t, callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> delete(Class<T> t) {
+        return delete(t, (Callback<T>) null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> delete(Class<T> t, Callback<T> callback) {
+        return execute(WebClient.TYPE.DELETE, null, false, t, callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> delete(Object o, Class<T> t) {
+        return delete(o, t, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> delete(Object o, Class<T> t, Callback<T> callback) {
+        return execute(WebClient.TYPE.DELETE, webClient.quoteString(o), false, t, callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> get(Class<T> t) {
+        return get(t, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> get(Class<T> t, Callback<T> callback) {
+        return execute(WebClient.TYPE.GET, null, false, t, callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> put(Object o, Class<T> t) {
+        return put(o, t, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Future<T> put(Object o, Class<T> t, Callback<T> callback) {
+        return execute(WebClient.TYPE.PUT, webClient.quoteString(o), false, t, callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncWebClient supportedContentType(MediaType mediaType) {
+        webClient.supportedContentType(mediaType);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncWebClient auth(WebClient.AuthScheme scheme, String user, String password) {
+        webClient.auth(scheme, user, password);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncWebClient proxyWith(WebClient.ProxyScheme scheme, String host, int port, String user, String password) {
+        webClient.proxyWith(scheme, host, port, user, password);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        webClient.close();
+    }
+
+    private <T> Future<T> execute(WebClient.TYPE type, Object entity, boolean formEncoded, Class<T> responseEntity,
+                                  Callback<T> callback) {
+        WebFuture<T> future = new WebFuture<T>(callback);
+        try {
+            WebResource r = webClient.buildRequest();
+            ClientRequest.Builder builder = webClient.headers(ClientRequest.create(), r.getURI(), type, formEncoded);
+            if (entity != null) {
+                builder.entity(entity);
+            }
+            execute(builder.build(r.getURI(), type.name()), responseEntity, future, true);
+        } catch (RuntimeException e) {
+            future.failed(e);
+        }
+        return future;
+    }
+
+    /**
+     * Send the request. When the server challenges the request with a 406 and <tt>negotiate</tt> is true, the
+     * request is sent again, once, with the header computed by the {@link NegotiationHandler}.
+     */
+    private <T> void execute(final ClientRequest request, final Class<T> responseEntity, final WebFuture<T> future,
+                             final boolean negotiate) {
+        final AhcHttpClient asyncClient = webClient.asyncClient();
+
+        RequestBuilder builder = new RequestBuilder(request.getMethod()).setUrl(request.getURI().toString());
+        asyncClient.getClientHandler().getAhcRequestWriter().configureRequest(builder, request, request.getEntity() != null);
+
+        try {
+            future.request(asyncClient.getClientHandler().getHttpClient().executeRequest(builder.build(),
+                    new AsyncCompletionHandler<Object>() {
+
+                        @Override
+                        public Object onCompleted(Response response) throws Exception {
+                            try {
+                                ClientResponse clientResponse = toClientResponse(asyncClient, response);
+                                if (negotiate && clientResponse.getStatus() == NOT_ACCEPTABLE) {
+                                    request.getHeaders().putSingle(webClient.negotiationHandler().challengedHeaderName(),
+                                            webClient.negotiate(clientResponse, request.getURI(),
+                                                    WebClient.TYPE.valueOf(request.getMethod())));
+                                    execute(request, responseEntity, future, false);
+                                } else {
+                                    webClient.checkStatus(clientResponse);
+                                    future.completed(webClient.checkVoid(clientResponse, responseEntity));
+                                }
+                            } catch (UniformInterfaceException u) {
+                                ClientResponse.Status status = u.getResponse().getClientResponseStatus();
+                                future.failed(new WebException(u.getResponse().getStatus(),
+                                        status == null ? "" : status.getReasonPhrase()));
+                            } catch (Throwable t) {
+                                future.failed(t);
+                            }
+                            return null;
+                        }
+
+                        @Override
+                        public void onThrowable(Throwable t) {
+                            future.failed(t);
+                        }
+                    }));
+        } catch (Throwable t) {
+            future.failed(t);
+        }
+    }
+
+    private static ClientResponse toClientResponse(AhcHttpClient asyncClient, Response response) throws Exception {
+        InBoundHeaders headers = new InBoundHeaders();
+        FluentCaseInsensitiveStringsMap responseHeaders = response.getHeaders();
+        for (Map.Entry<String, List<String>> e : responseHeaders) {
+            headers.put(e.getKey(), e.getValue());
+        }
+
+        ClientResponse clientResponse = new ClientResponse(response.getStatusCode(), headers,
+                response.getResponseBodyAsStream(), asyncClient.getMessageBodyWorkers());
+        if (clientResponse.hasEntity()) {
+            clientResponse.bufferEntity();
+        }
+        return clientResponse;
+    }
+}
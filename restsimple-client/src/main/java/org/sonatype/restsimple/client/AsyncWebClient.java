@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.client;
+
+import org.sonatype.restsimple.api.MediaType;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * An asynchronous WebClient for RestSimple. Requests are sent without blocking the calling thread, and their result is
+ * available from the returned {@link Future}, or from an optional {@link Callback}. The content negotiation, when the
+ * server returns a 406, is also done without blocking: the second request is sent once the first response is
+ * received.
+ * <p/>
+ * The request's uri, headers, query string and matrix parameters are read when the request is executed, so the
+ * client can be re-configured and re-used while previous requests are still in flight.
+ */
+public interface AsyncWebClient {
+
+    /**
+     * Notified once a request completes. Callbacks are invoked by the I/O threads of the underlying HTTP client, and
+     * must not block.
+     *
+     * @param <T> the type of the response's body.
+     */
+    public interface Callback<T> {
+
+        /**
+         * Invoked when the response has been received and de-serialized.
+         *
+         * @param response the response's body, or null for a {@link Void} response.
+         */
+        void completed(T response);
+
+        /**
+         * Invoked when the request failed, either because of an I/O error or because the server returned an error.
+         *
+         * @param t the cause of the failure, a {@link WebException} when the server returned an error.
+         */
+        void failed(Throwable t);
+    }
+
+    /**
+     * Configure the headers of the request.
+     *
+     * @param headers a {@link Map} of request's headers.
+     * @return this
+     */
+    AsyncWebClient headers(Map<String, String> headers);
+
+    /**
+     * Configure the query string of the request.
+     *
+     * @param queryString a {@link Map} of request's query string.
+     * @return this
+     */
+    AsyncWebClient queryString(Map<String, String> queryString);
+
+    /**
+     * Configure the matrix parameters of the request.
+     *
+     * @param matrixParams a {@link Map} of request's matrix parameters
+     * @return this
+     */
+    AsyncWebClient matrixParams(Map<String, String> matrixParams);
+
+    /**
+     * Set the request URI.
+     *
+     * @param uri the request URI.
+     * @return this
+     */
+    AsyncWebClient clientOf(String uri);
+
+    /**
+     * Execute a POST operation
+     *
+     * @param formParams A Map of forms parameters
+     * @param t          A class of type T that will be used when deserializing the response body.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> post(Map<String, String> formParams, Class<T> t);
+
+    /**
+     * Execute a POST operation
+     *
+     * @param formParams A Map of forms parameters
+     * @param t          A class of type T that will be used when deserializing the response body.
+     * @param callback   a {@link Callback} notified once the request completes.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> post(Map<String, String> formParams, Class<T> t, Callback<T> callback);
+
+    /**
+     * Execute a POST operation
+     *
+     * @param o An object that will be serialized as the request body
+     * @param t A class of type T that will be used when deserializing the response body.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> post(Object o, Class<T> t);
+
+    /**
+     * Execute a POST operation
+     *
+     * @param o        An object that will be serialized as the request body
+     * @param t        A class of type T that will be used when deserializing the response body.
+     * @param callback a {@link Callback} notified once the request completes.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> post(Object o, Class<T> t, Callback<T> callback);
+
+    /**
+     * Execute a DELETE operation
+     *
+     * @param t A class of type T that will be used when deserializing the response body.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> delete(Class<T> t);
+
+    /**
+     * Execute a DELETE operation
+     *
+     * @param t        A class of type T that will be used when deserializing the response body.
+     * @param callback a {@link Callback} notified once the request completes.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> delete(Class<T> t, Callback<T> callback);
+
+    /**
+     * Execute a DELETE operation
+     *
+     * @param o An object that will be serialized as the request body
+     * @param t A class of type T that will be used when deserializing the response body.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> delete(Object o, Class<T> t);
+
+    /**
+     * Execute a DELETE operation
+     *
+     * @param o        An object that will be serialized as the request body
+     * @param t        A class of type T that will be used when deserializing the response body.
+     * @param callback a {@link Callback} notified once the request completes.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> delete(Object o, Class<T> t, Callback<T> callback);
+
+    /**
+     * Execute a GET operation
+     *
+     * @param t A class of type T that will be used when deserializing the response body.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> get(Class<T> t);
+
+    /**
+     * Execute a GET operation
+     *
+     * @param t        A class of type T that will be used when deserializing the response body.
+     * @param callback a {@link Callback} notified once the request completes.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> get(Class<T> t, Callback<T> callback);
+
+    /**
+     * Execute a PUT operation
+     *
+     * @param o An object that will be serialized as the request body
+     * @param t A class of type T that will be used when deserializing the response body.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> put(Object o, Class<T> t);
+
+    /**
+     * Execute a PUT operation
+     *
+     * @param o        An object that will be serialized as the request body
+     * @param t        A class of type T that will be used when deserializing the response body.
+     * @param callback a {@link Callback} notified once the request completes.
+     * @return a {@link Future} of t
+     */
+    <T> Future<T> put(Object o, Class<T> t, Callback<T> callback);
+
+    /**
+     * Add a {@link MediaType} to the list of supported content-type. The list of supported content-type is used when
+     * the server returns a http status code of 406.
+     *
+     * @param mediaType
+     * @return this
+     */
+    AsyncWebClient supportedContentType(MediaType mediaType);
+
+    /**
+     * Set the authentication user and password as well as the scheme to use.
+     *
+     * @param scheme   the AuthScheme
+     * @param user     the user
+     * @param password the password
+     * @return this
+     */
+    AsyncWebClient auth(WebClient.AuthScheme scheme, String user, String password);
+
+    /**
+     * Set the Proxy information
+     *
+     * @param scheme   The proxy protocol scheme
+     * @param host     the proxy uri
+     * @param port     the proxy port
+     * @param user     the proxy principal
+     * @param password the proxy password
+     * @return this
+     */
+    AsyncWebClient proxyWith(WebClient.ProxyScheme scheme, String host, int port, String user, String password);
+
+    /**
+     * Release the connections and threads used by this client. Requests still in flight may fail.
+     */
+    void close();
+}
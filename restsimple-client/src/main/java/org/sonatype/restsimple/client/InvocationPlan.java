@@ -0,0 +1,450 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.client;
+
+import org.codehaus.jackson.map.type.TypeFactory;
+import org.codehaus.jackson.type.JavaType;
+import org.sonatype.restsimple.annotation.CookieParam;
+import org.sonatype.restsimple.annotation.Delete;
+import org.sonatype.restsimple.annotation.FormParam;
+import org.sonatype.restsimple.annotation.Get;
+import org.sonatype.restsimple.annotation.HeaderParam;
+import org.sonatype.restsimple.annotation.MatrixParam;
+import org.sonatype.restsimple.annotation.Path;
+import org.sonatype.restsimple.annotation.PathParam;
+import org.sonatype.restsimple.annotation.Post;
+import org.sonatype.restsimple.annotation.Put;
+import org.sonatype.restsimple.annotation.QueryParam;
+import org.sonatype.restsimple.api.ServiceDefinition;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything {@link WebProxy} needs to know about a method of a proxied interface: its URL, already split into
+ * tokens, the role of each parameter, the HTTP method and how the response is de-serialized. A plan is computed once
+ * per {@link Method} and is immutable, so invoking a method only fills the request using its arguments.
+ */
+final class InvocationPlan {
+
+    private final ServiceDefinition.METHOD httpMethod;
+
+    /**
+     * The URL split on '/', and the name of the template variable of each token, or null for literal tokens.
+     */
+    private final String[] urlTokens;
+    private final String[] urlVariables;
+
+    /**
+     * The path of the resource when no parameter is annotated with {@link PathParam}
+     */
+    private final String unboundPath;
+
+    /**
+     * The number of {@link PathParam} of each parameter.
+     */
+    private final int[] pathParams;
+    private final boolean hasPathParams;
+
+    /**
+     * The path, as literal Strings and the Integer index of the parameters whose value goes in between, or null if
+     * the method doesn't have enough parameters for its path.
+     */
+    private final Object[] pathParts;
+
+    private final Param[] headerParams;
+    private final int[] cookieParams;
+    private final Param[] queryParams;
+    private final Param[] matrixParams;
+    private final Param[] formParams;
+    private final int bodyParam;
+
+    private final Class<?> returnType;
+    private final boolean deserializeLocally;
+    private final JavaType genericReturnType;
+    private final Class<?>[] exceptionTypes;
+
+    private final Map<String, String> bindings;
+
+    InvocationPlan(URI uri, Class<?> clazz, Method method, Map<String, String> bindings, boolean sitebricksCompat,
+                   TypeFactory typeFactory) {
+        this.bindings = bindings;
+        this.httpMethod = methodType(method);
+
+        String url = rawUrl(uri, clazz, method);
+        urlTokens = url.split("/");
+        urlVariables = new String[urlTokens.length];
+        for (int i = 0; i < urlTokens.length; i++) {
+            String s = urlTokens[i];
+            if (s.startsWith("{") || s.startsWith(":")) {
+                int end = s.startsWith("{") ? s.length() - 1 : s.length();
+                urlVariables[i] = s.substring(1, end);
+            }
+        }
+        unboundPath = unboundPath(url);
+
+        Annotation[][] ans = method.getParameterAnnotations();
+        pathParams = new int[ans.length];
+        List<Param> headers = new ArrayList<Param>();
+        List<Integer> cookies = new ArrayList<Integer>();
+        List<Param> queries = new ArrayList<Param>();
+        List<Param> matrix = new ArrayList<Param>();
+        List<Param> forms = new ArrayList<Param>();
+        int body = -1;
+        boolean pathParamFound = false;
+        for (int i = 0; i < ans.length; i++) {
+            if (ans[i].length == 0 && body == -1) {
+                body = i;
+            }
+            for (Annotation a : ans[i]) {
+                if (PathParam.class.isAssignableFrom(a.getClass())) {
+                    pathParams[i]++;
+                    pathParamFound = true;
+                } else if (HeaderParam.class.isAssignableFrom(a.getClass())) {
+                    headers.add(new Param(i, HeaderParam.class.cast(a).value()));
+                } else if (CookieParam.class.isAssignableFrom(a.getClass())) {
+                    cookies.add(i);
+                } else if (QueryParam.class.isAssignableFrom(a.getClass())) {
+                    queries.add(new Param(i, QueryParam.class.cast(a).value()));
+                } else if (MatrixParam.class.isAssignableFrom(a.getClass())) {
+                    matrix.add(new Param(i, MatrixParam.class.cast(a).value()));
+                } else if (FormParam.class.isAssignableFrom(a.getClass())) {
+                    forms.add(new Param(i, FormParam.class.cast(a).value()));
+                }
+            }
+        }
+        hasPathParams = pathParamFound;
+        pathParts = pathParts(ans.length);
+        headerParams = headers.toArray(new Param[headers.size()]);
+        cookieParams = new int[cookies.size()];
+        for (int i = 0; i < cookieParams.length; i++) {
+            cookieParams[i] = cookies.get(i);
+        }
+        queryParams = queries.toArray(new Param[queries.size()]);
+        matrixParams = matrix.toArray(new Param[matrix.size()]);
+        formParams = forms.toArray(new Param[forms.size()]);
+        bodyParam = body;
+
+        // TODO: Beurk...Sitebricks doesn't handle serialization/deserialization the same way as Jersey.
+        Class<?> type = method.getReturnType();
+        boolean sbSupport = (String.class.isAssignableFrom(type) && sitebricksCompat);
+        boolean local = false;
+        if (sbSupport && Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type) || type == Object.class) {
+            type = String.class;
+            local = true;
+        }
+        returnType = type;
+        deserializeLocally = sbSupport || local;
+        genericReturnType = method.getReturnType() != void.class
+                ? typeFactory.constructType(method.getGenericReturnType(), clazz) : null;
+        exceptionTypes = method.getExceptionTypes();
+    }
+
+    /**
+     * Return the HTTP method.
+     *
+     * @return the HTTP method.
+     */
+    ServiceDefinition.METHOD httpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * Return the type the response's body is read as.
+     *
+     * @return the type the response's body is read as.
+     */
+    Class<?> returnType() {
+        return returnType;
+    }
+
+    /**
+     * Return true if the response's body, read as a String, must be de-serialized into {@link #genericReturnType()}
+     *
+     * @return true if the response's body must be de-serialized by the proxy.
+     */
+    boolean deserializeLocally() {
+        return deserializeLocally;
+    }
+
+    /**
+     * Return the method's generic return type, or null for a void method.
+     *
+     * @return the method's generic return type, or null for a void method.
+     */
+    JavaType genericReturnType() {
+        return genericReturnType;
+    }
+
+    /**
+     * Return true if the method declares it throws the exception.
+     *
+     * @param t an exception
+     * @return true if the method declares it throws the exception.
+     */
+    boolean declares(Throwable t) {
+        for (Class<?> type : exceptionTypes) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    String path(Object[] params) {
+        if (pathParts == null) {
+            throw new IllegalStateException("Missing {...} value");
+        }
+        if (!hasPathParams) {
+            return unboundPath;
+        }
+
+        StringBuilder pathBuilder = new StringBuilder();
+        for (Object part : pathParts) {
+            if (part instanceof Integer) {
+                pathBuilder.append(params[(Integer) part].toString());
+            } else {
+                pathBuilder.append(part);
+            }
+        }
+        return pathBuilder.toString();
+    }
+
+    /**
+     * Return true if a parameter is annotated with {@link PathParam}, so {@link #path(Object[])} reads the parameters.
+     *
+     * @return true if a parameter is annotated with {@link PathParam}.
+     */
+    boolean hasPathParams() {
+        return hasPathParams;
+    }
+
+    /**
+     * Return true if a parameter is annotated with {@link PathParam}, so {@link #path(Object[])} may read its value.
+     *
+     * @param index the index of a parameter
+     * @return true if the parameter is annotated with {@link PathParam}.
+     */
+    boolean isPathParam(int index) {
+        return pathParams[index] > 0;
+    }
+
+    /**
+     * Return the index of the parameter sent as the request's body, or -1 if the body is empty.
+     *
+     * @return the index of the body's parameter, or -1.
+     */
+    int bodyParam() {
+        return bodyParam;
+    }
+
+    Param[] headerParams() {
+        return headerParams;
+    }
+
+    int[] cookieParams() {
+        return cookieParams;
+    }
+
+    Param[] queryParams() {
+        return queryParams;
+    }
+
+    Param[] formParams() {
+        return formParams;
+    }
+
+    Param[] matrixParams() {
+        return matrixParams;
+    }
+
+    Object body(Object[] params) {
+        return bodyParam == -1 ? "" : params[bodyParam];
+    }
+
+    Map<String, String> headers(Object[] params) {
+        Map<String, String> headers = fill(new HashMap<String, String>(), headerParams, params);
+        for (int i : cookieParams) {
+            headers.put("Cookie", params[i].toString());
+        }
+        return headers;
+    }
+
+    Map<String, String> queryString(Object[] params) {
+        return fill(fill(new HashMap<String, String>(), queryParams, params), formParams, params);
+    }
+
+    Map<String, String> matrixParams(Object[] params) {
+        return fill(new HashMap<String, String>(), matrixParams, params);
+    }
+
+    private static Map<String, String> fill(Map<String, String> map, Param[] slots, Object[] params) {
+        for (Param p : slots) {
+            map.put(p.name, params[p.index].toString());
+        }
+        return map;
+    }
+
+    /**
+     * Split the path into literals and parameters. The parameters are taken in the order of the {@link PathParam}s,
+     * the template variables without a binding consuming them first, and a parameter without a template variable is
+     * appended to the path.
+     */
+    private Object[] pathParts(int paramCount) {
+        if (!hasPathParams) {
+            return new Object[]{unboundPath};
+        }
+
+        List<Object> parts = new ArrayList<Object>();
+        StringBuilder literal = new StringBuilder();
+        int position = 0;
+        for (int count : pathParams) {
+            for (int n = 0; n < count; n++) {
+                if (position >= paramCount) {
+                    return null;
+                }
+                int replace = position;
+
+                // If the {} or : aren't specified, let's add it at the end.
+                boolean hackyTrick = true;
+                for (int i = 0; i < urlTokens.length; i++) {
+                    if (urlVariables[i] != null) {
+                        // TODO: if the method types are not in the order this will fail.
+                        // Try to use the global bindings
+                        String s = bindings.get(urlVariables[i]);
+
+                        if (s == null && position + 1 > paramCount) {
+                            return null;
+                        } else if (s == null) {
+                            addLiteral(parts, literal);
+                            parts.add(position++);
+                        } else {
+                            literal.append(s);
+                        }
+                        hackyTrick = false;
+                    } else {
+                        literal.append(urlTokens[i]);
+                    }
+                    literal.append("/");
+                }
+
+                if (hackyTrick) {
+                    addLiteral(parts, literal);
+                    parts.add(replace);
+                } else {
+                    literal.deleteCharAt(literal.length() - 1);
+                }
+            }
+            position++;
+        }
+        addLiteral(parts, literal);
+        return parts.toArray();
+    }
+
+    private static void addLiteral(List<Object> parts, StringBuilder literal) {
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    private String unboundPath(String url) {
+        if (!url.contains(":") && !url.contains("{")) {
+            return url;
+        }
+
+        StringBuilder pathBuilder = new StringBuilder();
+        for (int i = 0; i < urlTokens.length; i++) {
+            String s = urlTokens[i];
+            if (urlVariables[i] != null) {
+                String tmp = bindings.get(urlVariables[i]);
+                if (tmp != null) {
+                    s = tmp;
+                }
+            }
+            pathBuilder.append(s).append("/");
+        }
+        pathBuilder.deleteCharAt(pathBuilder.length() - 1);
+        return pathBuilder.toString();
+    }
+
+    private static String rawUrl(URI uri, Class<?> clazz, Method method) {
+        // Stolen from Ali's Sitebricks implementation
+        final StringBuilder rawUrl;
+        try {
+            rawUrl = new StringBuilder(uri.toURL().toString());
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+        final Path atClass = clazz.getAnnotation(Path.class);
+
+        if (atClass != null) {
+            append(rawUrl, atClass.value());
+        } else {
+            final Path atDeclaringClass = method.getDeclaringClass().getAnnotation(Path.class);
+            if (atDeclaringClass != null) {
+                rawUrl.append(atDeclaringClass.value());
+            }
+        }
+
+        final Path atMethod = method.getAnnotation(Path.class);
+        if (atMethod != null) {
+            append(rawUrl, atMethod.value());
+        }
+
+        if (rawUrl.toString().trim().length() == 0) {
+            throw new IllegalStateException(String.format(
+                    "Cannot calculate rest URL for [%s]. Is class and/or method annotated with @At?", method.getName()));
+        }
+        return rawUrl.toString();
+    }
+
+    private static void append(StringBuilder rawUrl, String s) {
+        if (rawUrl.toString().endsWith("/")) {
+            rawUrl.append(s.startsWith("/") ? s.substring(1) : s);
+        } else {
+            rawUrl.append(s.startsWith("/") ? s : "/" + s);
+        }
+    }
+
+    private static ServiceDefinition.METHOD methodType(Method method) {
+        for (Annotation a : method.getAnnotations()) {
+            if (Get.class.isAssignableFrom(a.getClass())) {
+                return ServiceDefinition.METHOD.GET;
+            } else if (Post.class.isAssignableFrom(a.getClass())) {
+                return ServiceDefinition.METHOD.POST;
+            } else if (Put.class.isAssignableFrom(a.getClass())) {
+                return ServiceDefinition.METHOD.PUT;
+            } else if (Delete.class.isAssignableFrom(a.getClass())) {
+                return ServiceDefinition.METHOD.DELETE;
+            }
+        }
+        throw new IllegalStateException("Method not supported");
+    }
+
+    final static class Param {
+        final int index;
+        final String name;
+
+        Param(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remember the result of content negotiations, keyed by HTTP method, host and path template, so the negotiated
+ * header can be sent upfront instead of waiting for the server to challenge every request. The least recently used
+ * negotiations are evicted once the cache is full.
+ */
+final class NegotiationCache {
+
+    private final Map<String, Negotiation> negotiations;
+
+    NegotiationCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0");
+        }
+
+        negotiations = new LinkedHashMap<String, Negotiation>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Negotiation> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    synchronized Negotiation get(String key) {
+        return negotiations.get(key);
+    }
+
+    synchronized void put(String key, String alternates, String value) {
+        negotiations.put(key, new Negotiation(alternates, value));
+    }
+
+    synchronized void remove(String key) {
+        negotiations.remove(key);
+    }
+
+    synchronized void clear() {
+        negotiations.clear();
+    }
+
+    /**
+     * The negotiated value, and the server's <tt>Alternates</tt> it has been negotiated from.
+     */
+    final static class Negotiation {
+
+        final String alternates;
+        final String value;
+
+        Negotiation(String alternates, String value) {
+            this.alternates = alternates;
+            this.value = value;
+        }
+
+        boolean sameAlternates(String alternates) {
+            return this.alternates == null ? alternates == null : this.alternates.equals(alternates);
+        }
+    }
+}
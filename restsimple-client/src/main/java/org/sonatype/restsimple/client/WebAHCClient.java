@@ -15,6 +15,7 @@ import com.ning.http.client.ProxyServer;
 import com.ning.http.client.Realm;
 import com.ning.http.client.Realm.RealmBuilder;
 import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.RequestBuilder;
 import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.json.JSONConfiguration;
@@ -28,11 +29,13 @@ import org.sonatype.restsimple.api.PostServiceHandler;
 import org.sonatype.restsimple.api.PutServiceHandler;
 import org.sonatype.restsimple.api.ServiceDefinition;
 import org.sonatype.restsimple.api.ServiceHandler;
+import org.sonatype.restsimple.spi.RouteMatch;
 import org.sonatype.restsimple.spi.ServiceHandlerMapper;
 import org.sonatype.spice.jersey.client.ahc.AhcHttpClient;
 import org.sonatype.spice.jersey.client.ahc.config.DefaultAhcConfig;
 
 import javax.ws.rs.core.UriBuilder;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -54,6 +57,7 @@ import java.util.Map;
                 .headers(m)
                 .post(new Pet("pouetpouet"), Pet.class);
 
+        web.close();
  * }
  * </pre>
  * The class can also be used without a service definition. All the request information must be "manually" configured.
@@ -68,19 +72,24 @@ import java.util.Map;
         Pet pet = web.clientOf(targetUrl + "/addPet/myPet")
                 .headers(m)
                 .post(new Pet("pouetpouet"), Pet.class);
+
+        web.close();
  *
  * }
  * </pre></blockquote>
  * The client support content negotiation as defined in RFC 2295 via the
  * {@link WebAHCClient#supportedContentType(org.sonatype.restsimple.api.MediaType)}
  *
- * This client build on top of the Sonatype's Jersey AHC Client.
+ * This client build on top of the Sonatype's Jersey AHC Client. The underlying client is created on the first request
+ * and shared by all the requests made by this instance, so connections are kept alive and reused. Invoke
+ * {@link #close()} once the client is no longer needed.
  */
 public class WebAHCClient implements WebClient {
     public final boolean compatWithSitebricks;
 
     private String uri;
     private final ServiceDefinition serviceDefinition;
+    private final ServiceHandlerMapper mapper;
     private Map<String, String> headers = Collections.emptyMap();
     private Map<String, String> queryString = Collections.emptyMap();
     private Map<String, String> matrixParams = Collections.emptyMap();
@@ -90,6 +99,11 @@ public class WebAHCClient implements WebClient {
     private Realm realm;
     private ProxyServer proxyServer;
 
+    private int maxConnectionsPerHost = -1;
+    private int idleConnectionTimeoutInMs = 60 * 1000;
+    private AhcHttpClient asyncClient;
+    private NegotiationCache negotiationCache = new NegotiationCache(256);
+
     /**
      * Create a WebAHCClient Client
      */
@@ -133,13 +147,15 @@ public class WebAHCClient implements WebClient {
     }
 
     /**
-     * Create a WebAHCClient Client and populate it using the {@link ServiceDefinition}.
+     * Create a WebAHCClient Client and populate it using the {@link ServiceDefinition}. The {@link ServiceHandler}s
+     * of the {@link ServiceDefinition} are read once, when the client is created.
      *
      * @param serviceDefinition a {@link ServiceDefinition}
      * @param negotiateHandler  an implementation of {@link NegotiationHandler}
      */
     public WebAHCClient(ServiceDefinition serviceDefinition, NegotiationHandler negotiateHandler, boolean compatWithSitebricks) {
         this.serviceDefinition = serviceDefinition;
+        this.mapper = new ServiceHandlerMapper(serviceDefinition.serviceHandlers());
         this.negotiateHandler = negotiateHandler;
         this.compatWithSitebricks = compatWithSitebricks;
     }
@@ -185,19 +201,16 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public <T> T post(Map<String, String> formParams, Class<T> t) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
         try {
             Form form = new Form();
             for (Map.Entry<String, String> e : formParams.entrySet()) {
                 form.add(e.getKey(), e.getValue());
             }
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.POST, true).post(t, form);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.POST);
             return post(formParams, t);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -206,19 +219,16 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public <T> T post(Object o, Class<T> responseEntity) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         o = quoteString(o);
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             ClientResponse response = headers(r, TYPE.POST).post(ClientResponse.class, o);
+            checkNegotiation(response);
             checkStatus(response);
             return checkVoid(response, responseEntity);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.POST);
             return post(o, responseEntity);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -227,17 +237,13 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public Object post(Object o) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         o = quoteString(o);
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.POST).post(findEntity(r, TYPE.POST), o);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.POST);
             return post(o);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -246,17 +252,13 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public Object delete(Object o) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         o = quoteString(o);
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.DELETE).delete(findEntity(r, TYPE.DELETE), o);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.DELETE);
             return delete(o);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -265,16 +267,12 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public <T> T delete(Class<T> t) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.DELETE).delete(t);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.DELETE);
             return delete(t);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -283,16 +281,12 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public Object delete() {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.DELETE).delete(findEntity(r, TYPE.DELETE));
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.DELETE);
             return delete();
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -301,19 +295,16 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public <T> T delete(Object o, Class<T> responseEntity) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         o = quoteString(o);
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             ClientResponse response = headers(r, TYPE.DELETE).delete(ClientResponse.class, o);
+            checkNegotiation(response);
             checkStatus(response);
             return checkVoid(response, responseEntity);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.DELETE);
             return delete(o, responseEntity);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -322,16 +313,12 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public <T> T get(Class<T> t) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.GET).get(t);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.GET);
             return get(t);
-        } finally {
-            asyncClient.destroy();
         }
     }
         
@@ -340,16 +327,12 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public Object get() {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.GET).get(findEntity(r, TYPE.GET));
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.GET);
             return get();
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -358,20 +341,17 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public <T> T put(Object o, Class<T> responseEntity) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         o = quoteString(o);
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             r.entity(o);
             ClientResponse response = headers(r, TYPE.PUT).put(ClientResponse.class, o);
+            checkNegotiation(response);
             checkStatus(response);
             return checkVoid(response, responseEntity);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.PUT);
             return put(o, responseEntity);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -380,17 +360,13 @@ public class WebAHCClient implements WebClient {
      */
     @Override
     public Object put(Object o) {
-        AhcHttpClient asyncClient = AhcHttpClient.create(createAhcConfig());
-
         o = quoteString(o);
         try {
-            WebResource r = buildRequest(asyncClient);
+            WebResource r = buildRequest();
             return headers(r, TYPE.PUT).put(findEntity(r, TYPE.PUT), o);
         } catch (UniformInterfaceException u) {
-            headers.put(negotiateHandler.challengedHeaderName(), negotiate(u));
+            negotiate(u, TYPE.PUT);
             return put(o);
-        } finally {
-            asyncClient.destroy();
         }
     }
 
@@ -400,6 +376,7 @@ public class WebAHCClient implements WebClient {
     @Override
     public WebClient supportedContentType(MediaType mediaType) {
         supportedContentType.add(mediaType);
+        negotiationCache.clear();
         return this;
     }
 
@@ -409,6 +386,7 @@ public class WebAHCClient implements WebClient {
     @Override
     public WebClient auth(final AuthScheme scheme, final String user, final String password) {
         realm = new RealmBuilder().setPrincipal(user).setPassword(password).setScheme(mapScheme(scheme)).build();
+        close();
         return this;
     }
 
@@ -418,15 +396,74 @@ public class WebAHCClient implements WebClient {
     @Override
     public WebClient proxyWith(final ProxyScheme scheme, String host, int port, String user, String password) {
         proxyServer = new ProxyServer(mapProxyScheme(scheme), host, port, user, password);
+        close();
         return null;
 
     }
 
+    /**
+     * Set the maximum number of connections kept open to a single host. Default is -1, e.g no limit.
+     *
+     * @param maxConnectionsPerHost the maximum number of connections per host, or -1 for no limit.
+     * @return this
+     */
+    public WebAHCClient maxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        close();
+        return this;
+    }
+
+    /**
+     * Set the time an idle connection is kept in the pool before being closed. Default is 60 seconds.
+     *
+     * @param idleConnectionTimeoutInMs the time, in milliseconds.
+     * @return this
+     */
+    public WebAHCClient idleConnectionTimeoutInMs(int idleConnectionTimeoutInMs) {
+        this.idleConnectionTimeoutInMs = idleConnectionTimeoutInMs;
+        close();
+        return this;
+    }
+
+    /**
+     * Set the maximum number of negotiated content types remembered by this client. Default is 256.
+     *
+     * @param maxSize the maximum number of endpoints, identified by their HTTP method, host and path template, which
+     *        negotiated content type is remembered.
+     * @return this
+     */
+    public WebAHCClient negotiationCacheSize(int maxSize) {
+        negotiationCache = new NegotiationCache(maxSize);
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() {
+        if (asyncClient != null) {
+            asyncClient.destroy();
+            asyncClient = null;
+        }
+    }
+
+    synchronized AhcHttpClient asyncClient() {
+        if (asyncClient == null) {
+            asyncClient = AhcHttpClient.create(createAhcConfig());
+        }
+        return asyncClient;
+    }
+
     private DefaultAhcConfig createAhcConfig(){
         DefaultAhcConfig ahcConfig = new DefaultAhcConfig();
                 ahcConfig.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
         ahcConfig.getClasses().add(JacksonJsonProvider.class);
-        ahcConfig.getAsyncHttpClientConfigBuilder().setAllowPoolingConnection(false);
+        ahcConfig.getAsyncHttpClientConfigBuilder()
+                .setAllowPoolingConnection(true)
+                .setKeepAlive(true)
+                .setMaximumConnectionsPerHost(maxConnectionsPerHost)
+                .setIdleConnectionInPoolTimeoutInMs(idleConnectionTimeoutInMs);
 
         if (realm != null) {
             ahcConfig.getAsyncHttpClientConfigBuilder().setRealm(realm);
@@ -473,21 +510,79 @@ public class WebAHCClient implements WebClient {
         }
     }
 
-    private String negotiate(UniformInterfaceException u) {
-        return negotiateHandler.negotiate(supportedContentType,
-                u.getResponse().getHeaders(),
-                u.getResponse().getStatus(),
-                u.getResponse().getClientResponseStatus().getReasonPhrase());
+    private String negotiate(UniformInterfaceException u, TYPE type) {
+        return negotiate(u.getResponse(), buildRequest().getURI(), type);
+    }
+
+    /**
+     * Negotiate the challenged header and remember it for the request's endpoint. A remembered value rejected by the
+     * server with the same <tt>Alternates</tt> is forgotten, and the request fails.
+     */
+    String negotiate(ClientResponse response, URI uri, TYPE type) {
+        String key = negotiationKey(uri, type, route(uri, type));
+        String alternates = response.getHeaders().getFirst("Alternates");
+        String reasonPhrase = response.getClientResponseStatus() == null ? "" : response.getClientResponseStatus().getReasonPhrase();
+
+        NegotiationCache.Negotiation previous = negotiationCache.get(key);
+        if (previous != null && previous.sameAlternates(alternates)) {
+            negotiationCache.remove(key);
+            throw new WebException(response.getStatus(), reasonPhrase);
+        }
+
+        String value = negotiateHandler.negotiate(supportedContentType,
+                response.getHeaders(),
+                response.getStatus(),
+                reasonPhrase);
+        negotiationCache.put(key, alternates, value);
+        return value;
+    }
+
+    NegotiationHandler negotiationHandler() {
+        return negotiateHandler;
+    }
+
+    private String negotiationKey(URI uri, TYPE type, RouteMatch route) {
+        StringBuilder key = new StringBuilder(type.name()).append(' ')
+                .append(uri.getScheme()).append("://").append(uri.getRawAuthority());
+        if (route != null) {
+            key.append(serviceDefinition.path()).append(route.template());
+        } else {
+            key.append(uri.getRawPath());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Find the {@link ServiceHandler} of the {@link ServiceDefinition} the request is made to, if any.
+     */
+    private RouteMatch route(URI uri, TYPE type) {
+        String urlPath = uri.getPath();
+        String path = serviceDefinition.path();
+        if (!path.equals("") || !path.equals("/")) {
+            urlPath = urlPath.substring(urlPath.indexOf(path) + path.length());
+        }
+        String method = type.name();
+        RouteMatch route = null;
+
+        for (String p : urlPath.split("/")) {
+            route = mapper.match(method, p);
+            if (route != null) break;
+        }
+
+        if (route == null) {
+            route = mapper.match(method, urlPath);
+        }
+        return route;
     }
 
-    private WebResource buildRequest(AhcHttpClient asyncClient) {
+    WebResource buildRequest() {
         UriBuilder u = UriBuilder.fromUri(uri);
         if (matrixParams.size() > 0) {
             for (Map.Entry<String, String> e : matrixParams.entrySet()) {
                 u.matrixParam(e.getKey(), e.getValue());
             }
         }
-        WebResource r = asyncClient.resource(u.build());
+        WebResource r = asyncClient().resource(u.build());
 
         if (queryString != null && queryString.size() > 0) {
             for (Map.Entry<String, String> e : queryString.entrySet()) {
@@ -522,6 +617,10 @@ public class WebAHCClient implements WebClient {
         return headers(r, type, false);
     }
 
+    private WebResource.Builder headers(WebResource r, TYPE type, boolean formEncoded) {
+        return headers(r.getRequestBuilder(), r.getURI(), type, formEncoded);
+    }
+
     @Override
     public String toString() {
         return "WebAHCClient{" +
@@ -534,26 +633,29 @@ public class WebAHCClient implements WebClient {
                 '}';
     }
 
-    private WebResource.Builder headers(WebResource r, TYPE type, boolean formEncoded) {
-        WebResource.Builder builder = r.getRequestBuilder();
-        ServiceHandlerMapper mapper = new ServiceHandlerMapper(serviceDefinition.serviceHandlers());
+    /**
+     * Set the request's headers, using the {@link ServiceDefinition} and the headers configured with
+     * {@link #headers(java.util.Map)}
+     */
+    <B extends RequestBuilder<B>> B headers(B builder, URI uri, TYPE type, boolean formEncoded) {
         boolean contentTypeSet = false;
+        boolean contentTypeNegotiated = false;
         boolean acceptTypeSet = false;
 
-        String urlPath = r.getURI().getPath();
-        String path = serviceDefinition.path();
-        if (!path.equals("") || !path.equals("/")) {
-            urlPath = urlPath.substring(urlPath.indexOf(path) + path.length());
-        }
-        ServiceHandler sh = null;
-
-        for (String p : urlPath.split("/")) {
-            sh = mapper.map(type.name().toLowerCase(), p);
-            if (sh != null) break;
-        }
-
-        if (sh == null) {
-            sh = mapper.map(type.name().toLowerCase(), urlPath);
+        RouteMatch route = route(uri, type);
+        ServiceHandler sh = route == null ? null : route.serviceHandler();
+
+        // A previously negotiated value replaces the challenged header.
+        String challengedHeader = negotiateHandler.challengedHeaderName();
+        NegotiationCache.Negotiation negotiation = negotiationCache.get(negotiationKey(uri, type, route));
+        if (negotiation != null) {
+            builder.header(challengedHeader, negotiation.value);
+            if (challengedHeader.equalsIgnoreCase("Accept")) {
+                acceptTypeSet = true;
+            } else if (challengedHeader.equalsIgnoreCase("Content-Type")) {
+                contentTypeSet = true;
+                contentTypeNegotiated = true;
+            }
         }
 
         List<MediaType> list;
@@ -564,14 +666,14 @@ public class WebAHCClient implements WebClient {
             list = serviceDefinition.mediaToProduce();
         }
 
-        if (sh != null && sh.consumeMediaType() != null) {
+        if (sh != null && sh.consumeMediaType() != null && !acceptTypeSet) {
             builder.header("Accept", sh.consumeMediaType().toMediaType());
             acceptTypeSet = true;
         }
 
         if (list.size() > 0) {
             for (MediaType m : list) {
-                if (headers.get("Content-Type") == null && !formEncoded) {
+                if (headers.get("Content-Type") == null && !formEncoded && !contentTypeNegotiated) {
                     builder.header("Content-Type", m.toMediaType());
                     contentTypeSet = true;
                 }
@@ -580,6 +682,9 @@ public class WebAHCClient implements WebClient {
 
         if (headers.size() > 0) {
             for (Map.Entry<String, String> e : headers.entrySet()) {
+                if (negotiation != null && e.getKey().equalsIgnoreCase(challengedHeader)) {
+                    continue;
+                }
                 builder.header(e.getKey(), e.getValue());
                 if (e.getKey().equalsIgnoreCase("Content-Type")) {
                     contentTypeSet = true;
@@ -599,7 +704,16 @@ public class WebAHCClient implements WebClient {
         return builder;
     }
 
-    private void checkStatus(ClientResponse response) {
+    /**
+     * Let the caller negotiate when the server challenges the request.
+     */
+    private void checkNegotiation(ClientResponse response) {
+        if (response.getStatus() == 406) {
+            throw new UniformInterfaceException(response);
+        }
+    }
+
+    void checkStatus(ClientResponse response) {
         if (response.getStatus() > 299) {
             String reasonPhrase = "";
             if (response.getClientResponseStatus() != null) {
@@ -609,7 +723,7 @@ public class WebAHCClient implements WebClient {
         }
     }
 
-    private <T> T checkVoid(ClientResponse response, Class<T> responseEntity) {
+    <T> T checkVoid(ClientResponse response, Class<T> responseEntity) {
         if (Void.class.isAssignableFrom(responseEntity) || responseEntity == void.class) {
             return null;
         } else {
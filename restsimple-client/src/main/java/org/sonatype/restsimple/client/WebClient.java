@@ -190,4 +190,10 @@ public interface WebClient {
      * @return
      */
     WebClient proxyWith(ProxyScheme scheme, String host, int port, String user, String password);
+
+    /**
+     * Release the connections and threads used by this client. The client can still be used after being closed, in
+     * which case those resources are created again.
+     */
+    void close();
 }
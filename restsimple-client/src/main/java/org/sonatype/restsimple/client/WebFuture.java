@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.client;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@link Future} returned by {@link AsyncWebAHCClient}. It is completed by the HTTP client's I/O threads, and
+ * notify its {@link AsyncWebClient.Callback}, if any.
+ */
+final class WebFuture<T> implements Future<T> {
+
+    private final AsyncWebClient.Callback<T> callback;
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    /**
+     * Set by the first of {@link #completed}, {@link #failed} or {@link #cancel}; the others are ignored.
+     */
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    private volatile T response;
+
+    private volatile Throwable failure;
+
+    private volatile boolean cancelled;
+
+    /**
+     * The in flight HTTP request, cancelled with this future.
+     */
+    private volatile Future<?> request;
+
+    WebFuture(AsyncWebClient.Callback<T> callback) {
+        this.callback = callback;
+    }
+
+    void request(Future<?> request) {
+        this.request = request;
+        if (cancelled) {
+            request.cancel(true);
+        }
+    }
+
+    void completed(T response) {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+        this.response = response;
+        latch.countDown();
+        if (callback != null) {
+            callback.completed(response);
+        }
+    }
+
+    void failed(Throwable t) {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+        failure = t;
+        latch.countDown();
+        if (callback != null) {
+            callback.failed(t);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!done.compareAndSet(false, true)) {
+            return false;
+        }
+        cancelled = true;
+        latch.countDown();
+        Future<?> r = request;
+        if (r != null) {
+            r.cancel(true);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return result();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private T result() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return response;
+    }
+}
@@ -16,18 +16,12 @@ import org.codehaus.jackson.map.type.TypeFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonatype.restsimple.annotation.Consumes;
-import org.sonatype.restsimple.annotation.CookieParam;
 import org.sonatype.restsimple.annotation.Delete;
-import org.sonatype.restsimple.annotation.FormParam;
 import org.sonatype.restsimple.annotation.Get;
-import org.sonatype.restsimple.annotation.HeaderParam;
-import org.sonatype.restsimple.annotation.MatrixParam;
 import org.sonatype.restsimple.annotation.Path;
-import org.sonatype.restsimple.annotation.PathParam;
 import org.sonatype.restsimple.annotation.Post;
 import org.sonatype.restsimple.annotation.Produces;
 import org.sonatype.restsimple.annotation.Put;
-import org.sonatype.restsimple.annotation.QueryParam;
 import org.sonatype.restsimple.annotation.Timeout;
 import org.sonatype.restsimple.api.Action;
 import org.sonatype.restsimple.api.ActionContext;
@@ -46,13 +40,14 @@ import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Proxy;
-import java.lang.reflect.Type;
 import java.net.URI;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A simple proxy that generates RestSimple client from an annotated interface.
@@ -89,6 +84,9 @@ import java.util.Map;
  * Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
  * <p/>
  * </pre></blockquote>
+ * By default the client is a {@link Proxy}. When {@link WebProxyConfig#isGenerateClass()} is set, a class implementing
+ * the interface is generated instead, once per interface, URI and bindings, and its methods invoke the remote resources
+ * directly.
  */
 public class WebProxy {
 
@@ -124,14 +122,39 @@ public class WebProxy {
     public static final <T> T createProxy(Class<T> clazz,
                                           URI uri,
                                           WebProxyConfig config) {
-        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz},
-                new WebProxyHandler(uri, createServiceDefinition(clazz), clazz, config.getObjectMapper(), config.getBindings(), config.getProperties()));
+        WebProxyHandler handler = new WebProxyHandler(uri, createServiceDefinition(clazz), clazz, config.getObjectMapper(), config.getBindings(), config.getProperties());
+        handler.webClient
+                .maxConnectionsPerHost(config.getMaxConnectionsPerHost())
+                .idleConnectionTimeoutInMs(config.getIdleConnectionTimeoutInMs());
+        // A generated class can only implement a public interface.
+        if (config.isGenerateClass() && Modifier.isPublic(clazz.getModifiers())) {
+            return clazz.cast(WebStubGenerator.newInstance(clazz, handler));
+        }
+        return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class[]{clazz}, handler);
     }
 
-    private static class WebProxyHandler implements InvocationHandler {
+    /**
+     * Release the connections and threads used by a client created by {@link #createProxy(Class, URI)}. The client
+     * can still be used after being closed, in which case new connections are opened.
+     *
+     * @param client a client created by {@link #createProxy(Class, URI)}.
+     * @throws IllegalArgumentException if the client hasn't been created by {@link WebProxy}.
+     */
+    public static void close(Object client) {
+        if (client instanceof WebStub) {
+            ((WebStub) client).handler().close();
+        } else if (client != null && Proxy.isProxyClass(client.getClass())
+                && Proxy.getInvocationHandler(client) instanceof WebProxyHandler) {
+            ((WebProxyHandler) Proxy.getInvocationHandler(client)).close();
+        } else {
+            throw new IllegalArgumentException("Not a WebProxy client: " + client);
+        }
+    }
+
+    static class WebProxyHandler implements InvocationHandler {
 
         private final URI uri;
-        private final WebClient webClient;
+        private final WebAHCClient webClient;
         private final Class<?> clazz;
         private final Map<String,String> bindings;
         private final Map<String,String> properties;
@@ -139,6 +162,11 @@ public class WebProxy {
         private final ObjectMapper objectMapper;
         private final TypeFactory typeFactory = TypeFactory.defaultInstance();
 
+        /**
+         * The {@link InvocationPlan} of each method invoked so far.
+         */
+        private final ConcurrentMap<Method, InvocationPlan> plans = new ConcurrentHashMap<Method, InvocationPlan>();
+
         public WebProxyHandler(URI uri, ServiceDefinition serviceDefinition, Class<?> clazz) {
             this(uri, serviceDefinition, clazz, new ObjectMapper(), Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap());
         }
@@ -160,278 +188,75 @@ public class WebProxy {
 
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return invoke(plan(method), args);
+        }
 
-            // Stolen from Ali's Sitebricks implementation
-            final StringBuilder rawUrl = new StringBuilder(uri.toURL().toString());
-            final Path atClass = clazz.getAnnotation(Path.class);
-
-            if (atClass != null) {
-                String s = atClass.value();
-                if (rawUrl.toString().endsWith("/") ){
-                    rawUrl.append(s.startsWith("/") ? s.substring(1) : s);
-                } else {
-                    rawUrl.append(s.startsWith("/") ? s : "/" + s);
-                }
-            } else {
-                final Path atDeclaringClass = method.getDeclaringClass().getAnnotation(Path.class);
-                if (atDeclaringClass != null) {
-                    rawUrl.append(atDeclaringClass.value());
-                }
-            }
-
-            final Path atMethod = method.getAnnotation(Path.class);
-            if (atMethod != null) {
-                String s = atMethod.value();
-                if (rawUrl.toString().endsWith("/") ){
-                    rawUrl.append(s.startsWith("/") ? s.substring(1) : s);
-                } else {
-                    rawUrl.append(s.startsWith("/") ? s : "/" + s);
-                }
-            }
-
-            if (rawUrl.toString().trim().length() == 0) {
-                throw new IllegalStateException(String.format(
-                        "Cannot calculate rest URL for [%s]. Is class and/or method annotated with @At?", method.getName()));
-            }
-
-            String resourcePath = constructPath(rawUrl.toString(),method, args);
-
-            Object body = retrieveBody(method, args);
-
-            Class<?> returnType = method.getReturnType();
-
-
-            // TODO: Beurk...Sitebricks doesn't handle serialization/deserialization the same way as Jersey.
-            boolean sbSupport = (String.class.isAssignableFrom(method.getReturnType())
-                                    && properties.get(SITEBRICKS_COMPAT) != null);
-
-            boolean deserializeLocally = false;
-            if (sbSupport && Map.class.isAssignableFrom(returnType) || Collection.class.isAssignableFrom(returnType) || returnType == Object.class){
-                returnType = String.class;
-                deserializeLocally = true;
-            }
+        Object invoke(InvocationPlan plan, Object[] args) throws Throwable {
+            webClient.clientOf(plan.path(args))
+                    .headers(plan.headers(args))
+                    .queryString(plan.queryString(args))
+                    .matrixParams(plan.matrixParams(args));
 
             Object o = null;
-            switch (methodType(method)) {
+            switch (plan.httpMethod()) {
                 case GET:
-                    o = webClient.clientOf(resourcePath)
-                            .headers(constructCookie(method, args, constructHeaders(method, args)))
-                            .queryString(constructFormString(method, args, constructQueryString(method, args)))
-                            .matrixParams(constructMatrix(method, args))
-                            .get(returnType);
+                    o = webClient.get(plan.returnType());
                     break;
                 case POST:
-                    o = webClient.clientOf(resourcePath)
-                            .headers(constructCookie(method, args, constructHeaders(method, args)))
-                            .queryString(constructFormString(method, args, constructQueryString(method, args)))
-                            .matrixParams(constructMatrix(method, args))
-                            .post(body, returnType);
+                    o = webClient.post(plan.body(args), plan.returnType());
                     break;
                 case DELETE:
-                    o = webClient.clientOf(resourcePath)
-                            .headers(constructCookie(method, args, constructHeaders(method, args)))
-                            .queryString(constructFormString(method, args, constructQueryString(method, args)))
-                            .matrixParams(constructMatrix(method, args))
-                            .delete(body, returnType);
+                    o = webClient.delete(plan.body(args), plan.returnType());
                     break;
                 case PUT:
-                    o = webClient.clientOf(resourcePath)
-                            .headers(constructCookie(method, args, constructHeaders(method, args)))
-                            .queryString(constructFormString(method, args, constructQueryString(method, args)))
-                            .matrixParams(constructMatrix(method, args))
-                            .put(body, returnType);
+                    o = webClient.put(plan.body(args), plan.returnType());
                     break;
             }
 
-            if (sbSupport || deserializeLocally){
-                return validateType(o.toString() , method);
+            if (plan.deserializeLocally()) {
+                return validateType(o.toString(), plan);
             } else {
                 return o;
             }
         }
 
-        private ServiceDefinition.METHOD methodType(Method method) {
-            for (Annotation a: method.getAnnotations()) {
-                if (Get.class.isAssignableFrom(a.getClass())) {
-                   return ServiceDefinition.METHOD.GET;
-                } else if (Post.class.isAssignableFrom(a.getClass())) {
-                    return ServiceDefinition.METHOD.POST;
-                } else if (Put.class.isAssignableFrom(a.getClass())) {
-                    return ServiceDefinition.METHOD.PUT;
-                } else if (Delete.class.isAssignableFrom(a.getClass())) {
-                    return ServiceDefinition.METHOD.DELETE;
-                }
-            }
-            throw new IllegalStateException("Method not supported");
+        URI uri() {
+            return uri;
         }
 
-        private Object validateType(String responseBody, Method m) throws IOException {
-            final Class<?> returnType = m.getReturnType();
-            if (returnType != void.class) {
-                final Type genericReturnType = m.getGenericReturnType();
-                return objectMapper.readValue(responseBody, typeFactory.constructType(genericReturnType, clazz));
-            }
-            return null;
+        Map<String, String> bindings() {
+            return bindings;
         }
 
-        private String constructPath(String url, Method m, Object params[]) {
-            StringBuilder pathBuilder = new StringBuilder();
-            Annotation[][] ans = m.getParameterAnnotations();
-
-            int position = 0;
-            boolean added = false;
-            for (Annotation[] annotations : ans) {
-                for (Annotation a : annotations) {
-                    if (PathParam.class.isAssignableFrom(a.getClass())) {
-                        added = true;
-                        String[] tokens = url.split("/");
-                        String replace = params[position].toString();
-
-                        // If the {} or : aren't specified, let's add it at the end.
-                        boolean hackyTrick = true;
-                        for (String s : tokens) {
-                            if (s.startsWith("{") || s.startsWith(":")) {
-                                // TODO: if the method types are not in the order this will fail.
-                                // Try to use the global bindings
-                                int end = s.startsWith( "{" ) ? s.length() - 1 : s.length();
-                                s = s.substring(1, end);
-                                s = bindings.get(s);
-
-                                if (s == null && position + 1 > params.length) {
-                                    throw new IllegalStateException("Missing {...} value");
-                                } else if (s == null) {
-                                    s = params[position++].toString();
-                                }
-                                hackyTrick = false;
-                            }
-                            pathBuilder.append(s).append("/");
-                        }
-
-                        if (hackyTrick) {
-                            pathBuilder.append(replace);
-                        } else {
-                            pathBuilder.deleteCharAt(pathBuilder.length() - 1);
-                        }
-                    }
-                }
-                position++;
-            }
-            if (!added) {
-                if (url.contains( ":" ) || url.contains( "{" )){
-                    String[] tokens = url.split("/");
-                    for (String s : tokens) {
-                        if (s.startsWith("{") || s.startsWith(":")) {
-                            int end = s.startsWith( "{" ) ? s.length() - 1 : s.length();
-                            String newS = s.substring( 1, end );
-                            String tmp = bindings.get( newS );
-                            if ( tmp != null ) {
-                                s = tmp;
-                            }
-                        }
-                        pathBuilder.append(s).append("/");
-                    }
-                    pathBuilder.deleteCharAt(pathBuilder.length() - 1);
-                } else {
-                    pathBuilder.append(url);
-                }
-            }
-            return pathBuilder.toString();
-        }
-
-        private Object retrieveBody(Method m, Object params[]) {
-            Annotation[][] ans = m.getParameterAnnotations();
-
-            int i = 0;
-            for (Annotation[] annotations : ans) {
-                if (annotations.length == 0) {
-                    return params[i];
-                }
-                i++;
-            }
-            return "";
-        }
-
-        private Map<String, String> constructHeaders(Method m, Object params[]) {
-            Map<String, String> headers = new HashMap<String, String>();
-            Annotation[][] ans = m.getParameterAnnotations();
-
-            int i = 0;
-            for (Annotation[] annotations : ans) {
-                for (Annotation a : annotations) {
-                    if (HeaderParam.class.isAssignableFrom(a.getClass())) {
-                        logger.debug("Processing @HeaderParam {}", a);
-                        headers.put(HeaderParam.class.cast(a).value(), params[i].toString());
-                    }
-                    i++;
-                }
-            }
-            return headers;
+        boolean sitebricksCompat() {
+            return properties.get(SITEBRICKS_COMPAT) != null;
         }
 
-        private Map<String, String> constructCookie(Method m, Object params[], Map<String, String> headers) {
-            Annotation[][] ans = m.getParameterAnnotations();
-
-            int i = 0;
-            for (Annotation[] annotations : ans) {
-                for (Annotation a : annotations) {
-                    if (CookieParam.class.isAssignableFrom(a.getClass())) {
-                        logger.debug("Processing @CookieParam {}", a);
-                        headers.put("Cookie", params[i].toString());
-                    }
-                    i++;
-                }
-            }
-            return headers;
+        WebClient webClient() {
+            return webClient;
         }
 
-        private Map<String, String> constructQueryString(Method m, Object params[]) {
-            Map<String, String> queryStrings = new HashMap<String, String>();
-            Annotation[][] ans = m.getParameterAnnotations();
-
-            int i = 0;
-            for (Annotation[] annotations : ans) {
-                for (Annotation a : annotations) {
-                    if (QueryParam.class.isAssignableFrom(a.getClass())) {
-                        logger.debug("Processing @QueryParam {}", a);
-                        queryStrings.put(QueryParam.class.cast(a).value(), params[i].toString());
-                    }
-                    i++;
-                }
-            }
-            return queryStrings;
+        void close() {
+            webClient.close();
         }
 
-        private Map<String, String> constructMatrix(Method m, Object params[]) {
-            Map<String, String> matrix = new HashMap<String, String>();
-            Annotation[][] ans = m.getParameterAnnotations();
-
-            int i = 0;
-            for (Annotation[] annotations : ans) {
-                for (Annotation a : annotations) {
-                    if (MatrixParam.class.isAssignableFrom(a.getClass())) {
-                        logger.debug("Processing @MatrixParam {}", a);
-                        matrix.put(MatrixParam.class.cast(a).value(), params[i].toString());
-                    }
-                    i++;
+        InvocationPlan plan(Method method) {
+            InvocationPlan plan = plans.get(method);
+            if (plan == null) {
+                plan = new InvocationPlan(uri, clazz, method, bindings, sitebricksCompat(), typeFactory);
+                InvocationPlan previous = plans.putIfAbsent(method, plan);
+                if (previous != null) {
+                    plan = previous;
                 }
             }
-            return matrix;
+            return plan;
         }
 
-        private Map<String, String> constructFormString(Method m, Object params[], Map<String, String> queryStrings) {
-            Annotation[][] ans = m.getParameterAnnotations();
-
-            int i = 0;
-            for (Annotation[] annotations : ans) {
-                for (Annotation a : annotations) {
-                    if (FormParam.class.isAssignableFrom(a.getClass())) {
-                        logger.debug("Processing @FormParam {}", a);
-                        queryStrings.put(FormParam.class.cast(a).value(), params[i].toString());
-                    }
-                    i++;
-                }
+        Object validateType(String responseBody, InvocationPlan plan) throws IOException {
+            if (plan.genericReturnType() != null) {
+                return objectMapper.readValue(responseBody, plan.genericReturnType());
             }
-            return queryStrings;
+            return null;
         }
 
     }
@@ -458,7 +283,7 @@ public class WebProxy {
         if (topLevelConsumes != null) {
             for (String c : topLevelConsumes.value()) {
                 logger.debug("Processing @Consumes {}", c);
-                sd.consuming(new MediaType(getType(c), getSubType(c)));
+                sd.consuming(MediaType.of(getType(c), getSubType(c)));
             }
         }
 
@@ -466,7 +291,7 @@ public class WebProxy {
         if (topLevelProduces != null) {
             for (String p : topLevelProduces.value()) {
                 logger.debug("Processing @Produces {}", p);
-                sd.producing(new MediaType(getType(p), getSubType(p)));
+                sd.producing(MediaType.of(getType(p), getSubType(p)));
             }
         }
 
@@ -506,7 +331,7 @@ public class WebProxy {
                     if (produces != null) {
                         for (String p : produces.value()) {
                             logger.debug("Processing @Produces {}", p);
-                            sh.producing(new MediaType(getType(p), getSubType(p)));
+                            sh.producing(MediaType.of(getType(p), getSubType(p)));
                         }
                     }
 
@@ -515,7 +340,7 @@ public class WebProxy {
                         for (String c : consumes.value()) {
                             // TODO
                             logger.debug("Processing @Consumes {}", c);
-                            sh.consumeWith(new MediaType(getType(c), getSubType(c)), null);
+                            sh.consumeWith(MediaType.of(getType(c), getSubType(c)), null);
                         }
                     }
 
@@ -24,12 +24,19 @@ public class WebProxyConfig {
     private final Map<String,String> bindings;
     private final Map<String,String> properties;
     private final ObjectMapper objectMapper;
+    private final boolean generateClass;
+    private final int maxConnectionsPerHost;
+    private final int idleConnectionTimeoutInMs;
 
-    private WebProxyConfig(Map<String, String> bindings, Map<String, String> properties, ObjectMapper objectMapper){
+    private WebProxyConfig(Map<String, String> bindings, Map<String, String> properties, ObjectMapper objectMapper,
+                           boolean generateClass, int maxConnectionsPerHost, int idleConnectionTimeoutInMs){
 
         this.bindings = bindings;
         this.properties = properties;
         this.objectMapper = objectMapper;
+        this.generateClass = generateClass;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleConnectionTimeoutInMs = idleConnectionTimeoutInMs;
     }
 
     /**
@@ -56,11 +63,39 @@ public class WebProxyConfig {
         return objectMapper;
     }
 
+    /**
+     * Return true if {@link WebProxy} generates a class implementing the interface instead of a
+     * {@link java.lang.reflect.Proxy}
+     * @return true if {@link WebProxy} generates a class implementing the interface.
+     */
+    public boolean isGenerateClass() {
+        return generateClass;
+    }
+
+    /**
+     * Return the maximum number of connections the client keeps open to a single host, or -1 for no limit.
+     * @return the maximum number of connections per host.
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Return the time, in milliseconds, an idle connection is kept in the client's pool.
+     * @return the time an idle connection is kept in the pool.
+     */
+    public int getIdleConnectionTimeoutInMs() {
+        return idleConnectionTimeoutInMs;
+    }
+
     public static class Builder{
 
         private Map<String,String> bindings = Collections.<String, String>emptyMap();
         private Map<String,String> properties = Collections.<String, String>emptyMap();
         private ObjectMapper objectMapper = new ObjectMapper();
+        private boolean generateClass = false;
+        private int maxConnectionsPerHost = -1;
+        private int idleConnectionTimeoutInMs = 60 * 1000;
 
         public Map<String, String> getBindings() {
             return bindings;
@@ -96,8 +131,42 @@ public class WebProxyConfig {
             return this;
         }
 
+        /**
+         * Generate a class implementing the interface instead of a {@link java.lang.reflect.Proxy}. The class is
+         * generated once per interface, URI and bindings, and its methods build their request from their arguments
+         * without the reflective dispatch of a {@link java.lang.reflect.Proxy}.
+         * Non public interfaces are always proxied. Default is false.
+         * @param generateClass true to generate a class implementing the interface.
+         * @return this.
+         */
+        public Builder setGenerateClass(boolean generateClass) {
+            this.generateClass = generateClass;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of connections the client keeps open to a single host. Default is -1, e.g no limit.
+         * @param maxConnectionsPerHost the maximum number of connections per host, or -1 for no limit.
+         * @return this.
+         */
+        public Builder setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = maxConnectionsPerHost;
+            return this;
+        }
+
+        /**
+         * Set the time an idle connection is kept in the client's pool before being closed. Default is 60 seconds.
+         * @param idleConnectionTimeoutInMs the time, in milliseconds.
+         * @return this.
+         */
+        public Builder setIdleConnectionTimeoutInMs(int idleConnectionTimeoutInMs) {
+            this.idleConnectionTimeoutInMs = idleConnectionTimeoutInMs;
+            return this;
+        }
+
         public WebProxyConfig build() {
-            return new WebProxyConfig(Collections.unmodifiableMap(bindings),Collections.unmodifiableMap(properties),objectMapper);
+            return new WebProxyConfig(Collections.unmodifiableMap(bindings),Collections.unmodifiableMap(properties),objectMapper,generateClass,
+                    maxConnectionsPerHost, idleConnectionTimeoutInMs);
         }
 
     }
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.client;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+
+/**
+ * The super class of the clients generated by {@link WebProxy} when {@link WebProxyConfig#isGenerateClass()} is set.
+ * Every method of the generated class builds its request from its arguments and sends it with {@link #client()}.
+ * This class isn't meant to be extended by anything else.
+ */
+public abstract class WebStub {
+
+    private WebProxy.WebProxyHandler handler;
+    private WebClient client;
+    private InvocationPlan[] plans;
+
+    protected WebStub() {
+    }
+
+    final void init(WebProxy.WebProxyHandler handler, InvocationPlan[] plans) {
+        this.handler = handler;
+        this.client = handler.webClient();
+        this.plans = plans;
+    }
+
+    final WebProxy.WebProxyHandler handler() {
+        return handler;
+    }
+
+    /**
+     * Return the {@link WebClient} the generated methods send their request with.
+     * @return the {@link WebClient} of this client.
+     */
+    protected final WebClient client() {
+        return client;
+    }
+
+    /**
+     * De-serialize a response's body read as a String, for the methods whose {@link InvocationPlan} de-serialize
+     * locally.
+     * @param response the response's body
+     * @param index the index of the method's {@link InvocationPlan}
+     * @return the de-serialized response's body
+     * @throws IOException if the method declares it.
+     */
+    protected final Object read(Object response, int index) throws IOException {
+        InvocationPlan plan = plans[index];
+        try {
+            return handler.validateType(response.toString(), plan);
+        } catch (IOException e) {
+            // Behave like java.lang.reflect.Proxy
+            if (plan.declares(e)) {
+                throw e;
+            }
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    /**
+     * Return the path of the remote resource mapped to a method of the generated class. It depends on the URI and
+     * bindings of this client, so it isn't written in the generated class.
+     * @param index the index of the method's {@link InvocationPlan}
+     * @param args the method's arguments annotated with {@link org.sonatype.restsimple.annotation.PathParam}, the
+     * other ones being null, or null if there are none.
+     * @return the path of the remote resource.
+     */
+    protected final String path(int index, Object[] args) {
+        return plans[index].path(args);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "{uri=" + handler.uri() + "}";
+    }
+}
@@ -0,0 +1,402 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.client;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.sonatype.restsimple.api.ServiceDefinition;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Generate, using ASM, a {@link WebStub} implementing an interface annotated with RestSimple annotations. The names
+ * of the headers, query and matrix parameters and the response's type of every method are taken from its
+ * {@link InvocationPlan} and written in the generated class, which looks like:
+ * <p><blockquote><pre>
+ * public final class ProxyClient$$WebStub extends WebStub implements ProxyClient {
+ *
+ *     public Pet post(String myPet, String petType, String body) {
+ *         HashMap headers = new HashMap();
+ *         headers.put("petType", petType.toString());
+ *         return (Pet) client().clientOf(path(0, new Object[]{myPet, null, null}))
+ *                 .headers(headers)
+ *                 .queryString(Collections.EMPTY_MAP)
+ *                 .matrixParams(Collections.EMPTY_MAP)
+ *                 .post(body, Pet.class);
+ *     }
+ * }
+ * </pre></blockquote>
+ * The URL depends on the URI and bindings of the {@link WebProxy.WebProxyHandler}, so it is built at call time by
+ * the instance's {@link InvocationPlan}, and a class is generated once per interface and Sitebricks compatibility.
+ */
+final class WebStubGenerator implements Opcodes {
+
+    private final static String SUFFIX = "$$WebStub";
+    private final static String SUPER_CLASS = Type.getInternalName(WebStub.class);
+    private final static String CLIENT = Type.getInternalName(WebClient.class);
+    private final static String CLIENT_DESC = Type.getDescriptor(WebClient.class);
+    private final static String MAP_DESC = "(Ljava/util/Map;)" + CLIENT_DESC;
+    private final static String PATH_DESC = "(I[Ljava/lang/Object;)Ljava/lang/String;";
+
+    /**
+     * The generated classes, per interface and per Sitebricks compatibility, the only property of the
+     * {@link WebProxy.WebProxyHandler} written in them. A generated class references its interface, so it is softly
+     * referenced to not prevent the interface's {@link ClassLoader} from being garbage collected.
+     */
+    private final static Map<Class<?>, Map<Boolean, SoftReference<Stub>>> stubs =
+            new WeakHashMap<Class<?>, Map<Boolean, SoftReference<Stub>>>();
+
+    private WebStubGenerator() {
+    }
+
+    /**
+     * Create an instance of the class generated for an interface.
+     * @param clazz an interface annotated with RestSimple annotations.
+     * @param handler the {@link WebProxy.WebProxyHandler} invoking the remote resources.
+     * @return an instance of the generated class.
+     */
+    static WebStub newInstance(Class<?> clazz, WebProxy.WebProxyHandler handler) {
+        Stub stub = stub(clazz, handler);
+
+        InvocationPlan[] plans = new InvocationPlan[stub.methods.length];
+        for (int i = 0; i < plans.length; i++) {
+            plans[i] = handler.plan(stub.methods[i]);
+        }
+
+        WebStub webStub;
+        try {
+            webStub = stub.type.newInstance();
+        } catch (InstantiationException e) {
+            throw new IllegalStateException(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        webStub.init(handler, plans);
+        return webStub;
+    }
+
+    private static Stub stub(Class<?> clazz, WebProxy.WebProxyHandler handler) {
+        Boolean key = handler.sitebricksCompat();
+        synchronized (stubs) {
+            Map<Boolean, SoftReference<Stub>> generated = stubs.get(clazz);
+            if (generated == null) {
+                generated = new HashMap<Boolean, SoftReference<Stub>>();
+                stubs.put(clazz, generated);
+            }
+            SoftReference<Stub> ref = generated.get(key);
+            Stub stub = ref == null ? null : ref.get();
+            if (stub == null) {
+                stub = generate(clazz, handler);
+                generated.put(key, new SoftReference<Stub>(stub));
+            }
+            return stub;
+        }
+    }
+
+    private static Stub generate(Class<?> clazz, WebProxy.WebProxyHandler handler) {
+        String className = clazz.getName() + SUFFIX;
+        String internalName = className.replace('.', '/');
+
+        // The generated methods don't branch, so only the maximum stack sizes are computed.
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, internalName, null, SUPER_CLASS,
+                new String[]{Type.getInternalName(clazz)});
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, SUPER_CLASS, "<init>", "()V");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(1, 1);
+        mv.visitEnd();
+
+        // The same method may be inherited from more than one interface.
+        List<Method> methods = new ArrayList<Method>();
+        Set<String> signatures = new HashSet<String>();
+        for (Method m : clazz.getMethods()) {
+            if (signatures.add(m.getName() + Type.getMethodDescriptor(m))) {
+                generateMethod(cw, internalName, m, methods.size(), handler.plan(m));
+                methods.add(m);
+            }
+        }
+        cw.visitEnd();
+
+        byte[] bytes = cw.toByteArray();
+        Class<? extends WebStub> type = new StubClassLoader(clazz.getClassLoader())
+                .define(className, bytes).asSubclass(WebStub.class);
+        return new Stub(type, methods.toArray(new Method[methods.size()]));
+    }
+
+    private static void generateMethod(ClassWriter cw, String internalName, Method m, int index, InvocationPlan plan) {
+        Class<?>[] exceptions = m.getExceptionTypes();
+        String[] exceptionNames = new String[exceptions.length];
+        for (int i = 0; i < exceptions.length; i++) {
+            exceptionNames[i] = Type.getInternalName(exceptions[i]);
+        }
+
+        Type[] args = Type.getArgumentTypes(m);
+        int[] locals = new int[args.length];
+        int local = 1;
+        for (int i = 0; i < args.length; i++) {
+            locals[i] = local;
+            local += args[i].getSize();
+        }
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, m.getName(), Type.getMethodDescriptor(m), null, exceptionNames);
+        mv.visitCode();
+
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, internalName, "client", "()" + CLIENT_DESC);
+
+        path(mv, internalName, index, plan, args, locals);
+        mv.visitMethodInsn(INVOKEINTERFACE, CLIENT, "clientOf", "(Ljava/lang/String;)" + CLIENT_DESC);
+
+        map(mv, args, locals, plan.headerParams(), plan.cookieParams(), null);
+        mv.visitMethodInsn(INVOKEINTERFACE, CLIENT, "headers", MAP_DESC);
+
+        map(mv, args, locals, plan.queryParams(), null, plan.formParams());
+        mv.visitMethodInsn(INVOKEINTERFACE, CLIENT, "queryString", MAP_DESC);
+
+        map(mv, args, locals, plan.matrixParams(), null, null);
+        mv.visitMethodInsn(INVOKEINTERFACE, CLIENT, "matrixParams", MAP_DESC);
+
+        String httpMethod = plan.httpMethod().name().toLowerCase(Locale.ENGLISH);
+        if (plan.httpMethod() == ServiceDefinition.METHOD.GET) {
+            classConstant(mv, plan.returnType());
+            mv.visitMethodInsn(INVOKEINTERFACE, CLIENT, httpMethod, "(Ljava/lang/Class;)Ljava/lang/Object;");
+        } else {
+            int body = plan.bodyParam();
+            if (body == -1) {
+                mv.visitLdcInsn("");
+            } else {
+                mv.visitVarInsn(args[body].getOpcode(ILOAD), locals[body]);
+                box(mv, args[body]);
+            }
+            classConstant(mv, plan.returnType());
+            mv.visitMethodInsn(INVOKEINTERFACE, CLIENT, httpMethod,
+                    "(Ljava/lang/Object;Ljava/lang/Class;)Ljava/lang/Object;");
+        }
+
+        if (plan.deserializeLocally()) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitInsn(SWAP);
+            push(mv, index);
+            mv.visitMethodInsn(INVOKEVIRTUAL, internalName, "read", "(Ljava/lang/Object;I)Ljava/lang/Object;");
+        }
+
+        Type returnType = Type.getReturnType(m);
+        switch (returnType.getSort()) {
+            case Type.VOID:
+                mv.visitInsn(POP);
+                mv.visitInsn(RETURN);
+                break;
+            case Type.OBJECT:
+            case Type.ARRAY:
+                mv.visitTypeInsn(CHECKCAST, returnType.getInternalName());
+                mv.visitInsn(ARETURN);
+                break;
+            default:
+                String wrapper = wrapper(returnType);
+                mv.visitTypeInsn(CHECKCAST, wrapper);
+                mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, returnType.getClassName() + "Value",
+                        "()" + returnType.getDescriptor());
+                mv.visitInsn(returnType.getOpcode(IRETURN));
+        }
+
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Push the path built by {@link WebStub#path(int, Object[])} from the arguments annotated with
+     * {@link org.sonatype.restsimple.annotation.PathParam}, boxed, or from null if there are none.
+     */
+    private static void path(MethodVisitor mv, String internalName, int index, InvocationPlan plan, Type[] args,
+                             int[] locals) {
+        mv.visitVarInsn(ALOAD, 0);
+        push(mv, index);
+        if (plan.hasPathParams()) {
+            push(mv, args.length);
+            mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+            for (int i = 0; i < args.length; i++) {
+                if (plan.isPathParam(i)) {
+                    mv.visitInsn(DUP);
+                    push(mv, i);
+                    mv.visitVarInsn(args[i].getOpcode(ILOAD), locals[i]);
+                    box(mv, args[i]);
+                    mv.visitInsn(AASTORE);
+                }
+            }
+        } else {
+            mv.visitInsn(ACONST_NULL);
+        }
+        mv.visitMethodInsn(INVOKEVIRTUAL, internalName, "path", PATH_DESC);
+    }
+
+    /**
+     * Push a map of the named parameters, then of the cookies, then of the other named parameters, in the order
+     * {@link InvocationPlan} fills them.
+     */
+    private static void map(MethodVisitor mv, Type[] args, int[] locals, InvocationPlan.Param[] params, int[] cookies,
+                            InvocationPlan.Param[] more) {
+        int size = params.length + (cookies == null ? 0 : cookies.length) + (more == null ? 0 : more.length);
+        if (size == 0) {
+            mv.visitFieldInsn(GETSTATIC, "java/util/Collections", "EMPTY_MAP", "Ljava/util/Map;");
+            return;
+        }
+
+        mv.visitTypeInsn(NEW, "java/util/HashMap");
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/util/HashMap", "<init>", "()V");
+        for (InvocationPlan.Param p : params) {
+            put(mv, p.name, args[p.index], locals[p.index]);
+        }
+        if (cookies != null) {
+            for (int i : cookies) {
+                put(mv, "Cookie", args[i], locals[i]);
+            }
+        }
+        if (more != null) {
+            for (InvocationPlan.Param p : more) {
+                put(mv, p.name, args[p.index], locals[p.index]);
+            }
+        }
+    }
+
+    private static void put(MethodVisitor mv, String name, Type arg, int local) {
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn(name);
+        string(mv, arg, local);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/util/HashMap", "put",
+                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
+        mv.visitInsn(POP);
+    }
+
+    /**
+     * Push the String value of an argument, like {@link Object#toString()} on the boxed argument does.
+     */
+    private static void string(MethodVisitor mv, Type arg, int local) {
+        mv.visitVarInsn(arg.getOpcode(ILOAD), local);
+        switch (arg.getSort()) {
+            case Type.OBJECT:
+            case Type.ARRAY:
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "toString", "()Ljava/lang/String;");
+                break;
+            case Type.BYTE:
+            case Type.SHORT:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(I)Ljava/lang/String;");
+                break;
+            default:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf",
+                        "(" + arg.getDescriptor() + ")Ljava/lang/String;");
+        }
+    }
+
+    private static void classConstant(MethodVisitor mv, Class<?> type) {
+        if (type.isPrimitive()) {
+            String wrapper = type == void.class ? "java/lang/Void" : wrapper(Type.getType(type));
+            mv.visitFieldInsn(GETSTATIC, wrapper, "TYPE", "Ljava/lang/Class;");
+        } else {
+            mv.visitLdcInsn(Type.getType(type));
+        }
+    }
+
+    private static void push(MethodVisitor mv, int value) {
+        if (value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static void box(MethodVisitor mv, Type type) {
+        if (type.getSort() != Type.OBJECT && type.getSort() != Type.ARRAY) {
+            String wrapper = wrapper(type);
+            mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf", "(" + type.getDescriptor() + ")L" + wrapper + ";");
+        }
+    }
+
+    private static String wrapper(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return "java/lang/Boolean";
+            case Type.CHAR:
+                return "java/lang/Character";
+            case Type.BYTE:
+                return "java/lang/Byte";
+            case Type.SHORT:
+                return "java/lang/Short";
+            case Type.INT:
+                return "java/lang/Integer";
+            case Type.FLOAT:
+                return "java/lang/Float";
+            case Type.LONG:
+                return "java/lang/Long";
+            case Type.DOUBLE:
+                return "java/lang/Double";
+            default:
+                throw new IllegalArgumentException("Not a primitive type: " + type);
+        }
+    }
+
+    private final static class Stub {
+
+        final Class<? extends WebStub> type;
+
+        /**
+         * The methods implemented by the generated class, in the order of their {@link InvocationPlan}'s index.
+         */
+        final Method[] methods;
+
+        Stub(Class<? extends WebStub> type, Method[] methods) {
+            this.type = type;
+            this.methods = methods;
+        }
+    }
+
+    private final static class StubClassLoader extends ClassLoader {
+
+        StubClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            // The interface's ClassLoader may not see the WebStub and WebClient WebProxy uses.
+            if (name.equals(WebStub.class.getName())) {
+                return WebStub.class;
+            } else if (name.equals(WebClient.class.getName())) {
+                return WebClient.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.test.client;
+
+import org.sonatype.restsimple.WebDriver;
+import org.sonatype.restsimple.api.Action;
+import org.sonatype.restsimple.api.ActionContext;
+import org.sonatype.restsimple.api.ActionException;
+import org.sonatype.restsimple.api.DefaultServiceDefinition;
+import org.sonatype.restsimple.api.GetServiceHandler;
+import org.sonatype.restsimple.api.PostServiceHandler;
+import org.sonatype.restsimple.client.WebAHCClient;
+import org.sonatype.restsimple.client.WebClient;
+import org.sonatype.restsimple.client.WebException;
+import org.sonatype.restsimple.common.test.petstore.Pet;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.sonatype.restsimple.spi.LazyMap;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public abstract class ActionContextTest extends BaseTest {
+
+    @BeforeClass(alwaysRun = true)
+    public void setUpGlobal() throws Exception {
+
+        acceptHeader = PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON;
+
+        Action<Pet, Pet> headers = new Action<Pet, Pet>() {
+            @Override
+            public Pet action(ActionContext<Pet> actionContext) throws ActionException {
+                return lazyValue(actionContext.headers(), "X-Pet");
+            }
+        };
+
+        Action<Pet, Pet> params = new Action<Pet, Pet>() {
+            @Override
+            public Pet action(ActionContext<Pet> actionContext) throws ActionException {
+                return lazyValue(actionContext.paramsString(), "kind");
+            }
+        };
+
+        Action<Pet, Pet> matrix = new Action<Pet, Pet>() {
+            @Override
+            public Pet action(ActionContext<Pet> actionContext) throws ActionException {
+                return lazyValue(actionContext.matrixString(), "kind");
+            }
+        };
+
+        Action<Pet, Pet> typed = new Action<Pet, Pet>() {
+            @Override
+            public Pet action(ActionContext<Pet> actionContext) throws ActionException {
+                int id = actionContext.pathParamAsInt("id");
+                long longId = actionContext.pathParamAsLong("id");
+                return new Pet(actionContext.pathParams().get("store") + "-" + (id + 1) + "-" + (longId * 2));
+            }
+        };
+
+        Action<Pet, Pet> positional = new Action<Pet, Pet>() {
+            @Override
+            public Pet action(ActionContext<Pet> actionContext) throws ActionException {
+                return new Pet(actionContext.pathParamCount() + "-" + actionContext.pathParam(0) + "-"
+                        + (actionContext.pathParamAsInt(1) + 1) + "-" + (actionContext.pathParamAsLong(1) * 2));
+            }
+        };
+
+        serviceDefinition = new DefaultServiceDefinition();
+        serviceDefinition
+                .withHandler(new GetServiceHandler("/headers/:pet", headers).consumeWith(JSON, Pet.class).producing(JSON))
+                .withHandler(new PostServiceHandler("/params/:pet", params).consumeWith(JSON, Pet.class).producing(JSON))
+                .withHandler(new GetServiceHandler("/matrix/:pet", matrix).consumeWith(JSON, Pet.class).producing(JSON))
+                .withHandler(new GetServiceHandler("/typed/:store/:id", typed).consumeWith(JSON, Pet.class).producing(JSON))
+                .withHandler(new GetServiceHandler("/positional/:store/pets/:id", positional).consumeWith(JSON, Pet.class).producing(JSON));
+
+        webDriver = WebDriver.getDriver(provider()).serviceDefinition(serviceDefinition);
+        targetUrl = webDriver.getUri();
+        logger.info("Local HTTP server started successfully");
+    }
+
+    @Test(timeOut = 20000)
+    public void testHeaders() throws Throwable {
+        logger.info("running test: testHeaders");
+
+        Map<String, String> m = headers();
+        m.put("X-Pet", "cat");
+
+        Pet pet = client().clientOf(targetUrl + "/headers/myPet")
+                .headers(m)
+                .get(Pet.class);
+
+        assertEquals(pet.getName(), "[cat] lazy");
+    }
+
+    @Test(timeOut = 20000)
+    public void testParams() throws Throwable {
+        logger.info("running test: testParams");
+
+        Map<String, String> q = new HashMap<String, String>();
+        q.put("kind", "dog");
+
+        Pet pet = client().clientOf(targetUrl + "/params/myPet")
+                .headers(headers())
+                .queryString(q)
+                .post(new Pet("myPet"), Pet.class);
+
+        assertEquals(pet.getName(), "[dog] lazy");
+    }
+
+    @Test(timeOut = 20000)
+    public void testMatrixParams() throws Throwable {
+        logger.info("running test: testMatrixParams");
+
+        Map<String, String> matrix = new HashMap<String, String>();
+        matrix.put("kind", "fish");
+
+        Pet pet = client().clientOf(targetUrl + "/matrix/myPet")
+                .headers(headers())
+                .matrixParams(matrix)
+                .get(Pet.class);
+
+        assertEquals(pet.getName(), "[fish] lazy");
+    }
+
+    @Test(timeOut = 20000)
+    public void testTypedPathParams() throws Throwable {
+        logger.info("running test: testTypedPathParams");
+
+        Pet pet = client().clientOf(targetUrl + "/typed/myStore/41")
+                .headers(headers())
+                .get(Pet.class);
+
+        assertEquals(pet.getName(), "myStore-42-82");
+    }
+
+    @Test(timeOut = 20000)
+    public void testPositionalPathParams() throws Throwable {
+        logger.info("running test: testPositionalPathParams");
+
+        // The literal segments of the path aren't counted.
+        Pet pet = client().clientOf(targetUrl + "/positional/myStore/pets/41")
+                .headers(headers())
+                .get(Pet.class);
+
+        assertEquals(pet.getName(), "2-myStore-42-82");
+    }
+
+    @Test(timeOut = 20000)
+    public void testInvalidTypedPathParam() throws Throwable {
+        logger.info("running test: testInvalidTypedPathParam");
+
+        try {
+            client().clientOf(targetUrl + "/typed/myStore/fortyone")
+                    .headers(headers())
+                    .get(Pet.class);
+            fail("No exception");
+        } catch (WebException ex) {
+            assertEquals(ex.getStatusCode(), 400);
+        }
+    }
+
+    private WebClient client() {
+        return closeAfterTest(new WebAHCClient(serviceDefinition));
+    }
+
+    private Map<String, String> headers() {
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+        return m;
+    }
+
+    /**
+     * Return the values of a map entry, and whether the map is still a {@link LazyMap}.
+     */
+    private static Pet lazyValue(Map<String, Collection<String>> map, String name) {
+        Collection<String> values = null;
+        for (Map.Entry<String, Collection<String>> e : map.entrySet()) {
+            if (e.getKey().equalsIgnoreCase(name)) {
+                values = e.getValue();
+            }
+        }
+        return new Pet(values + (map instanceof LazyMap ? " lazy" : " eager"));
+    }
+}
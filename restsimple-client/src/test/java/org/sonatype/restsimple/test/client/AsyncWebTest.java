@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.test.client;
+
+import org.sonatype.restsimple.api.MediaType;
+import org.sonatype.restsimple.client.AsyncWebAHCClient;
+import org.sonatype.restsimple.client.AsyncWebClient;
+import org.sonatype.restsimple.client.WebException;
+import org.sonatype.restsimple.common.test.petstore.Pet;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.FileAssert.fail;
+
+public abstract class AsyncWebTest extends BaseTest {
+
+    @Test(timeOut = 20000)
+    public void testPost() throws Throwable {
+        logger.info("running test: testPost");
+
+        AsyncWebClient webClient = new AsyncWebAHCClient(serviceDefinition);
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        Future<Pet> pet = webClient.clientOf(targetUrl + "/addPet/myPet")
+                .headers(m)
+                .post(new Pet("pouetpouet"), Pet.class);
+
+        assertNotNull(pet.get());
+
+        pet = webClient.clientOf(targetUrl + "/getPet/myPet")
+                .headers(m)
+                .get(Pet.class);
+
+        assertEquals(pet.get().getName(), "pouetpouet");
+        webClient.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void testCallback() throws Throwable {
+        logger.info("running test: testCallback");
+
+        AsyncWebClient webClient = new AsyncWebAHCClient(serviceDefinition);
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        webClient.clientOf(targetUrl + "/addPet/myPet")
+                .headers(m)
+                .post(new Pet("pouetpouet"), Pet.class).get();
+
+        final CountDownLatch latch = new CountDownLatch(10);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final List<Pet> pets = new CopyOnWriteArrayList<Pet>();
+
+        for (int i = 0; i < 10; i++) {
+            webClient.clientOf(targetUrl + "/getPet/myPet")
+                    .headers(m)
+                    .get(Pet.class, new AsyncWebClient.Callback<Pet>() {
+                        @Override
+                        public void completed(Pet response) {
+                            pets.add(response);
+                            latch.countDown();
+                        }
+
+                        @Override
+                        public void failed(Throwable t) {
+                            failure.set(t);
+                            latch.countDown();
+                        }
+                    });
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(failure.get(), null);
+        assertEquals(pets.size(), 10);
+        for (Pet pet : pets) {
+            assertEquals(pet.getName(), "pouetpouet");
+        }
+        webClient.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void testConcurrentPaths() throws Throwable {
+        logger.info("running test: testConcurrentPaths");
+
+        AsyncWebClient webClient = new AsyncWebAHCClient(serviceDefinition);
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        int count = 20;
+        for (int i = 0; i < count; i++) {
+            webClient.clientOf(targetUrl + "/addPet/concurrent" + i)
+                    .headers(m)
+                    .post(new Pet("pet" + i), Pet.class).get();
+        }
+
+        // Every request has its own path, so a response for another request's path is detected.
+        List<Future<Pet>> pets = new ArrayList<Future<Pet>>();
+        for (int i = 0; i < count; i++) {
+            pets.add(webClient.clientOf(targetUrl + "/getPet/concurrent" + i)
+                    .headers(m)
+                    .get(Pet.class));
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(pets.get(i).get().getName(), "pet" + i);
+        }
+        webClient.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void testDelete() throws Throwable {
+        logger.info("running test: testDelete");
+
+        AsyncWebClient webClient = new AsyncWebAHCClient(serviceDefinition);
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        webClient.clientOf(targetUrl + "/addPet/myPet")
+                .headers(m)
+                .post(new Pet("pouetpouet"), Pet.class).get();
+
+        Pet pet = webClient.clientOf(targetUrl + "/deletePet/myPet")
+                .headers(m)
+                .delete(new Pet("pouetpouet"), Pet.class).get();
+
+        assertNotNull(pet);
+
+        try {
+            webClient.clientOf(targetUrl + "/getPet/myPet")
+                    .headers(m)
+                    .get(Pet.class).get();
+            fail("No exception");
+        } catch (ExecutionException ex) {
+            assertEquals(ex.getCause().getClass(), WebException.class);
+        }
+        webClient.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void testPostContentNegotiation() throws Throwable {
+        logger.info("running test: testPostContentNegotiation");
+
+        AsyncWebClient webClient = new AsyncWebAHCClient(serviceDefinition);
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+        m.put("Accept", "application/xml");
+
+        Pet pet = webClient.clientOf(targetUrl + "/addPet/myPet")
+                .headers(m)
+                .supportedContentType(new MediaType(PetstoreAction.APPLICATION, PetstoreAction.JSON))
+                .post(new Pet("pouetpouet"), Pet.class).get();
+
+        assertNotNull(pet);
+        webClient.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void testCancel() throws Throwable {
+        logger.info("running test: testCancel");
+
+        AsyncWebClient webClient = new AsyncWebAHCClient(serviceDefinition);
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        final AtomicReference<Object> notified = new AtomicReference<Object>();
+        Future<Pet> pet = webClient.clientOf(targetUrl + "/getPet/myPet")
+                .headers(m)
+                .get(Pet.class, new AsyncWebClient.Callback<Pet>() {
+                    @Override
+                    public void completed(Pet response) {
+                        notified.set(response);
+                    }
+
+                    @Override
+                    public void failed(Throwable t) {
+                        notified.set(t);
+                    }
+                });
+
+        if (pet.cancel(true)) {
+            assertTrue(pet.isCancelled());
+            assertTrue(pet.isDone());
+            assertFalse(pet.cancel(true));
+            try {
+                pet.get();
+                fail("No exception");
+            } catch (CancellationException ex) {
+                // expected
+            }
+            assertEquals(notified.get(), null);
+        } else {
+            // The response won the race: the future completed, exactly once.
+            assertFalse(pet.isCancelled());
+            assertTrue(pet.isDone());
+            assertNotNull(notified.get());
+        }
+        webClient.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void testGetTimeout() throws Throwable {
+        logger.info("running test: testGetTimeout");
+
+        AsyncWebClient webClient = new AsyncWebAHCClient(serviceDefinition);
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        webClient.clientOf(targetUrl + "/addPet/myPet")
+                .headers(m)
+                .post(new Pet("pouetpouet"), Pet.class).get();
+
+        Future<Pet> pet = webClient.clientOf(targetUrl + "/getPet/myPet")
+                .headers(m)
+                .get(Pet.class);
+
+        assertEquals(pet.get(10, TimeUnit.SECONDS).getName(), "pouetpouet");
+        assertTrue(pet.isDone());
+        assertFalse(pet.isCancelled());
+        webClient.close();
+    }
+}
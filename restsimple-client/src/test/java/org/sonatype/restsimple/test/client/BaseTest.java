@@ -21,11 +21,18 @@ import org.sonatype.restsimple.api.GetServiceHandler;
 import org.sonatype.restsimple.api.MediaType;
 import org.sonatype.restsimple.api.PostServiceHandler;
 import org.sonatype.restsimple.api.ServiceDefinition;
+import org.sonatype.restsimple.client.AsyncWebClient;
+import org.sonatype.restsimple.client.WebClient;
+import org.sonatype.restsimple.client.WebProxy;
 import org.sonatype.restsimple.common.test.petstore.Pet;
 import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
 import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeClass;
 
+import java.util.ArrayList;
+import java.util.List;
+
 abstract public class BaseTest {
 
     protected static final Logger logger = LoggerFactory.getLogger(BaseTest.class);
@@ -42,6 +49,8 @@ abstract public class BaseTest {
 
     protected ServiceDefinition serviceDefinition;
 
+    private final List<Object> clients = new ArrayList<Object>();
+
     @BeforeClass(alwaysRun = true)
     public void setUpGlobal() throws Exception {
 
@@ -62,6 +71,30 @@ abstract public class BaseTest {
 
     public abstract WebDriver.PROVIDER provider();
 
+    /**
+     * Close a {@link WebClient}, an {@link AsyncWebClient} or a {@link WebProxy} client once the test method returns.
+     * @param client the client
+     * @return the client
+     */
+    protected synchronized <T> T closeAfterTest(T client) {
+        clients.add(client);
+        return client;
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public synchronized void closeClients() {
+        for (Object client : clients) {
+            if (client instanceof WebClient) {
+                ((WebClient) client).close();
+            } else if (client instanceof AsyncWebClient) {
+                ((AsyncWebClient) client).close();
+            } else {
+                WebProxy.close(client);
+            }
+        }
+        clients.clear();
+    }
+
     @AfterClass(alwaysRun = true)
     public void tearDown() throws Exception {
         webDriver.shutdown();
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.test.client;
+
+import org.sonatype.restsimple.WebDriver;
+import org.sonatype.restsimple.client.WebAHCClient;
+import org.sonatype.restsimple.client.WebClient;
+import org.sonatype.restsimple.client.WebProxy;
+import org.sonatype.restsimple.client.WebProxyConfig;
+import org.sonatype.restsimple.common.test.petstore.Pet;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class CloseClientTest extends BaseTest {
+
+    @Override
+    public WebDriver.PROVIDER provider() {
+        return WebDriver.PROVIDER.JAXRS;
+    }
+
+    @Test(timeOut = 60000)
+    public void testCloseProxies() throws Throwable {
+        logger.info("running test: testCloseProxies");
+
+        // Warm up, so the threads started once per JVM are already there.
+        useAndClose(true);
+        useAndClose(false);
+        int threads = clientThreads();
+
+        for (int i = 0; i < 20; i++) {
+            useAndClose(i % 2 == 0);
+        }
+
+        assertThreadsReleased(threads);
+    }
+
+    @Test(timeOut = 60000)
+    public void testCloseWebClients() throws Throwable {
+        logger.info("running test: testCloseWebClients");
+
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        WebClient webClient = new WebAHCClient(serviceDefinition);
+        webClient.clientOf(targetUrl + "/addPet/myPet").headers(m).post(new Pet("pouetpouet"), Pet.class);
+        webClient.close();
+        int threads = clientThreads();
+
+        for (int i = 0; i < 20; i++) {
+            webClient = new WebAHCClient(serviceDefinition);
+            Pet pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
+            assertEquals(pet.getName(), "pouetpouet");
+            assertTrue(clientThreads() > 0);
+            webClient.close();
+        }
+
+        // A closed client opens new connections when used again.
+        Pet pet = webClient.clientOf(targetUrl + "/getPet/myPet").headers(m).get(Pet.class);
+        assertEquals(pet.getName(), "pouetpouet");
+        webClient.close();
+
+        assertThreadsReleased(threads);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCloseUnknownClient() {
+        WebProxy.close(new Object());
+    }
+
+    private void useAndClose(boolean generateClass) {
+        SimpleProxyTest.ProxyClient client = WebProxy.createProxy(SimpleProxyTest.ProxyClient.class, URI.create(targetUrl),
+                new WebProxyConfig.Builder()
+                        .setGenerateClass(generateClass)
+                        .setMaxConnectionsPerHost(2)
+                        .setIdleConnectionTimeoutInMs(1000)
+                        .build());
+
+        client.post("myPet", "{\"name\":\"pouetpouet\"}");
+        assertEquals(client.get("myPet").getName(), "pouetpouet");
+        assertTrue(clientThreads() > 0);
+        WebProxy.close(client);
+    }
+
+    private static void assertThreadsReleased(int threads) throws InterruptedException {
+        // The I/O threads of a closed client may take a moment to exit.
+        int current = clientThreads();
+        for (int i = 0; i < 50 && current > threads; i++) {
+            Thread.sleep(100);
+            current = clientThreads();
+        }
+        assertTrue(current <= threads, current + " client threads, " + threads + " expected");
+    }
+
+    private static int clientThreads() {
+        int count = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith("New I/O client")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -33,7 +33,7 @@ public abstract class FormParamProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicPostGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "chatchien", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
         assertEquals(pet.getName(), "pouetpouet--chatchien");
@@ -42,7 +42,7 @@ public abstract class FormParamProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicGetGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet",  "chatchien", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
         assertEquals(pet.getName(), "pouetpouet--chatchien");
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.test.client;
+
+import org.sonatype.restsimple.annotation.Consumes;
+import org.sonatype.restsimple.annotation.Delete;
+import org.sonatype.restsimple.annotation.Get;
+import org.sonatype.restsimple.annotation.HeaderParam;
+import org.sonatype.restsimple.annotation.Path;
+import org.sonatype.restsimple.annotation.PathParam;
+import org.sonatype.restsimple.annotation.Post;
+import org.sonatype.restsimple.annotation.Produces;
+import org.sonatype.restsimple.annotation.QueryParam;
+import org.sonatype.restsimple.client.WebException;
+import org.sonatype.restsimple.client.WebProxy;
+import org.sonatype.restsimple.client.WebProxyConfig;
+import org.sonatype.restsimple.client.WebStub;
+import org.sonatype.restsimple.common.test.petstore.Pet;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.FileAssert.fail;
+
+public abstract class GeneratedProxyTest extends BaseTest {
+
+    @Path("/")
+    public static interface ProxyClient {
+
+        @Get
+        @Path("/getPet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet get(@PathParam("getPet") String path);
+
+        @Get
+        @Path("/getPet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet get(@PathParam("getPet") int id);
+
+        @Get
+        @Path("/getPetString")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes("text/plain")
+        public String getString(@PathParam("getPetString") String path);
+
+        @Post
+        @Path("/addPet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet post(@PathParam("addPet") String myPet, String body);
+
+        @Delete
+        @Path("/deletePet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet delete(Pet pet, @PathParam("deletePet") String petName);
+
+        @Post
+        @Path("/addPet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet postWithHeader(@PathParam("addPet") String myPet, String body, @HeaderParam(PetstoreAction.PET_EXTRA_NAME) String petType);
+
+        @Post
+        @Path("/addPet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet postWithQuery(@QueryParam(PetstoreAction.PET_EXTRA_NAME) long petType, @PathParam("addPet") String myPet, String body);
+
+        @Get
+        @Path("/getPet/{pet}")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet getTemplate(@PathParam("pet") String pet);
+
+        @Get
+        @Path("/getPet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Object getObject(@PathParam("getPet") String path);
+
+    }
+
+    private ProxyClient createClient() {
+        return createClient(true, Collections.<String, String>emptyMap());
+    }
+
+    private ProxyClient createClient(boolean generateClass, Map<String, String> bindings) {
+        return closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl),
+                new WebProxyConfig.Builder().setGenerateClass(generateClass).setBindings(bindings).build()));
+    }
+
+    @Test(timeOut = 20000)
+    public void testGeneratedClass() throws Throwable {
+        logger.info("running test: testGeneratedClass");
+        ProxyClient client = createClient();
+        assertTrue(client instanceof WebStub);
+        assertFalse(Proxy.isProxyClass(client.getClass()));
+        assertSame(createClient().getClass(), client.getClass());
+
+        // The URI is read at call time, so another one doesn't generate another class.
+        ProxyClient other = WebProxy.createProxy(ProxyClient.class, URI.create("http://127.0.0.1:1"),
+                new WebProxyConfig.Builder().setGenerateClass(true).build());
+        assertSame(other.getClass(), client.getClass());
+        assertEquals(other.toString(), client.getClass().getName() + "{uri=http://127.0.0.1:1}");
+        WebProxy.close(other);
+    }
+
+    @Test(timeOut = 20000)
+    public void testBasicGetGenerate() throws Throwable {
+        logger.info("running test: testBasicGetGenerate");
+        ProxyClient client = createClient();
+        Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
+        assertNotNull(pet);
+
+        pet = client.get("myPet");
+        assertNotNull(pet);
+
+        String petString = client.getString("myPet");
+        assertEquals(petString, "Pet{name='pouetpouet'}");
+    }
+
+    @Test(timeOut = 20000)
+    public void testPrimitiveParam() throws Throwable {
+        logger.info("running test: testPrimitiveParam");
+        ProxyClient client = createClient();
+        Pet pet = client.post("5", "{\"name\":\"pouetpouet\"}");
+        assertNotNull(pet);
+
+        pet = client.get(5);
+        assertNotNull(pet);
+        assertEquals(pet.getName(), "pouetpouet");
+    }
+
+    @Test(timeOut = 20000)
+    public void testDelete() throws Throwable {
+        logger.info("running test: testDelete");
+        ProxyClient client = createClient();
+        Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
+        assertNotNull(pet);
+
+        pet = client.delete(new Pet("pouetpouet"), "myPet");
+        assertNotNull(pet);
+
+        try {
+            client.getString("myPet");
+            fail("No exception");
+        } catch(WebException ex) {
+            assertEquals(ex.getClass(), WebException.class);
+        }
+    }
+
+    @Test(timeOut = 20000)
+    public void testHeaderAndQueryParams() throws Throwable {
+        logger.info("running test: testHeaderAndQueryParams");
+        ProxyClient client = createClient();
+        Pet pet = client.postWithHeader("myPet", "{\"name\":\"pouetpouet\"}", "chatchien");
+        assertEquals(pet.getName(), "pouetpouet--chatchien");
+
+        pet = client.postWithQuery(42L, "myPet", "{\"name\":\"pouetpouet\"}");
+        assertEquals(pet.getName(), "pouetpouet--42");
+    }
+
+    @Test(timeOut = 20000)
+    public void testPathTemplate() throws Throwable {
+        logger.info("running test: testPathTemplate");
+        ProxyClient client = createClient();
+        client.post("myPet", "{\"name\":\"pouetpouet\"}");
+        assertEquals(client.getTemplate("myPet").getName(), "pouetpouet");
+
+        // A bound template variable is read by the same generated class.
+        ProxyClient bound = createClient(true, Collections.singletonMap("pet", "myPet"));
+        assertSame(bound.getClass(), client.getClass());
+        assertEquals(bound.getTemplate("ignored").getName(), "pouetpouet");
+    }
+
+    @Test(timeOut = 20000)
+    public void testSameAsProxy() throws Throwable {
+        logger.info("running test: testSameAsProxy");
+        ProxyClient client = createClient();
+        ProxyClient proxy = createClient(false, Collections.<String, String>emptyMap());
+        assertTrue(Proxy.isProxyClass(proxy.getClass()));
+
+        client.post("myPet", "{\"name\":\"pouetpouet\"}");
+        assertEquals(client.get("myPet").getName(), proxy.get("myPet").getName());
+        assertEquals(client.getString("myPet"), proxy.getString("myPet"));
+        assertEquals(client.getObject("myPet"), proxy.getObject("myPet"));
+        assertEquals(((Map<?, ?>) client.getObject("myPet")).get("name"), "pouetpouet");
+    }
+}
@@ -33,7 +33,7 @@ public abstract class QueryProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicPostGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "chatchien", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
         assertEquals(pet.getName(), "pouetpouet--chatchien");
@@ -42,7 +42,7 @@ public abstract class QueryProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicGetGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet",  "chatchien", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
         assertEquals(pet.getName(), "pouetpouet--chatchien");
@@ -55,6 +55,16 @@ public abstract class QueryProxyTest extends BaseTest {
         assertEquals(petString, "Pet{name='pouetpouet--chatchien'}");
     }
 
+    @Test(timeOut = 20000)
+    public void testBodyBeforeQueryParam() throws Throwable {
+        logger.info("running test: testBodyBeforeQueryParam");
+        BodyFirstProxyClient client = closeAfterTest(WebProxy.createProxy(BodyFirstProxyClient.class, URI.create(targetUrl)));
+        // The @QueryParam is the third parameter but the second annotated one.
+        Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}", "chatchien");
+        assertNotNull(pet);
+        assertEquals(pet.getName(), "pouetpouet--chatchien");
+    }
+
     public static interface ProxyClient {
 
         @Get
@@ -78,5 +88,12 @@ public abstract class QueryProxyTest extends BaseTest {
 
     }
 
+    public static interface BodyFirstProxyClient {
 
+        @Post
+        @Path("/addPet")
+        @Produces(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        @Consumes(PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON)
+        public Pet post(@PathParam("addPet") String myPet, String body, @QueryParam(PetstoreAction.PET_EXTRA_NAME) String petType);
+    }
 }
@@ -62,7 +62,7 @@ public abstract class RootResourceProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicPostGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
     }
@@ -70,7 +70,7 @@ public abstract class RootResourceProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicGetGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
 
@@ -84,7 +84,7 @@ public abstract class RootResourceProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testDelete() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
 
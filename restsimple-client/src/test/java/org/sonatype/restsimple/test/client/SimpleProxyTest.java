@@ -84,7 +84,7 @@ public abstract class SimpleProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicPostGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
     }
@@ -92,7 +92,7 @@ public abstract class SimpleProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBasicGetGenerate() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
 
@@ -106,7 +106,7 @@ public abstract class SimpleProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testDelete() throws Throwable {
         logger.info("running test: testPut");
-        ProxyClient client = WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl));
+        ProxyClient client = closeAfterTest(WebProxy.createProxy(ProxyClient.class, URI.create(targetUrl)));
         Pet pet = client.post("myPet", "{\"name\":\"pouetpouet\"}");
         assertNotNull(pet);
 
@@ -124,7 +124,7 @@ public abstract class SimpleProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testBodyOrderForPost() throws Throwable {
         logger.info("running test: testBodyOrderForPost");
-        ProxyClient2 client = WebProxy.createProxy(ProxyClient2.class, URI.create(targetUrl));
+        ProxyClient2 client = closeAfterTest(WebProxy.createProxy(ProxyClient2.class, URI.create(targetUrl)));
         Pet pet = client.post("{\"name\":\"pouetpouet\"}", "myPet");
         assertNotNull(pet);
         assertEquals(pet.getName(), "pouetpouet");
@@ -133,7 +133,7 @@ public abstract class SimpleProxyTest extends BaseTest {
     @Test(timeOut = 20000)
     public void testRealPetPost() throws Throwable {
         logger.info("running test: testBodyOrderForPost");
-        ProxyClient3 client = WebProxy.createProxy(ProxyClient3.class, URI.create(targetUrl));
+        ProxyClient3 client = closeAfterTest(WebProxy.createProxy(ProxyClient3.class, URI.create(targetUrl)));
         Pet pet = client.post(new Pet("pouetpouet"), "myPet");
         assertNotNull(pet);
         assertEquals(pet.getName(), "pouetpouet");
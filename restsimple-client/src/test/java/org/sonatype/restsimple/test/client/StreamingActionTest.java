@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.test.client;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.sonatype.restsimple.WebDriver;
+import org.sonatype.restsimple.api.Action;
+import org.sonatype.restsimple.api.ActionContext;
+import org.sonatype.restsimple.api.ActionException;
+import org.sonatype.restsimple.api.DefaultServiceDefinition;
+import org.sonatype.restsimple.api.PostServiceHandler;
+import org.sonatype.restsimple.client.WebAHCClient;
+import org.sonatype.restsimple.client.WebClient;
+import org.sonatype.restsimple.common.test.petstore.Pet;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+
+public abstract class StreamingActionTest extends BaseTest {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @BeforeClass(alwaysRun = true)
+    public void setUpGlobal() throws Exception {
+
+        acceptHeader = PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON;
+
+        // Count the pets of a bulk import while they are read.
+        Action<Pet, Object> importAction = new Action<Pet, Object>() {
+            @Override
+            public Pet action(ActionContext<Object> actionContext) throws ActionException {
+                if (actionContext.get() != null) {
+                    throw new ActionException(400, "The body has been read");
+                }
+
+                int count = 0;
+                try {
+                    JsonParser parser = jsonFactory.createJsonParser(actionContext.inputStream());
+                    try {
+                        if (parser.nextToken() != JsonToken.START_ARRAY) {
+                            throw new ActionException(400, "Not an array");
+                        }
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            count++;
+                        }
+                    } finally {
+                        parser.close();
+                    }
+                } catch (IOException e) {
+                    throw new ActionException(400, e.getMessage());
+                }
+                return new Pet(String.valueOf(count));
+            }
+        };
+
+        serviceDefinition = new DefaultServiceDefinition();
+        serviceDefinition
+                .withHandler(new PostServiceHandler("/importPets/:store", importAction).consumeStreaming(JSON).producing(JSON));
+
+        webDriver = WebDriver.getDriver(provider()).serviceDefinition(serviceDefinition);
+        targetUrl = webDriver.getUri();
+        logger.info("Local HTTP server started successfully");
+    }
+
+    @Test(timeOut = 20000)
+    public void testStreamingAction() throws Throwable {
+        logger.info("running test: testStreamingAction");
+
+        StringBuilder pets = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) {
+                pets.append(',');
+            }
+            pets.append("{\"name\":\"pet").append(i).append("\"}");
+        }
+        pets.append(']');
+
+        WebClient webClient = closeAfterTest(new WebAHCClient(serviceDefinition));
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+
+        Pet pet = webClient.clientOf(targetUrl + "/importPets/myStore")
+                .headers(m)
+                .post(pets.toString(), Pet.class);
+
+        assertEquals(pet.getName(), "1000");
+    }
+}
@@ -29,7 +29,7 @@ public abstract class WebNegotiationTest extends BaseTest {
     public void testPostContentNegotiation() throws Throwable {
         logger.info("running test: testPostWithType");
 
-        WebClient webClient = new WebAHCClient(serviceDefinition);
+        WebClient webClient = closeAfterTest(new WebAHCClient(serviceDefinition));
         Map<String, String> m = new HashMap<String, String>();
         m.put("Content-Type", acceptHeader);
         m.put("Accept", "application/xml");
@@ -30,7 +30,7 @@ public abstract class WebTest extends BaseTest {
     public void testPost() throws Throwable {
         logger.info("running test: testPost");
 
-        WebClient webClient = new WebAHCClient(serviceDefinition);
+        WebClient webClient = closeAfterTest(new WebAHCClient(serviceDefinition));
         Map<String, String> m = new HashMap<String, String>();
         m.put("Content-Type", acceptHeader);
 
@@ -51,7 +51,7 @@ public abstract class WebTest extends BaseTest {
     public void testDelete() throws Throwable {
         logger.info("running test: testDelete");
 
-        WebClient webClient = new WebAHCClient(serviceDefinition);
+        WebClient webClient = closeAfterTest(new WebAHCClient(serviceDefinition));
         Map<String, String> m = new HashMap<String, String>();
         m.put("Content-Type", acceptHeader);
 
@@ -82,7 +82,7 @@ public abstract class WebTest extends BaseTest {
     public void testPostWithType() throws Throwable {
         logger.info("running test: testPostWithType");
 
-        WebClient webClient = new WebAHCClient(serviceDefinition);
+        WebClient webClient = closeAfterTest(new WebAHCClient(serviceDefinition));
         Map<String, String> m = new HashMap<String, String>();
         m.put("Content-Type", acceptHeader);
 
@@ -103,7 +103,7 @@ public abstract class WebTest extends BaseTest {
     public void testPostWithoutSD() throws Throwable {
         logger.info("running test: testPostWithoutSD");
 
-        WebClient webClient = new WebAHCClient();
+        WebClient webClient = closeAfterTest(new WebAHCClient());
         Map<String, String> m = new HashMap<String, String>();
         m.put("Content-Type", acceptHeader);
         m.put("Accept", acceptHeader);
@@ -125,7 +125,7 @@ public abstract class WebTest extends BaseTest {
     public void testPostSerializeDeserialize() throws Throwable {
         logger.info("running test: testPost");
 
-        WebClient webClient = new WebAHCClient(serviceDefinition);
+        WebClient webClient = closeAfterTest(new WebAHCClient(serviceDefinition));
         Map<String, String> m = new HashMap<String, String>();
         m.put("Content-Type", acceptHeader);
 
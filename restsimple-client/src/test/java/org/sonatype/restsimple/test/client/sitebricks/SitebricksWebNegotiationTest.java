@@ -12,11 +12,49 @@
 package org.sonatype.restsimple.test.client.sitebricks;
 
 import org.sonatype.restsimple.WebDriver;
+import org.sonatype.restsimple.api.MediaType;
+import org.sonatype.restsimple.client.WebAHCClient;
+import org.sonatype.restsimple.client.WebClient;
+import org.sonatype.restsimple.common.test.petstore.Pet;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
 import org.sonatype.restsimple.test.client.WebNegotiationTest;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
 
 public class SitebricksWebNegotiationTest extends WebNegotiationTest {
     @Override
     public WebDriver.PROVIDER provider() {
         return WebDriver.PROVIDER.SITEBRICKS;
     }
+
+    /**
+     * Only Sitebricks is tested: Jersey rejects the request before the resource can answer with the Alternates.
+     */
+    @Test(timeOut = 20000)
+    public void testNegotiationIsRemembered() throws Throwable {
+        logger.info("running test: testNegotiationIsRemembered");
+
+        // Without a ServiceDefinition, the client only sends the Accept it is told to send.
+        WebClient webClient = closeAfterTest(new WebAHCClient());
+        Map<String, String> m = new HashMap<String, String>();
+        m.put("Content-Type", acceptHeader);
+        m.put("Accept", "application/xml");
+        webClient.supportedContentType(new MediaType(PetstoreAction.APPLICATION, PetstoreAction.JSON));
+
+        for (int i = 0; i < 3; i++) {
+            Pet pet = webClient.clientOf(targetUrl + "/addPet/myPet")
+                    .headers(m)
+                    .post(new Pet("pouetpouet"), Pet.class);
+
+            assertNotNull(pet);
+        }
+
+        // The negotiated Accept is remembered by the client, the request's headers are left untouched.
+        assertEquals(m.get("Accept"), "application/xml");
+    }
 }
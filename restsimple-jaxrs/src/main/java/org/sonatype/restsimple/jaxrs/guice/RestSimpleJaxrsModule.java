@@ -25,14 +25,15 @@ import org.sonatype.restsimple.jaxrs.impl.ContentNegotiationFilter;
 import org.sonatype.restsimple.jaxrs.impl.JAXRSServiceDefinitionGenerator;
 import org.sonatype.restsimple.spi.NegotiationTokenGenerator;
 import org.sonatype.restsimple.spi.RFC2295NegotiationTokenGenerator;
+import org.sonatype.restsimple.spi.GeneratedClassCache;
 import org.sonatype.restsimple.spi.ResourceModuleConfig;
 import org.sonatype.restsimple.spi.ServiceDefinitionModule;
-import org.sonatype.restsimple.spi.ServiceDefinitionGenerator;
 import org.sonatype.restsimple.spi.ServiceHandlerMapper;
 import org.sonatype.restsimple.spi.scan.Classes;
 
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import java.io.File;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -42,8 +43,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import static com.google.inject.matcher.Matchers.annotatedWith;
-
 /**
  * Base class for deploying {@link ServiceDefinition} to a JAXRS implementation.
  */
@@ -51,6 +50,9 @@ public class RestSimpleJaxrsModule
     extends ServletModule implements ServiceDefinitionModule {
     private final Logger logger = LoggerFactory.getLogger(RestSimpleJaxrsModule.class);
 
+    private final static Classes SERVICES = Classes.annotatedWith(Service.class);
+    private final static Classes RESOURCES = Classes.annotatedWith(Path.class, PathParam.class);
+
     private Injector parent;
     private Injector injector;
     private final Map<String,String> jaxrsProperties;
@@ -58,7 +60,10 @@ public class RestSimpleJaxrsModule
     private final String filterPath;
     private final String servletPath;
     private final Set<Class<?>> classesSet = new HashSet<Class<?>>();
+    private Map<Classes, Set<Class<?>>> scanned;
     private final Set<ServiceDefinition> sdSet = new HashSet<ServiceDefinition>();
+    private int routeCacheSize;
+    private File classCacheDirectory;
 
     public RestSimpleJaxrsModule() {
         this(null, new HashMap<String,String>());
@@ -100,10 +105,13 @@ public class RestSimpleJaxrsModule
         bind(NegotiationTokenGenerator.class).toInstance( token );
 
         ServiceHandlerMapper mapper = injector().getInstance(ServiceHandlerMapper.class);
+        if (routeCacheSize > 0) {
+            mapper.withRouteCache(routeCacheSize);
+        }
         bind( ServiceHandlerMapper.class ).toInstance( mapper );
         
         sdSet.addAll( defineServices( injector ) );
-        ServiceDefinitionGenerator generator = new JAXRSServiceDefinitionGenerator( new ResourceModuleConfig<Module>() {
+        JAXRSServiceDefinitionGenerator generator = new JAXRSServiceDefinitionGenerator( new ResourceModuleConfig<Module>() {
 
             @Override
             public <A> void bindToInstance(Class<A> clazz, A instance) {
@@ -124,6 +132,9 @@ public class RestSimpleJaxrsModule
             public void install(Module module) {
             }
         });
+        if (classCacheDirectory != null) {
+            generator.classCache(new GeneratedClassCache(classCacheDirectory));
+        }
 
         if (sdSet != null && sdSet.size() > 0) {
             for (ServiceDefinition sd : sdSet) {
@@ -132,13 +143,8 @@ public class RestSimpleJaxrsModule
         }
 
         classesSet.clear();
-        for (Package pkg : packages) {
-            //look for any classes annotated with @Path, @PathParam
-            classesSet.addAll(Classes.matching(
-                    annotatedWith(Path.class).or(
-                            annotatedWith(PathParam.class))
-            ).in(pkg));
-        }
+        //look for any classes annotated with @Path or @PathParam
+        classesSet.addAll(scanned(RESOURCES));
 
         for (Class<?> clazz: classesSet) {
             generator.generate(new DefaultServiceDefinition().extendWith(clazz), mapper);
@@ -157,12 +163,8 @@ public class RestSimpleJaxrsModule
     @Override
     public List<ServiceDefinition> defineServices(Injector injector) {
 
-        for (Package pkg : packages) {
-            //look for any classes annotated with @Service
-            classesSet.addAll(Classes.matching(
-                    annotatedWith(Service.class)
-            ).in(pkg));
-        }
+        //look for any classes annotated with @Service
+        classesSet.addAll(scanned(SERVICES));
 
         List<ServiceDefinition> list = new ArrayList<ServiceDefinition>();
         // Now let's find the method that returns a ServiceDefinition
@@ -210,6 +212,7 @@ public class RestSimpleJaxrsModule
     @Override
     public RestSimpleJaxrsModule scan(Package packageName) {
         packages.add(packageName);
+        scanned = null;
         return this;
     }
 
@@ -222,10 +225,42 @@ public class RestSimpleJaxrsModule
         return this;
     }
 
+    /**
+     * Enable the {@link ServiceHandlerMapper} route cache, which remembers up to <tt>maxSize</tt> resolved paths.
+     *
+     * @param maxSize the maximum number of cached lookups.
+     * @return this
+     */
+    public RestSimpleJaxrsModule withRouteCache(int maxSize) {
+        routeCacheSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Store the classes generated from {@link ServiceDefinition} in a directory, and load them from it the next time
+     * the application starts instead of generating them again.
+     *
+     * @param directory the directory where generated classes are stored.
+     * @return this
+     */
+    public RestSimpleJaxrsModule withClassCache(File directory) {
+        classCacheDirectory = directory;
+        return this;
+    }
+
     @Override
     public RestSimpleJaxrsModule addInstance( ServiceDefinition instance ){
         sdSet.add( instance );
         return null;
     }
 
+    /**
+     * Scan the packages once for both the {@link #SERVICES} and the {@link #RESOURCES}.
+     */
+    private Set<Class<?>> scanned(Classes classes) {
+        if (scanned == null) {
+            scanned = Classes.in(packages, SERVICES, RESOURCES);
+        }
+        return scanned.get(classes);
+    }
 }
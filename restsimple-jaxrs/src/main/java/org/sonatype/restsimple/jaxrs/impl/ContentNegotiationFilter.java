@@ -26,6 +26,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Singleton
@@ -58,23 +59,20 @@ public class ContentNegotiationFilter implements Filter {
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
 
         HttpServletRequest hreq = HttpServletRequest.class.cast(request);
-        String[] paths = hreq.getServletPath().split("/");
-
-        String pathName;
-        if (paths.length > 0) {
-            pathName = paths[1];
-        } else {
-            pathName = "";
-        }
+        String pathName = firstSegment(hreq.getServletPath());
 
         ServiceHandler serviceHandler = mapper.map(hreq.getMethod(), pathName);
-        logger.info("Configuring Negotiation Token Header to " + pathName + " with ServiceHandler " + serviceHandler);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Configuring Negotiation Token Header to " + pathName + " with ServiceHandler " + serviceHandler);
+        }
 
         // TODO: Must add a special header in Jersey generation so we don't add the header for all request.
         if (serviceHandler != null) {
-            HttpServletResponse hres = HttpServletResponse.class.cast(response);
-            hres.addHeader(negotiationTokenGenerator.challengedHeaderName(),
-                           negotiationTokenGenerator.generateNegotiationHeader(pathName, serviceHandler.mediaToProduce()));
+            String header = mapper.negotiationHeader(serviceHandler, negotiationTokenGenerator, pathName);
+            if (header != null) {
+                HttpServletResponse hres = HttpServletResponse.class.cast(response);
+                hres.addHeader(negotiationTokenGenerator.challengedHeaderName(), header);
+            }
         }
         chain.doFilter(request, response);
 
@@ -86,4 +84,12 @@ public class ContentNegotiationFilter implements Filter {
     @Override
     public void destroy() {
     }
+
+    private static String firstSegment(String servletPath) {
+        if (servletPath.length() <= 1) {
+            return "";
+        }
+        int end = servletPath.indexOf('/', 1);
+        return servletPath.substring(1, end < 0 ? servletPath.length() : end);
+    }
 }
@@ -21,17 +21,25 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonatype.restsimple.api.Action;
 import org.sonatype.restsimple.api.MediaType;
 import org.sonatype.restsimple.api.PostServiceHandler;
 import org.sonatype.restsimple.api.ServiceDefinition;
 import org.sonatype.restsimple.api.ServiceHandler;
+import org.sonatype.restsimple.spi.GeneratedClassCache;
 import org.sonatype.restsimple.spi.ResourceModuleConfig;
 import org.sonatype.restsimple.spi.ServiceDefinitionGenerator;
 import org.sonatype.restsimple.spi.ServiceHandlerMapper;
+import org.sonatype.restsimple.spi.uri.UriTemplate;
 
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.UUID;
 
 /**
  * Generate a JAXRS resource based on {@link ServiceDefinition}, and bind it. The generated resource is closed
@@ -39,8 +47,14 @@ import java.util.UUID;
  */
 public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerator, Opcodes {
 
+    private final static String REQUEST_MAPS = Type.getInternalName(RequestMaps.class);
+
     private final ResourceModuleConfig moduleConfig;
 
+    private final ByteClassloader classLoader = new ByteClassloader(getClass().getClassLoader());
+
+    private GeneratedClassCache classCache;
+
     private final Logger logger = LoggerFactory.getLogger(JAXRSServiceDefinitionGenerator.class);
 
     @Inject
@@ -48,6 +62,17 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
         this.moduleConfig = moduleConfig;
     }
 
+    /**
+     * Store the generated classes in a {@link GeneratedClassCache}, and load the classes it already contains instead
+     * of generating them again.
+     * @param classCache a {@link GeneratedClassCache}
+     * @return this
+     */
+    public JAXRSServiceDefinitionGenerator classCache(GeneratedClassCache classCache) {
+        this.classCache = classCache;
+        return this;
+    }
+
     /**
      * Generate a JAX RS Resource on the fly, based on the information contained with a {@link ServiceDefinition}
      * @param serviceDefinition a {@link ServiceDefinition}
@@ -55,17 +80,53 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
     @Override
     public void generate(final ServiceDefinition serviceDefinition, ServiceHandlerMapper mapper) {
 
-        for(ServiceHandler sh : serviceDefinition.serviceHandlers()) {
-            mapper.addServiceHandler( serviceDefinition.path(), sh);
+        mapper.addServiceDefinition(serviceDefinition);
+
+        // The name only depends on the ServiceDefinition, so the class can be found in the GeneratedClassCache
+        String className = classLoader.reserve("org.sonatype.restsimple.model.ServiceDescriptionResource"
+                + GeneratedClassCache.fingerprint(describe(serviceDefinition)).substring(0, 16));
+
+        byte[] bytes = classCache == null ? null : classCache.get(JAXRSServiceDefinitionGenerator.class, className);
+        if (bytes == null) {
+            bytes = generate(serviceDefinition, className.replace(".", "/"));
+            if (classCache != null) {
+                try {
+                    classCache.put(JAXRSServiceDefinitionGenerator.class, className, bytes);
+                } catch (IOException e) {
+                    logger.warn("Unable to cache " + className, e);
+                }
+            }
+        } else {
+            logger.debug("Loaded {} from {}", className, classCache.directory());
+        }
+
+        // The generated method passes its index to invokeAction, which invokes the Action directly.
+        List<Action> actions = new ArrayList<Action>();
+        List<String[]> pathParamNames = new ArrayList<String[]>();
+        for (ServiceHandler serviceHandler : serviceDefinition.serviceHandlers()) {
+            actions.add(serviceHandler.getAction());
+            pathParamNames.add(pathParamNames(serviceDefinition, serviceHandler));
         }
 
+        try {
+            Class<?> clazz = classLoader.define(className, bytes);
+            setStatic(clazz, "actions", actions.toArray(new Action[actions.size()]));
+            setStatic(clazz, "pathParamNames", pathParamNames.toArray(new String[pathParamNames.size()][]));
+
+            moduleConfig.bind(clazz);
+            moduleConfig.bind(GenericMessageBodyWriter.class);
+            bindExtension(serviceDefinition);
+        } catch (Throwable e) {
+            logger.error("generate", e);
+        }
+    }
+
+    private byte[] generate(ServiceDefinition serviceDefinition, String className) {
         ClassWriter cw = new ClassWriter(0);
         FieldVisitor fv;
         MethodVisitor mv;
         AnnotationVisitor av0;
 
-        String uuid = UUID.randomUUID().toString().replace("-", "").substring(0, 4);
-        String className = "org/sonatype/restsimple/model/ServiceDescriptionResource" + uuid;
 
         cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, className, null, "java/lang/Object", null);
 
@@ -124,11 +185,11 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
             fv.visitEnd();
         }
         {
-            fv = cw.visitField(0, "mapper", "Lorg/sonatype/restsimple/spi/ServiceHandlerMapper;", null, null);
-            {
-                av0 = fv.visitAnnotation("Lcom/google/inject/Inject;", true);
-                av0.visitEnd();
-            }
+            fv = cw.visitField(ACC_PRIVATE + ACC_STATIC, "actions", "[Lorg/sonatype/restsimple/api/Action;", null, null);
+            fv.visitEnd();
+        }
+        {
+            fv = cw.visitField(ACC_PRIVATE + ACC_STATIC, "pathParamNames", "[[Ljava/lang/String;", null, null);
             fv.visitEnd();
         }
         {
@@ -145,7 +206,10 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
             mv.visitEnd();
         }
         int duplicateCounter = -1;
+        int handlerCounter = 0;
         for (ServiceHandler serviceHandler : serviceDefinition.serviceHandlers()) {
+            int handlerIndex = handlerCounter++;
+
             {
                 String methodName = serviceHandler.getHttpMethod().name().toLowerCase();
                 if (duplicateCounter++ >= 0) {
@@ -196,14 +260,13 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                     }
                     mv.visitCode();
                     mv.visitVarInsn(ALOAD, 0);
-                    mv.visitLdcInsn("get");
+                    mv.visitIntInsn(SIPUSH, handlerIndex);
                     mv.visitVarInsn(ALOAD, 1);
                     mv.visitInsn(ACONST_NULL);
-                    mv.visitVarInsn(ALOAD, 0);
                     mv.visitVarInsn(ALOAD, 1);
-                    mv.visitMethodInsn(INVOKESPECIAL, className, "mapMatrixParam", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
+                    mv.visitMethodInsn(INVOKESTATIC, REQUEST_MAPS, "matrixParams", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
                     mv.visitInsn(ACONST_NULL);
-                    mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
+                    mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
                     mv.visitVarInsn(ASTORE, 2);
                     mv.visitVarInsn(ALOAD, 2);
                     mv.visitInsn(ARETURN);
@@ -263,14 +326,13 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                         }
                         mv.visitCode();
                         mv.visitVarInsn(ALOAD, 0);
-                        mv.visitLdcInsn("head");
+                        mv.visitIntInsn(SIPUSH, handlerIndex);
                         mv.visitVarInsn(ALOAD, 1);
                         mv.visitInsn(ACONST_NULL);
-                        mv.visitVarInsn(ALOAD, 0);
                         mv.visitVarInsn(ALOAD, 1);
-                        mv.visitMethodInsn(INVOKESPECIAL, className, "mapMatrixParam", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
+                        mv.visitMethodInsn(INVOKESTATIC, REQUEST_MAPS, "matrixParams", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
                         mv.visitInsn(ACONST_NULL);
-                        mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
+                        mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
                         mv.visitVarInsn(ASTORE, 2);
                         mv.visitMethodInsn(INVOKESTATIC, "javax/ws/rs/core/Response", "ok", "()Ljavax/ws/rs/core/Response$ResponseBuilder;");
                         mv.visitMethodInsn(INVOKEVIRTUAL, "javax/ws/rs/core/Response$ResponseBuilder", "build", "()Ljavax/ws/rs/core/Response;");
@@ -290,7 +352,7 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                             methodName = methodName + "_" + duplicateCounter;
                         }
 
-                        String methodType = serviceHandler.consumeClass() != null ? serviceHandler.consumeClass().getName().replace(".", "/") : "java/lang/String";
+                        String methodType = bodyType(serviceHandler);
                         mv = cw.visitMethod(ACC_PUBLIC, methodName, "(Ljavax/ws/rs/core/UriInfo;L" + methodType + ";)Ljavax/ws/rs/core/Response;", null, null);
                         {
                             String p = convert(serviceHandler.path());
@@ -353,15 +415,14 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                         mv.visitMethodInsn(INVOKEVIRTUAL, "javax/ws/rs/core/UriBuilder", "build", "([Ljava/lang/Object;)Ljava/net/URI;");
                         mv.visitVarInsn(ASTORE, 3);
                         mv.visitVarInsn(ALOAD, 0);
-                        mv.visitLdcInsn("put");
+                        mv.visitIntInsn(SIPUSH, handlerIndex);
                         mv.visitVarInsn(ALOAD, 1);
                         mv.visitVarInsn(ALOAD, 1);
                         mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/UriInfo", "getQueryParameters", "()Ljavax/ws/rs/core/MultivaluedMap;");
-                        mv.visitVarInsn(ALOAD, 0);
                         mv.visitVarInsn(ALOAD, 1);
-                        mv.visitMethodInsn(INVOKESPECIAL, className, "mapMatrixParam", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
-                        mv.visitVarInsn(ALOAD, 2);
-                        mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
+                        mv.visitMethodInsn(INVOKESTATIC, REQUEST_MAPS, "matrixParams", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
+                        loadBody(mv, serviceHandler);
+                        mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
                         mv.visitVarInsn(ASTORE, 4);
                         mv.visitVarInsn(ALOAD, 3);
                         mv.visitMethodInsn(INVOKESTATIC, "javax/ws/rs/core/Response", "created", "(Ljava/net/URI;)Ljavax/ws/rs/core/Response$ResponseBuilder;");
@@ -426,14 +487,13 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                                 }
                                 mv.visitCode();
                                 mv.visitVarInsn(ALOAD, 0);
-                                mv.visitLdcInsn("post");
+                                mv.visitIntInsn(SIPUSH, handlerIndex);
                                 mv.visitVarInsn(ALOAD, 1);
                                 mv.visitVarInsn(ALOAD, 2);
-                                mv.visitVarInsn(ALOAD, 0);
                                 mv.visitVarInsn(ALOAD, 1);
-                                mv.visitMethodInsn(INVOKESPECIAL, className, "mapMatrixParam", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
+                                mv.visitMethodInsn(INVOKESTATIC, REQUEST_MAPS, "matrixParams", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
                                 mv.visitInsn(ACONST_NULL);
-                                mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
+                                mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
                                 mv.visitVarInsn(ASTORE, 3);
                                 mv.visitVarInsn(ALOAD, 3);
                                 Label l0 = new Label();
@@ -453,7 +513,7 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                                 continue;
                             }
                         } else {
-                            String methodType = serviceHandler.consumeClass() != null ? serviceHandler.consumeClass().getName().replace(".", "/") : "java/lang/String";
+                            String methodType = bodyType(serviceHandler);
                             mv = cw.visitMethod(ACC_PUBLIC, methodName, "(Ljavax/ws/rs/core/UriInfo;L" + methodType + ";)Ljavax/ws/rs/core/Response;", null, null);
                             {
                                 String p = convert(serviceHandler.path());
@@ -497,15 +557,14 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                             }
                             mv.visitCode();
                             mv.visitVarInsn(ALOAD, 0);
-                            mv.visitLdcInsn("post");
+                            mv.visitIntInsn(SIPUSH, handlerIndex);
                             mv.visitVarInsn(ALOAD, 1);
                             mv.visitVarInsn(ALOAD, 1);
                             mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/UriInfo", "getQueryParameters", "()Ljavax/ws/rs/core/MultivaluedMap;");
-                            mv.visitVarInsn(ALOAD, 0);
                             mv.visitVarInsn(ALOAD, 1);
-                            mv.visitMethodInsn(INVOKESPECIAL, className, "mapMatrixParam", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
-                            mv.visitVarInsn(ALOAD, 2);
-                            mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
+                            mv.visitMethodInsn(INVOKESTATIC, REQUEST_MAPS, "matrixParams", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
+                            loadBody(mv, serviceHandler);
+                            mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
                             mv.visitVarInsn(ASTORE, 3);
                             mv.visitVarInsn(ALOAD, 3);
                             Label l0 = new Label();
@@ -533,7 +592,7 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                             if (duplicateCounter++ >= 0) {
                                 methodName = methodName + "_" + duplicateCounter;
                             }
-                            String methodType = serviceHandler.consumeClass() != null ? serviceHandler.consumeClass().getName().replace(".", "/") : "java/lang/String";
+                            String methodType = bodyType(serviceHandler);
                             mv = cw.visitMethod(ACC_PUBLIC, methodName, "(Ljavax/ws/rs/core/UriInfo;L"
                                     + methodType
                                     + ";)Ljavax/ws/rs/core/Response;", null, null);
@@ -580,14 +639,13 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                             }
                             mv.visitCode();
                             mv.visitVarInsn(ALOAD, 0);
-                            mv.visitLdcInsn("delete");
+                            mv.visitIntInsn(SIPUSH, handlerIndex);
                             mv.visitVarInsn(ALOAD, 1);
                             mv.visitInsn(ACONST_NULL);
-                            mv.visitVarInsn(ALOAD, 0);
                             mv.visitVarInsn(ALOAD, 1);
-                            mv.visitMethodInsn(INVOKESPECIAL, className, "mapMatrixParam", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
-                            mv.visitVarInsn(ALOAD, 2);
-                            mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
+                            mv.visitMethodInsn(INVOKESTATIC, REQUEST_MAPS, "matrixParams", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;");
+                            loadBody(mv, serviceHandler);
+                            mv.visitMethodInsn(INVOKESPECIAL, className, "invokeAction", "(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;");
                             mv.visitVarInsn(ASTORE, 3);
                             mv.visitVarInsn(ALOAD, 3);
                             mv.visitMethodInsn(INVOKESTATIC, "javax/ws/rs/core/Response", "ok", "(Ljava/lang/Object;)Ljavax/ws/rs/core/Response$ResponseBuilder;");
@@ -603,8 +661,8 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
         }
         {
             mv = cw.visitMethod( ACC_PRIVATE, "invokeAction",
-                                 "(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;",
-                                 "<T:Ljava/lang/Object;>(Ljava/lang/String;Ljavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap<Ljava/lang/String;Ljava/lang/String;>;Ljava/util/Map<Ljava/lang/String;Ljava/util/Collection<Ljava/lang/String;>;>;TT;)Ljava/lang/Object;",
+                                 "(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap;Ljava/util/Map;Ljava/lang/Object;)Ljava/lang/Object;",
+                                 "<T:Ljava/lang/Object;>(ILjavax/ws/rs/core/UriInfo;Ljavax/ws/rs/core/MultivaluedMap<Ljava/lang/String;Ljava/lang/String;>;Ljava/util/Map<Ljava/lang/String;Ljava/util/Collection<Ljava/lang/String;>;>;TT;)Ljava/lang/Object;",
                                  null );
             mv.visitCode();
             Label l0 = new Label();
@@ -613,102 +671,13 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
             mv.visitTryCatchBlock( l0, l1, l2, "org/sonatype/restsimple/api/ActionException" );
             Label l3 = new Label();
             mv.visitTryCatchBlock( l0, l1, l3, "java/lang/Throwable" );
-            mv.visitVarInsn( ALOAD, 0 );
-            mv.visitFieldInsn( GETFIELD, className, "mapper",
-                               "Lorg/sonatype/restsimple/spi/ServiceHandlerMapper;" );
-            mv.visitVarInsn( ALOAD, 1 );
-            mv.visitVarInsn( ALOAD, 2 );
-            mv.visitMethodInsn( INVOKEINTERFACE, "javax/ws/rs/core/UriInfo", "getPath", "()Ljava/lang/String;" );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "org/sonatype/restsimple/spi/ServiceHandlerMapper", "map",
-                                "(Ljava/lang/String;Ljava/lang/String;)Lorg/sonatype/restsimple/api/ServiceHandler;" );
-            mv.visitVarInsn( ASTORE, 6 );
-            mv.visitVarInsn( ALOAD, 6 );
-            Label l4 = new Label();
-            mv.visitJumpInsn( IFNONNULL, l4 );
-            mv.visitTypeInsn( NEW, "javax/ws/rs/WebApplicationException" );
-            mv.visitInsn( DUP );
-            mv.visitIntInsn( SIPUSH, 405 );
-            mv.visitMethodInsn( INVOKESTATIC, "javax/ws/rs/core/Response", "status",
-                                "(I)Ljavax/ws/rs/core/Response$ResponseBuilder;" );
-            mv.visitLdcInsn( "Method not allowed" );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "javax/ws/rs/core/Response$ResponseBuilder", "entity",
-                                "(Ljava/lang/Object;)Ljavax/ws/rs/core/Response$ResponseBuilder;" );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "javax/ws/rs/core/Response$ResponseBuilder", "build",
-                                "()Ljavax/ws/rs/core/Response;" );
-            mv.visitMethodInsn( INVOKESPECIAL, "javax/ws/rs/WebApplicationException", "<init>",
-                                "(Ljavax/ws/rs/core/Response;)V" );
-            mv.visitInsn( ATHROW );
-            mv.visitLabel( l4 );
-            mv.visitFrame( Opcodes.F_APPEND, 1, new Object[]{ "org/sonatype/restsimple/api/ServiceHandler" }, 0, null );
-            mv.visitVarInsn( ALOAD, 6 );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "org/sonatype/restsimple/api/ServiceHandler", "getHttpMethod",
-                                "()Lorg/sonatype/restsimple/api/ServiceDefinition$METHOD;" );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "org/sonatype/restsimple/api/ServiceDefinition$METHOD", "name",
-                                "()Ljava/lang/String;" );
-            mv.visitVarInsn( ALOAD, 1 );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "java/lang/String", "equalsIgnoreCase", "(Ljava/lang/String;)Z" );
-            Label l5 = new Label();
-            mv.visitJumpInsn( IFNE, l5 );
-            mv.visitTypeInsn( NEW, "javax/ws/rs/WebApplicationException" );
-            mv.visitInsn( DUP );
-            mv.visitIntInsn( SIPUSH, 405 );
-            mv.visitMethodInsn( INVOKESTATIC, "javax/ws/rs/core/Response", "status",
-                                "(I)Ljavax/ws/rs/core/Response$ResponseBuilder;" );
-            mv.visitLdcInsn( "Method not allowed" );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "javax/ws/rs/core/Response$ResponseBuilder", "entity",
-                                "(Ljava/lang/Object;)Ljavax/ws/rs/core/Response$ResponseBuilder;" );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "javax/ws/rs/core/Response$ResponseBuilder", "build",
-                                "()Ljavax/ws/rs/core/Response;" );
-            mv.visitMethodInsn( INVOKESPECIAL, "javax/ws/rs/WebApplicationException", "<init>",
-                                "(Ljavax/ws/rs/core/Response;)V" );
-            mv.visitInsn( ATHROW );
-            mv.visitLabel( l5 );
-            mv.visitFrame( Opcodes.F_SAME, 0, null, 0, null );
             mv.visitInsn( ACONST_NULL );
+            mv.visitVarInsn( ASTORE, 6 );
+            mv.visitFieldInsn( GETSTATIC, className, "actions", "[Lorg/sonatype/restsimple/api/Action;" );
+            mv.visitVarInsn( ILOAD, 1 );
+            mv.visitInsn( AALOAD );
             mv.visitVarInsn( ASTORE, 7 );
-            mv.visitVarInsn( ALOAD, 6 );
-            mv.visitMethodInsn( INVOKEVIRTUAL, "org/sonatype/restsimple/api/ServiceHandler", "getAction",
-                                "()Lorg/sonatype/restsimple/api/Action;" );
-            mv.visitVarInsn( ASTORE, 8 );
-            mv.visitTypeInsn( NEW, "java/util/HashMap" );
-            mv.visitInsn( DUP );
-            mv.visitMethodInsn( INVOKESPECIAL, "java/util/HashMap", "<init>", "()V" );
-            mv.visitVarInsn( ASTORE, 9 );
-            mv.visitVarInsn( ALOAD, 2 );
-            mv.visitMethodInsn( INVOKEINTERFACE, "javax/ws/rs/core/UriInfo", "getPathParameters",
-                                "()Ljavax/ws/rs/core/MultivaluedMap;" );
-            mv.visitMethodInsn( INVOKEINTERFACE, "javax/ws/rs/core/MultivaluedMap", "entrySet", "()Ljava/util/Set;" );
-            mv.visitMethodInsn( INVOKEINTERFACE, "java/util/Set", "iterator", "()Ljava/util/Iterator;" );
-            mv.visitVarInsn( ASTORE, 10 );
-            Label l6 = new Label();
-            mv.visitLabel( l6 );
-            mv.visitFrame( Opcodes.F_FULL, 11,
-                           new Object[]{ className, "java/lang/String",
-                               "javax/ws/rs/core/UriInfo", "javax/ws/rs/core/MultivaluedMap", "java/util/Map",
-                               "java/lang/Object", "org/sonatype/restsimple/api/ServiceHandler", "java/lang/Object",
-                               "org/sonatype/restsimple/api/Action", "java/util/Map", "java/util/Iterator" }, 0,
-                           new Object[]{ } );
-            mv.visitVarInsn( ALOAD, 10 );
-            mv.visitMethodInsn( INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z" );
-            mv.visitJumpInsn( IFEQ, l0 );
-            mv.visitVarInsn( ALOAD, 10 );
-            mv.visitMethodInsn( INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;" );
-            mv.visitTypeInsn( CHECKCAST, "java/util/Map$Entry" );
-            mv.visitVarInsn( ASTORE, 11 );
-            mv.visitVarInsn( ALOAD, 9 );
-            mv.visitVarInsn( ALOAD, 11 );
-            mv.visitMethodInsn( INVOKEINTERFACE, "java/util/Map$Entry", "getKey", "()Ljava/lang/Object;" );
-            mv.visitVarInsn( ALOAD, 11 );
-            mv.visitMethodInsn( INVOKEINTERFACE, "java/util/Map$Entry", "getValue", "()Ljava/lang/Object;" );
-            mv.visitTypeInsn( CHECKCAST, "java/util/List" );
-            mv.visitInsn( ICONST_0 );
-            mv.visitMethodInsn( INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;" );
-            mv.visitMethodInsn( INVOKEINTERFACE, "java/util/Map", "put",
-                                "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;" );
-            mv.visitInsn( POP );
-            mv.visitJumpInsn( GOTO, l6 );
             mv.visitLabel( l0 );
-            mv.visitFrame( Opcodes.F_CHOP, 1, null, 0, null );
             mv.visitTypeInsn( NEW, "org/sonatype/restsimple/api/ActionContext" );
             mv.visitInsn( DUP );
             mv.visitVarInsn( ALOAD, 0 );
@@ -720,11 +689,12 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
             mv.visitMethodInsn( INVOKESPECIAL, className, "mapMethod",
                                 "(Ljava/lang/String;)Lorg/sonatype/restsimple/api/ServiceDefinition$METHOD;" );
             mv.visitVarInsn( ALOAD, 0 );
-            mv.visitMethodInsn( INVOKESPECIAL, className, "mapHeaders",
-                                "()Ljava/util/Map;" );
-            mv.visitVarInsn( ALOAD, 0 );
+            mv.visitFieldInsn( GETFIELD, className, "request",
+                               "Ljavax/servlet/http/HttpServletRequest;" );
+            mv.visitMethodInsn( INVOKESTATIC, REQUEST_MAPS, "headers",
+                                "(Ljavax/servlet/http/HttpServletRequest;)Ljava/util/Map;" );
             mv.visitVarInsn( ALOAD, 3 );
-            mv.visitMethodInsn( INVOKESPECIAL, className, "mapFormParams",
+            mv.visitMethodInsn( INVOKESTATIC, REQUEST_MAPS, "formParams",
                                 "(Ljavax/ws/rs/core/MultivaluedMap;)Ljava/util/Map;" );
             mv.visitVarInsn( ALOAD, 4 );
             mv.visitVarInsn( ALOAD, 0 );
@@ -732,120 +702,102 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
                                "Ljavax/servlet/http/HttpServletRequest;" );
             mv.visitMethodInsn( INVOKEINTERFACE, "javax/servlet/http/HttpServletRequest", "getInputStream",
                                 "()Ljavax/servlet/ServletInputStream;" );
-            mv.visitVarInsn( ALOAD, 9 );
+            mv.visitVarInsn( ALOAD, 0 );
+            mv.visitVarInsn( ALOAD, 2 );
+            mv.visitFieldInsn( GETSTATIC, className, "pathParamNames", "[[Ljava/lang/String;" );
+            mv.visitVarInsn( ILOAD, 1 );
+            mv.visitInsn( AALOAD );
+            mv.visitMethodInsn( INVOKESPECIAL, className, "mapPathParams",
+                                "(Ljavax/ws/rs/core/UriInfo;[Ljava/lang/String;)Ljava/util/Map;" );
             mv.visitVarInsn( ALOAD, 5 );
             mv.visitMethodInsn( INVOKESPECIAL, "org/sonatype/restsimple/api/ActionContext", "<init>",
                                 "(Lorg/sonatype/restsimple/api/ServiceDefinition$METHOD;Ljava/util/Map;Ljava/util/Map;Ljava/util/Map;Ljava/io/InputStream;Ljava/util/Map;Ljava/lang/Object;)V" );
-            mv.visitVarInsn( ASTORE, 10 );
+            mv.visitVarInsn( ASTORE, 8 );
+            mv.visitVarInsn( ALOAD, 7 );
             mv.visitVarInsn( ALOAD, 8 );
-            mv.visitVarInsn( ALOAD, 10 );
             mv.visitMethodInsn( INVOKEINTERFACE, "org/sonatype/restsimple/api/Action", "action",
                                 "(Lorg/sonatype/restsimple/api/ActionContext;)Ljava/lang/Object;" );
-            mv.visitVarInsn( ASTORE, 7 );
+            mv.visitVarInsn( ASTORE, 6 );
             mv.visitLabel( l1 );
             Label l7 = new Label();
             mv.visitJumpInsn( GOTO, l7 );
             mv.visitLabel( l2 );
-            mv.visitFrame( Opcodes.F_SAME1, 0, null, 1, new Object[]{ "org/sonatype/restsimple/api/ActionException" } );
-            mv.visitVarInsn( ASTORE, 10 );
+            mv.visitFrame( Opcodes.F_FULL, 8,
+                           new Object[]{ className, Opcodes.INTEGER,
+                               "javax/ws/rs/core/UriInfo", "javax/ws/rs/core/MultivaluedMap", "java/util/Map",
+                               "java/lang/Object", "java/lang/Object",
+                               "org/sonatype/restsimple/api/Action" }, 1,
+                           new Object[]{ "org/sonatype/restsimple/api/ActionException" } );
+            mv.visitVarInsn( ASTORE, 8 );
             mv.visitTypeInsn( NEW, "javax/ws/rs/WebApplicationException" );
             mv.visitInsn( DUP );
-            mv.visitVarInsn( ALOAD, 10 );
-            mv.visitVarInsn( ALOAD, 10 );
+            mv.visitVarInsn( ALOAD, 8 );
+            mv.visitVarInsn( ALOAD, 8 );
             mv.visitMethodInsn( INVOKEVIRTUAL, "org/sonatype/restsimple/api/ActionException", "getStatusCode", "()I" );
             mv.visitMethodInsn( INVOKESPECIAL, "javax/ws/rs/WebApplicationException", "<init>",
                                 "(Ljava/lang/Throwable;I)V" );
             mv.visitInsn( ATHROW );
             mv.visitLabel( l3 );
             mv.visitFrame( Opcodes.F_SAME1, 0, null, 1, new Object[]{ "java/lang/Throwable" } );
-            mv.visitVarInsn( ASTORE, 10 );
+            mv.visitVarInsn( ASTORE, 8 );
             mv.visitVarInsn( ALOAD, 0 );
             mv.visitFieldInsn( GETFIELD, className, "logger",
                                "Lorg/slf4j/Logger;" );
             mv.visitLdcInsn( "invokeAction" );
-            mv.visitVarInsn( ALOAD, 10 );
+            mv.visitVarInsn( ALOAD, 8 );
             mv.visitMethodInsn( INVOKEINTERFACE, "org/slf4j/Logger", "error",
                                 "(Ljava/lang/String;Ljava/lang/Throwable;)V" );
             mv.visitTypeInsn( NEW, "javax/ws/rs/WebApplicationException" );
             mv.visitInsn( DUP );
-            mv.visitVarInsn( ALOAD, 10 );
+            mv.visitVarInsn( ALOAD, 8 );
             mv.visitMethodInsn( INVOKESPECIAL, "javax/ws/rs/WebApplicationException", "<init>",
                                 "(Ljava/lang/Throwable;)V" );
             mv.visitInsn( ATHROW );
             mv.visitLabel( l7 );
             mv.visitFrame( Opcodes.F_SAME, 0, null, 0, null );
-            mv.visitVarInsn( ALOAD, 7 );
+            mv.visitVarInsn( ALOAD, 6 );
             mv.visitInsn( ARETURN );
-            mv.visitMaxs( 9, 12 );
+            mv.visitMaxs( 11, 9 );
             mv.visitEnd();
         }
         {
-            mv = cw.visitMethod(ACC_PRIVATE, "mapFormParams", "(Ljavax/ws/rs/core/MultivaluedMap;)Ljava/util/Map;", "(Ljavax/ws/rs/core/MultivaluedMap<Ljava/lang/String;Ljava/lang/String;>;)Ljava/util/Map<Ljava/lang/String;Ljava/util/Collection<Ljava/lang/String;>;>;", null);
+            mv = cw.visitMethod(ACC_PRIVATE, "mapPathParams", "(Ljavax/ws/rs/core/UriInfo;[Ljava/lang/String;)Ljava/util/Map;", "(Ljavax/ws/rs/core/UriInfo;[Ljava/lang/String;)Ljava/util/Map<Ljava/lang/String;Ljava/lang/String;>;", null);
             mv.visitCode();
-            mv.visitTypeInsn(NEW, "java/util/HashMap");
+            mv.visitTypeInsn(NEW, "java/util/LinkedHashMap");
             mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/util/HashMap", "<init>", "()V");
-            mv.visitVarInsn(ASTORE, 2);
+            mv.visitMethodInsn(INVOKESPECIAL, "java/util/LinkedHashMap", "<init>", "()V");
+            mv.visitVarInsn(ASTORE, 3);
             mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/UriInfo", "getPathParameters", "()Ljavax/ws/rs/core/MultivaluedMap;");
+            mv.visitVarInsn(ASTORE, 4);
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, 5);
             Label l0 = new Label();
-            mv.visitJumpInsn(IFNULL, l0);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/MultivaluedMap", "keySet", "()Ljava/util/Set;");
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Set", "iterator", "()Ljava/util/Iterator;");
-            mv.visitVarInsn(ASTORE, 3);
+            mv.visitLabel(l0);
+            mv.visitFrame(Opcodes.F_APPEND, 3, new Object[]{"java/util/Map", "javax/ws/rs/core/MultivaluedMap", Opcodes.INTEGER}, 0, null);
+            mv.visitVarInsn(ILOAD, 5);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitInsn(ARRAYLENGTH);
             Label l1 = new Label();
-            mv.visitLabel(l1);
-            mv.visitFrame(Opcodes.F_APPEND, 2, new Object[]{"java/util/Map", "java/util/Iterator"}, 0, null);
+            mv.visitJumpInsn(IF_ICMPGE, l1);
             mv.visitVarInsn(ALOAD, 3);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
-            mv.visitJumpInsn(IFEQ, l0);
-            mv.visitVarInsn(ALOAD, 3);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "java/lang/String");
-            mv.visitVarInsn(ASTORE, 4);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-            Label l2 = new Label();
-            mv.visitJumpInsn(IFNULL, l2);
             mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ILOAD, 5);
+            mv.visitInsn(AALOAD);
             mv.visitVarInsn(ALOAD, 4);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "java/util/Collection");
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/MultivaluedMap", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "java/util/Collection");
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Collection", "addAll", "(Ljava/util/Collection;)Z");
-            mv.visitInsn(POP);
-            Label l3 = new Label();
-            mv.visitJumpInsn(GOTO, l3);
-            mv.visitLabel(l2);
-            mv.visitFrame(Opcodes.F_APPEND, 1, new Object[]{"java/lang/String"}, 0, null);
-            mv.visitTypeInsn(NEW, "java/util/ArrayList");
-            mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/util/ArrayList", "<init>", "()V");
-            mv.visitVarInsn(ASTORE, 5);
-            mv.visitVarInsn(ALOAD, 5);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/MultivaluedMap", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "java/util/Collection");
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "addAll", "(Ljava/util/Collection;)Z");
-            mv.visitInsn(POP);
             mv.visitVarInsn(ALOAD, 2);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitVarInsn(ALOAD, 5);
+            mv.visitVarInsn(ILOAD, 5);
+            mv.visitInsn(AALOAD);
+            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/MultivaluedMap", "getFirst", "(Ljava/lang/Object;)Ljava/lang/Object;");
             mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
             mv.visitInsn(POP);
-            mv.visitLabel(l3);
-            mv.visitFrame(Opcodes.F_CHOP, 1, null, 0, null);
-            mv.visitJumpInsn(GOTO, l1);
-            mv.visitLabel(l0);
-            mv.visitFrame(Opcodes.F_CHOP, 1, null, 0, null);
-            mv.visitVarInsn(ALOAD, 2);
+            mv.visitIincInsn(5, 1);
+            mv.visitJumpInsn(GOTO, l0);
+            mv.visitLabel(l1);
+            mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+            mv.visitVarInsn(ALOAD, 3);
             mv.visitInsn(ARETURN);
-            mv.visitMaxs(3, 6);
+            mv.visitMaxs(5, 6);
             mv.visitEnd();
         }
 
@@ -906,167 +858,82 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
             mv.visitEnd();
         }
 
-        {
-            mv = cw.visitMethod(ACC_PRIVATE, "mapHeaders", "()Ljava/util/Map;", "()Ljava/util/Map<Ljava/lang/String;Ljava/util/Collection<Ljava/lang/String;>;>;", null);
-            mv.visitCode();
-            mv.visitTypeInsn(NEW, "java/util/HashMap");
-            mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/util/HashMap", "<init>", "()V");
-            mv.visitVarInsn(ASTORE, 1);
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, className, "request", "Ljavax/servlet/http/HttpServletRequest;");
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/servlet/http/HttpServletRequest", "getHeaderNames", "()Ljava/util/Enumeration;");
-            mv.visitVarInsn(ASTORE, 2);
-            Label l0 = new Label();
-            mv.visitLabel(l0);
-            mv.visitFrame(Opcodes.F_APPEND, 2, new Object[]{"java/util/Map", "java/util/Enumeration"}, 0, null);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Enumeration", "hasMoreElements", "()Z");
-            Label l1 = new Label();
-            mv.visitJumpInsn(IFEQ, l1);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Enumeration", "nextElement", "()Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "java/lang/String");
-            mv.visitVarInsn(ASTORE, 3);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ALOAD, 3);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-            Label l2 = new Label();
-            mv.visitJumpInsn(IFNULL, l2);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ALOAD, 3);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "java/util/Collection");
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, className, "request", "Ljavax/servlet/http/HttpServletRequest;");
-            mv.visitVarInsn(ALOAD, 3);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/servlet/http/HttpServletRequest", "getHeader", "(Ljava/lang/String;)Ljava/lang/String;");
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Collection", "add", "(Ljava/lang/Object;)Z");
-            mv.visitInsn(POP);
-            mv.visitJumpInsn(GOTO, l0);
-            mv.visitLabel(l2);
-            mv.visitFrame(Opcodes.F_APPEND, 1, new Object[]{"java/lang/String"}, 0, null);
-            mv.visitTypeInsn(NEW, "java/util/ArrayList");
-            mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/util/ArrayList", "<init>", "()V");
-            mv.visitVarInsn(ASTORE, 4);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, className, "request", "Ljavax/servlet/http/HttpServletRequest;");
-            mv.visitVarInsn(ALOAD, 3);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/servlet/http/HttpServletRequest", "getHeader", "(Ljava/lang/String;)Ljava/lang/String;");
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "add", "(Ljava/lang/Object;)Z");
-            mv.visitInsn(POP);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitVarInsn(ALOAD, 3);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
-            mv.visitInsn(POP);
-            mv.visitJumpInsn(GOTO, l0);
-            mv.visitLabel(l1);
-            mv.visitFrame(Opcodes.F_CHOP, 1, null, 0, null);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitMethodInsn(INVOKESTATIC, "java/util/Collections", "unmodifiableMap", "(Ljava/util/Map;)Ljava/util/Map;");
-            mv.visitInsn(ARETURN);
-            mv.visitMaxs(3, 5);
-            mv.visitEnd();
-        }
 
-        {
-            mv = cw.visitMethod(ACC_PRIVATE, "mapMatrixParam", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map;", "(Ljavax/ws/rs/core/UriInfo;)Ljava/util/Map<Ljava/lang/String;Ljava/util/Collection<Ljava/lang/String;>;>;", null);
-            mv.visitCode();
-            mv.visitTypeInsn(NEW, "java/util/HashMap");
-            mv.visitInsn(DUP);
-            mv.visitMethodInsn(INVOKESPECIAL, "java/util/HashMap", "<init>", "()V");
-            mv.visitVarInsn(ASTORE, 2);
-            mv.visitVarInsn(ALOAD, 1);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/UriInfo", "getPathSegments", "()Ljava/util/List;");
-            mv.visitVarInsn(ASTORE, 3);
-            mv.visitVarInsn(ALOAD, 3);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "iterator", "()Ljava/util/Iterator;");
-            mv.visitVarInsn(ASTORE, 4);
-            Label l0 = new Label();
-            mv.visitLabel(l0);
-            mv.visitFrame(Opcodes.F_APPEND, 3, new Object[]{"java/util/Map", "java/util/List", "java/util/Iterator"}, 0, null);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
-            Label l1 = new Label();
-            mv.visitJumpInsn(IFEQ, l1);
-            mv.visitVarInsn(ALOAD, 4);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "javax/ws/rs/core/PathSegment");
-            mv.visitVarInsn(ASTORE, 5);
-            mv.visitVarInsn(ALOAD, 5);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/PathSegment", "getMatrixParameters", "()Ljavax/ws/rs/core/MultivaluedMap;");
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/MultivaluedMap", "keySet", "()Ljava/util/Set;");
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Set", "iterator", "()Ljava/util/Iterator;");
-            mv.visitVarInsn(ASTORE, 6);
-            Label l2 = new Label();
-            mv.visitLabel(l2);
-            mv.visitFrame(Opcodes.F_APPEND, 2, new Object[]{"javax/ws/rs/core/PathSegment", "java/util/Iterator"}, 0, null);
-            mv.visitVarInsn(ALOAD, 6);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
-            Label l3 = new Label();
-            mv.visitJumpInsn(IFEQ, l3);
-            mv.visitVarInsn(ALOAD, 6);
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
-            mv.visitTypeInsn(CHECKCAST, "java/lang/String");
-            mv.visitVarInsn(ASTORE, 7);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitVarInsn(ALOAD, 7);
-            mv.visitVarInsn(ALOAD, 5);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/PathSegment", "getMatrixParameters", "()Ljavax/ws/rs/core/MultivaluedMap;");
-            mv.visitVarInsn(ALOAD, 7);
-            mv.visitMethodInsn(INVOKEINTERFACE, "javax/ws/rs/core/MultivaluedMap", "get", "(Ljava/lang/Object;)Ljava/lang/Object;");
-            mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "put", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;");
-            mv.visitInsn(POP);
-            mv.visitJumpInsn(GOTO, l2);
-            mv.visitLabel(l3);
-            mv.visitFrame(Opcodes.F_CHOP, 2, null, 0, null);
-            mv.visitJumpInsn(GOTO, l0);
-            mv.visitLabel(l1);
-            mv.visitFrame(Opcodes.F_CHOP, 1, null, 0, null);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitMethodInsn(INVOKESTATIC, "java/util/Collections", "unmodifiableMap", "(Ljava/util/Map;)Ljava/util/Map;");
-            mv.visitInsn(ARETURN);
-            mv.visitMaxs(4, 8);
-            mv.visitEnd();
-        }
         cw.visitEnd();
 
-        byte[] bytes = cw.toByteArray();
+        return cw.toByteArray();
+    }
 
-        try {
-            String classToLoad = className.replace("/", ".");
-            ClassLoader cl = new ByteClassloader(bytes, this.getClass().getClassLoader(), classToLoad);
-            Class<?> clazz = cl.loadClass(classToLoad);
+    /**
+     * Return the internal name of the type a generated method binds the request's body to. A streaming
+     * {@link ServiceHandler} binds it to the entity's {@link java.io.InputStream}, which Jersey doesn't read.
+     */
+    private static String bodyType(ServiceHandler serviceHandler) {
+        if (serviceHandler.isStreaming()) {
+            return "java/io/InputStream";
+        }
+        return serviceHandler.consumeClass() != null ? serviceHandler.consumeClass().getName().replace(".", "/") : "java/lang/String";
+    }
 
-            moduleConfig.bind(clazz);
-            moduleConfig.bind(GenericMessageBodyWriter.class);
-            bindExtension(serviceDefinition);
-        } catch (Throwable e) {
-            logger.error("generate", e);
+    /**
+     * Push the body passed to invokeAction, which is null for a streaming {@link ServiceHandler}: its {@link Action}
+     * reads the request's stream itself.
+     */
+    private static void loadBody(MethodVisitor mv, ServiceHandler serviceHandler) {
+        if (serviceHandler.isStreaming()) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            mv.visitVarInsn(ALOAD, 2);
         }
     }
 
+    /**
+     * Describe everything the generated class depends on.
+     */
+    private static String describe(ServiceDefinition serviceDefinition) {
+        StringBuilder b = new StringBuilder();
+        b.append(serviceDefinition.path()).append('\n');
+        b.append(serviceDefinition.mediaToProduce()).append(serviceDefinition.mediaToConsume()).append('\n');
+        for (ServiceHandler serviceHandler : serviceDefinition.serviceHandlers()) {
+            b.append(serviceHandler.getHttpMethod()).append(' ').append(serviceHandler.path())
+                    .append(' ').append(serviceHandler.consumeMediaType() == null ? null : serviceHandler.consumeMediaType().toMediaType())
+                    .append(' ').append(serviceHandler.consumeClass() == null ? null : serviceHandler.consumeClass().getName())
+                    .append(' ').append(serviceHandler.isStreaming());
+            for (MediaType m : serviceHandler.mediaToProduce()) {
+                b.append(' ').append(m.toMediaType());
+            }
+            if (PostServiceHandler.class.isAssignableFrom(serviceHandler.getClass())) {
+                b.append(' ').append(PostServiceHandler.class.cast(serviceHandler).formParams());
+            }
+            b.append('\n');
+        }
+        return b.toString();
+    }
+
+    /**
+     * Define all the classes generated by a {@link JAXRSServiceDefinitionGenerator}.
+     */
     private final static class ByteClassloader extends ClassLoader {
 
-        private final byte[] clazzBytes;
-        private final String className;
+        private final Set<String> names = new HashSet<String>();
 
-        protected ByteClassloader(byte[] clazzBytes, ClassLoader parent, String className) {
+        protected ByteClassloader(ClassLoader parent) {
             super(parent);
-            this.clazzBytes = clazzBytes;
-            this.className = className;
         }
 
-        protected Class findClass(String name) throws ClassNotFoundException {
-
-            if (name.compareTo(className) == 0) {
-                return defineClass(name, clazzBytes, 0, clazzBytes.length);
-            } else {
-                return super.findClass(name);
+        /**
+         * Return a name no other class uses, made of <tt>name</tt> and, if it is already used, a suffix.
+         */
+        synchronized String reserve(String name) {
+            String unique = name;
+            for (int i = 2; !names.add(unique); i++) {
+                unique = name + "_" + i;
             }
+            return unique;
+        }
+
+        synchronized Class<?> define(String className, byte[] clazzBytes) {
+            return defineClass(className, clazzBytes, 0, clazzBytes.length);
         }
     }
 
@@ -1084,6 +951,27 @@ public class JAXRSServiceDefinitionGenerator implements ServiceDefinitionGenerat
         return newPath.toString();
     }
 
+    private static void setStatic(Class<?> clazz, String name, Object value) throws Exception {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+
+    /**
+     * Return the name of the template variables of the {@link ServiceHandler}'s path, in the order the
+     * {@link ServiceHandlerMapper} extracts them.
+     */
+    private String[] pathParamNames(ServiceDefinition serviceDefinition, ServiceHandler serviceHandler) {
+        Set<String> names = new LinkedHashSet<String>();
+        for (String path : new String[]{serviceDefinition.path(), serviceHandler.path()}) {
+            String template = convert(path);
+            if (template.length() > 0) {
+                names.addAll(new UriTemplate(template).getTemplateVariables());
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
     private void bindExtension(ServiceDefinition serviceDefinition) {
         List<Class<?>> extensions = serviceDefinition.extensions();
         for (Class<?> clazz : extensions) {
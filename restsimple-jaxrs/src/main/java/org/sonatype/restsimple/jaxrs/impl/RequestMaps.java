@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.jaxrs.impl;
+
+import org.sonatype.restsimple.api.ActionContext;
+import org.sonatype.restsimple.spi.LazyMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.UriInfo;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Create the {@link ActionContext} maps of the classes generated by {@link JAXRSServiceDefinitionGenerator}. The maps
+ * are {@link LazyMap}, only built from the request if the {@link org.sonatype.restsimple.api.Action} reads them.
+ */
+public final class RequestMaps {
+
+    private RequestMaps() {
+    }
+
+    /**
+     * Return the headers of a request.
+     * @param request the request
+     * @return the headers of a request.
+     */
+    public static Map<String, Collection<String>> headers(final HttpServletRequest request) {
+        return new LazyMap<String, Collection<String>>() {
+            @Override
+            protected Map<String, Collection<String>> build() {
+                Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
+                Enumeration<String> e = request.getHeaderNames();
+                while (e.hasMoreElements()) {
+                    String name = e.nextElement();
+                    Collection<String> values = map.get(name);
+                    if (values == null) {
+                        values = new ArrayList<String>();
+                        map.put(name, values);
+                    }
+                    values.add(request.getHeader(name));
+                }
+                return map;
+            }
+        };
+    }
+
+    /**
+     * Return the form parameters of a request.
+     * @param formParams the form parameters, or null.
+     * @return the form parameters of a request.
+     */
+    public static Map<String, Collection<String>> formParams(final MultivaluedMap<String, String> formParams) {
+        if (formParams == null) {
+            return Collections.emptyMap();
+        }
+
+        return new LazyMap<String, Collection<String>>() {
+            @Override
+            protected Map<String, Collection<String>> build() {
+                Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
+                for (Map.Entry<String, List<String>> e : formParams.entrySet()) {
+                    map.put(e.getKey(), new ArrayList<String>(e.getValue()));
+                }
+                return map;
+            }
+        };
+    }
+
+    /**
+     * Return the matrix parameters of all the path segments of a request.
+     * @param uriInfo the request's {@link UriInfo}
+     * @return the matrix parameters of a request.
+     */
+    public static Map<String, Collection<String>> matrixParams(final UriInfo uriInfo) {
+        return new LazyMap<String, Collection<String>>() {
+            @Override
+            protected Map<String, Collection<String>> build() {
+                Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
+                for (PathSegment segment : uriInfo.getPathSegments()) {
+                    MultivaluedMap<String, String> matrixParameters = segment.getMatrixParameters();
+                    for (String name : matrixParameters.keySet()) {
+                        map.put(name, matrixParameters.get(name));
+                    }
+                }
+                return map;
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2010-2011 Sonatype, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * and Apache License v2.0 which accompanies this distribution.
+ * The Eclipse Public License is available at
+ *   http://www.eclipse.org/legal/epl-v10.html
+ * The Apache License v2.0 is available at
+ *   http://www.apache.org/licenses/LICENSE-2.0.html
+ * You may elect to redistribute this code under either of these licenses.
+ *******************************************************************************/
+package org.sonatype.restsimple.jaxrs.test.classCache;
+
+import com.google.inject.servlet.GuiceFilter;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.Response;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonatype.restsimple.common.test.petstore.PetstoreAction;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+public class ClassCacheJaxrsTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClassCacheJaxrsTest.class);
+
+    // An old date, not the one the cached class would get if it was stored again.
+    private static final long CACHED = 946684800000L;
+
+    private final String acceptHeader = PetstoreAction.APPLICATION + "/" + PetstoreAction.JSON;
+
+    protected int findFreePort() throws IOException {
+        ServerSocket socket = null;
+
+        try {
+            socket = new ServerSocket(0);
+
+            return socket.getLocalPort();
+        }
+        finally {
+            if (socket != null) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test(timeOut = 60000)
+    public void testRestartLoadsCachedClass() throws Throwable {
+        logger.info("running test: testRestartLoadsCachedClass");
+
+        File classCache = File.createTempFile("restsimple", "classCache");
+        classCache.delete();
+
+        // The first start generates the resource and stores it.
+        createAndGet(classCache, "firstPet");
+        File[] cached = classCache.listFiles();
+        assertNotNull(cached);
+        assertEquals(cached.length, 1);
+        assertEquals(cached[0].setLastModified(CACHED), true);
+
+        // The second start loads it: the file isn't written again.
+        createAndGet(classCache, "secondPet");
+        File[] reloaded = classCache.listFiles();
+        assertEquals(reloaded.length, 1);
+        assertEquals(reloaded[0], cached[0]);
+        assertEquals(reloaded[0].lastModified(), CACHED);
+    }
+
+    private void createAndGet(File classCache, String pet) throws Exception {
+        int port = findFreePort();
+        Server server = new Server(port);
+        String targetUrl = "http://127.0.0.1:" + port;
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/");
+        context.addFilter(GuiceFilter.class, "/*", 0);
+        context.addEventListener(new ClassCacheJaxrsConfig(classCache));
+        context.addServlet(DefaultServlet.class, "/");
+
+        server.setHandler(context);
+        server.start();
+        AsyncHttpClient c = new AsyncHttpClient();
+        try {
+            Response r = c.preparePost(targetUrl + "/cachedCreate/" + pet).setBody("{\"name\":\"" + pet + "\"}")
+                    .addHeader("Content-Type", acceptHeader).addHeader("Accept", acceptHeader).execute().get();
+            assertEquals(r.getStatusCode(), 200);
+
+            r = c.prepareGet(targetUrl + "/cachedGet/" + pet).addHeader("Accept", acceptHeader).execute().get();
+            assertEquals(r.getStatusCode(), 200);
+            assertEquals(r.getResponseBody(), "{\"name\":\"" + pet + "\"}");
+        } finally {
+            c.close();
+            server.stop();
+        }
+    }
+}
@@ -27,11 +27,17 @@ import org.sonatype.restsimple.api.PostServiceHandler;
 import org.sonatype.restsimple.api.PutServiceHandler;
 import org.sonatype.restsimple.api.ServiceDefinition;
 import org.sonatype.restsimple.api.ServiceHandler;
+import org.sonatype.restsimple.spi.GeneratedClassCache;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * A {@link ServiceDefinitionBuilder} that generate on the fly {@link ServiceDefinition} from a class that follow the {@link ServiceDefinition} convention.
@@ -54,6 +60,7 @@ public class MethodServiceDefinitionBuilder implements ServiceDefinitionBuilder
     private final static Logger logger = LoggerFactory.getLogger(MethodServiceDefinitionBuilder.class);
     private Class<?> type;
     private ServiceDefinitionCreatorConfig config = ServiceDefinitionCreatorConfig.config();
+    private GeneratedClassCache classCache;
 
     @Override
     public ServiceDefinitionBuilder type(Class<?> type) throws Exception {
@@ -67,6 +74,17 @@ public class MethodServiceDefinitionBuilder implements ServiceDefinitionBuilder
         return this;
     }
 
+    /**
+     * Store the generated {@link Action} classes in a {@link GeneratedClassCache}, and load the classes it already
+     * contains instead of generating them again.
+     * @param classCache a {@link GeneratedClassCache}
+     * @return this
+     */
+    public MethodServiceDefinitionBuilder classCache(GeneratedClassCache classCache) {
+        this.classCache = classCache;
+        return this;
+    }
+
     @Override
     public ServiceDefinition build() throws Exception {
         ServiceDefinition serviceDefinition = new DefaultServiceDefinition();
@@ -87,19 +105,19 @@ public class MethodServiceDefinitionBuilder implements ServiceDefinitionBuilder
             switch (methodMapper.getMethod()) {
                 case GET:
                     if (types.length == 1) {
-                        serviceHandler = new GetServiceHandler("/" + methodMapper.getMethodMappedTo() + "/:id", ActionGenerator.generate(instance, type, method));
+                        serviceHandler = new GetServiceHandler("/" + methodMapper.getMethodMappedTo() + "/:id", ActionGenerator.generate(classCache, instance, type, method));
                     } else {
-                        serviceHandler = new GetServiceHandler("/" + methodMapper.getMethodMappedTo(), ActionGenerator.generate(instance, type, method));
+                        serviceHandler = new GetServiceHandler("/" + methodMapper.getMethodMappedTo(), ActionGenerator.generate(classCache, instance, type, method));
                     }
                     break;
                 case POST:
-                    serviceHandler = new PostServiceHandler("/" + methodMapper.getMethodMappedTo(), ActionGenerator.generate(instance, type, method));
+                    serviceHandler = new PostServiceHandler("/" + methodMapper.getMethodMappedTo(), ActionGenerator.generate(classCache, instance, type, method));
                     break;
                 case DELETE:
-                    serviceHandler = new DeleteServiceHandler("/" + methodMapper.getMethodMappedTo() + "/:id", ActionGenerator.generate(instance, type, method));
+                    serviceHandler = new DeleteServiceHandler("/" + methodMapper.getMethodMappedTo() + "/:id", ActionGenerator.generate(classCache, instance, type, method));
                     break;
                 case PUT:
-                    serviceHandler = new PutServiceHandler("/" + methodMapper.getMethodMappedTo(), ActionGenerator.generate(instance, type, method));
+                    serviceHandler = new PutServiceHandler("/" + methodMapper.getMethodMappedTo(), ActionGenerator.generate(classCache, instance, type, method));
                     break;
                 default:
                     throw new IllegalStateException();
@@ -120,94 +138,119 @@ public class MethodServiceDefinitionBuilder implements ServiceDefinitionBuilder
 
     private final static class ActionGenerator implements Opcodes {
 
-        public static <T> Action generate(Object instance, Class<T> clazz, Method method) throws Exception {
+        public static <T> Action generate(GeneratedClassCache classCache, Object instance, Class<T> clazz,
+                                          Method method) throws Exception {
+
+            if (method.getParameterTypes().length > 1) {
+                throw new IllegalStateException("Method " + method + " must have zero or one parameter");
+            }
+
+            // The name only depends on the method, so the class can be found in the GeneratedClassCache
+            String className = clazz.getName() + "$" + method.getName() + "Action"
+                    + GeneratedClassCache.fingerprint(Modifier.toString(method.getModifiers()) + " "
+                    + Type.getMethodDescriptor(method)).substring(0, 8);
+
+            ByteClassloader classLoader = ByteClassloader.of(clazz.getClassLoader());
+            Class<? extends Action> newClazz;
+            synchronized (classLoader) {
+                Class<?> loaded = classLoader.loaded(className);
+                if (loaded == null) {
+                    byte[] bytes = classCache == null ? null : classCache.get(ActionGenerator.class, className);
+                    if (bytes == null) {
+                        bytes = generate(clazz, method, className.replace(".", "/"));
+                        if (classCache != null) {
+                            try {
+                                classCache.put(ActionGenerator.class, className, bytes);
+                            } catch (IOException e) {
+                                logger.warn("Unable to cache " + className, e);
+                            }
+                        }
+                    }
+                    loaded = classLoader.define(className, bytes);
+                }
+                newClazz = loaded.asSubclass(Action.class);
+            }
+
+            Constructor<? extends Action> c = newClazz.getConstructor(new Class[]{clazz});
+            return c.newInstance(new Object[]{instance});
+        }
+
+        private static byte[] generate(Class<?> clazz, Method method, String className) {
 
+            Class<?>[] parameterTypes = method.getParameterTypes();
             ClassWriter cw = new ClassWriter(0);
             FieldVisitor fv;
             MethodVisitor mv;
-            String className = clazz.getName().replace(".", "/") + "Action";
+            String targetType = Type.getInternalName(clazz);
+            String targetDesc = Type.getDescriptor(clazz);
 
-            String returnType = method.getReturnType().getName().replace(".", "/");
-            String parameterType = "java/lang/Object";
-            if (method.getParameterTypes().length > 0) {
-                parameterType = method.getParameterTypes()[0].getName().replace(".", "/");
-            }
+            // Action's type parameters can't be primitives
+            Type methodReturnType = Type.getReturnType(method);
+            Type returnType = boxed(methodReturnType);
+            Type parameterType = parameterTypes.length > 0 ? boxed(Type.getType(parameterTypes[0])) : Type.getType(Object.class);
 
-            cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, className, "Ljava/lang/Object;Lorg/sonatype/restsimple/api/Action<L"
-                    + returnType + ";L"
-                    + parameterType + ";>;", "java/lang/Object", new String[]{"org/sonatype/restsimple/api/Action"});
+            cw.visit(V1_6, ACC_PUBLIC + ACC_SUPER, className, "Ljava/lang/Object;Lorg/sonatype/restsimple/api/Action<"
+                    + returnType.getDescriptor()
+                    + parameterType.getDescriptor() + ">;", "java/lang/Object", new String[]{"org/sonatype/restsimple/api/Action"});
 
             {
-                fv = cw.visitField(ACC_PRIVATE + ACC_FINAL, "object", "Ljava/lang/Object;", null, null);
+                fv = cw.visitField(ACC_PRIVATE + ACC_FINAL, "object", targetDesc, null, null);
                 fv.visitEnd();
             }
             {
-                fv = cw.visitField(ACC_PRIVATE + ACC_FINAL, "method", "Ljava/lang/reflect/Method;", null, null);
-                fv.visitEnd();
-            }
-            {
-                mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/lang/Object;Ljava/lang/reflect/Method;)V", null, null);
+                mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(" + targetDesc + ")V", null, null);
                 mv.visitCode();
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitVarInsn(ALOAD, 1);
-                mv.visitFieldInsn(PUTFIELD, className, "object", "Ljava/lang/Object;");
-                mv.visitVarInsn(ALOAD, 0);
-                mv.visitVarInsn(ALOAD, 2);
-                mv.visitFieldInsn(PUTFIELD, className, "method", "Ljava/lang/reflect/Method;");
+                mv.visitFieldInsn(PUTFIELD, className, "object", targetDesc);
                 mv.visitInsn(RETURN);
-                mv.visitMaxs(2, 3);
+                mv.visitMaxs(2, 2);
                 mv.visitEnd();
             }
             {
-                mv = cw.visitMethod(ACC_PUBLIC, "action", "(Lorg/sonatype/restsimple/api/ActionContext;)L" + returnType + ";",
-                        "(Lorg/sonatype/restsimple/api/ActionContext<L" + parameterType + ";>;)L" + returnType + ";", new String[]{"org/sonatype/restsimple/api/ActionException"});
+                mv = cw.visitMethod(ACC_PUBLIC, "action", "(Lorg/sonatype/restsimple/api/ActionContext;)" + returnType.getDescriptor(),
+                        "(Lorg/sonatype/restsimple/api/ActionContext<" + parameterType.getDescriptor() + ">;)" + returnType.getDescriptor(), new String[]{"org/sonatype/restsimple/api/ActionException"});
                 mv.visitCode();
                 Label l0 = new Label();
                 Label l1 = new Label();
                 Label l2 = new Label();
-                mv.visitTryCatchBlock(l0, l1, l2, "java/lang/IllegalAccessException");
+                mv.visitTryCatchBlock(l0, l1, l2, "org/sonatype/restsimple/api/ActionException");
                 Label l3 = new Label();
-                mv.visitTryCatchBlock(l0, l1, l3, "java/lang/reflect/InvocationTargetException");
+                mv.visitTryCatchBlock(l0, l1, l3, "java/lang/Throwable");
                 mv.visitLabel(l0);
-                mv.visitVarInsn(ALOAD, 0);
-                mv.visitFieldInsn(GETFIELD, className, "method", "Ljava/lang/reflect/Method;");
-                mv.visitVarInsn(ALOAD, 0);
-                mv.visitFieldInsn(GETFIELD, className, "object", "Ljava/lang/Object;");
-                if (method.getParameterTypes().length > 0) {
-                    mv.visitInsn(ICONST_1);
-                    mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
-                    mv.visitInsn(DUP);
-                    mv.visitInsn(ICONST_0);
+                boolean isStatic = Modifier.isStatic(method.getModifiers());
+                if (!isStatic) {
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitFieldInsn(GETFIELD, className, "object", targetDesc);
+                }
+                if (parameterTypes.length > 0) {
                     mv.visitVarInsn(ALOAD, 1);
                     mv.visitMethodInsn(INVOKESTATIC, className, "getActionType", "(Lorg/sonatype/restsimple/api/ActionContext;)Ljava/lang/Object;");
-                    mv.visitInsn(AASTORE);
+                    mv.visitTypeInsn(CHECKCAST, parameterType.getInternalName());
+                    unbox(mv, Type.getType(parameterTypes[0]));
+                }
+                mv.visitMethodInsn(isStatic ? INVOKESTATIC : INVOKEVIRTUAL, targetType, method.getName(), Type.getMethodDescriptor(method));
+                if (methodReturnType.getSort() == Type.VOID) {
+                    mv.visitInsn(ACONST_NULL);
                 } else {
-                    mv.visitInsn(ICONST_0);
-                    mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+                    box(mv, methodReturnType);
                 }
-                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/reflect/Method", "invoke", "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
-                mv.visitTypeInsn(CHECKCAST, "" + returnType + "");
                 mv.visitLabel(l1);
                 mv.visitInsn(ARETURN);
                 mv.visitLabel(l2);
-                mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{"java/lang/IllegalAccessException"});
-                mv.visitVarInsn(ASTORE, 2);
-                mv.visitTypeInsn(NEW, "org/sonatype/restsimple/api/ActionException");
-                mv.visitInsn(DUP);
-                mv.visitVarInsn(ALOAD, 2);
-                mv.visitMethodInsn(INVOKESPECIAL, "org/sonatype/restsimple/api/ActionException", "<init>", "(Ljava/lang/Throwable;)V");
+                mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{"org/sonatype/restsimple/api/ActionException"});
                 mv.visitInsn(ATHROW);
                 mv.visitLabel(l3);
-                mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{"java/lang/reflect/InvocationTargetException"});
+                mv.visitFrame(Opcodes.F_SAME1, 0, null, 1, new Object[]{"java/lang/Throwable"});
                 mv.visitVarInsn(ASTORE, 2);
                 mv.visitTypeInsn(NEW, "org/sonatype/restsimple/api/ActionException");
                 mv.visitInsn(DUP);
                 mv.visitVarInsn(ALOAD, 2);
                 mv.visitMethodInsn(INVOKESPECIAL, "org/sonatype/restsimple/api/ActionException", "<init>", "(Ljava/lang/Throwable;)V");
                 mv.visitInsn(ATHROW);
-                mv.visitMaxs(6, 3);
+                mv.visitMaxs(3, 3);
                 mv.visitEnd();
             }
             {
@@ -226,49 +269,42 @@ public class MethodServiceDefinitionBuilder implements ServiceDefinitionBuilder
                 mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Class", "isAssignableFrom", "(Ljava/lang/Class;)Z");
                 Label l0 = new Label();
                 mv.visitJumpInsn(IFEQ, l0);
-                mv.visitLdcInsn(Type.getType("Ljava/lang/String;"));
                 mv.visitVarInsn(ALOAD, 1);
-                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Class", "cast", "(Ljava/lang/Object;)Ljava/lang/Object;");
                 mv.visitTypeInsn(CHECKCAST, "java/lang/String");
                 mv.visitLdcInsn("");
                 mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equalsIgnoreCase", "(Ljava/lang/String;)Z");
                 mv.visitJumpInsn(IFEQ, l0);
+                // The last non empty path parameter is what we are looking for
                 mv.visitVarInsn(ALOAD, 0);
-                mv.visitMethodInsn(INVOKEVIRTUAL, "org/sonatype/restsimple/api/ActionContext", "pathParams",
-                        "()Ljava/util/Map;");
-                mv.visitVarInsn(ASTORE, 2);
-                mv.visitVarInsn(ALOAD, 2);
-                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map", "entrySet", "()Ljava/util/Set;");
-                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Set", "iterator", "()Ljava/util/Iterator;");
-                mv.visitVarInsn(ASTORE, 3);
+                mv.visitMethodInsn(INVOKEVIRTUAL, "org/sonatype/restsimple/api/ActionContext", "pathParamCount", "()I");
+                mv.visitInsn(ICONST_1);
+                mv.visitInsn(ISUB);
+                mv.visitVarInsn(ISTORE, 2);
                 Label l1 = new Label();
                 mv.visitLabel(l1);
-                mv.visitFrame(Opcodes.F_APPEND, 3,
-                        new Object[]{"java/lang/Object", "java/util/Map", "java/util/Iterator"}, 0, null);
-                mv.visitVarInsn(ALOAD, 3);
-                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "hasNext", "()Z");
-                mv.visitJumpInsn(IFEQ, l0);
+                mv.visitFrame(Opcodes.F_APPEND, 2, new Object[]{"java/lang/Object", Opcodes.INTEGER}, 0, null);
+                mv.visitVarInsn(ILOAD, 2);
+                mv.visitJumpInsn(IFLT, l0);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ILOAD, 2);
+                mv.visitMethodInsn(INVOKEVIRTUAL, "org/sonatype/restsimple/api/ActionContext", "pathParam",
+                        "(I)Ljava/lang/String;");
+                mv.visitVarInsn(ASTORE, 3);
                 mv.visitVarInsn(ALOAD, 3);
-                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
-                mv.visitTypeInsn(CHECKCAST, "java/util/Map$Entry");
-                mv.visitVarInsn(ASTORE, 4);
-                mv.visitVarInsn(ALOAD, 4);
-                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map$Entry", "getValue", "()Ljava/lang/Object;");
-                mv.visitTypeInsn(CHECKCAST, "java/lang/String");
                 mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "isEmpty", "()Z");
                 Label l2 = new Label();
                 mv.visitJumpInsn(IFNE, l2);
-                mv.visitVarInsn(ALOAD, 4);
-                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Map$Entry", "getValue", "()Ljava/lang/Object;");
-                mv.visitVarInsn(ASTORE, 1);
+                mv.visitVarInsn(ALOAD, 3);
+                mv.visitInsn(ARETURN);
                 mv.visitLabel(l2);
-                mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+                mv.visitFrame(Opcodes.F_APPEND, 1, new Object[]{"java/lang/String"}, 0, null);
+                mv.visitIincInsn(2, -1);
                 mv.visitJumpInsn(GOTO, l1);
                 mv.visitLabel(l0);
                 mv.visitFrame(Opcodes.F_CHOP, 2, null, 0, null);
                 mv.visitVarInsn(ALOAD, 1);
                 mv.visitInsn(ARETURN);
-                mv.visitMaxs(2, 5);
+                mv.visitMaxs(2, 4);
                 mv.visitEnd();
             }
             {
@@ -279,46 +315,121 @@ public class MethodServiceDefinitionBuilder implements ServiceDefinitionBuilder
                 mv.visitVarInsn(ALOAD, 0);
                 mv.visitVarInsn(ALOAD, 1);
                 mv.visitMethodInsn(INVOKEVIRTUAL, className, "action",
-                        "(Lorg/sonatype/restsimple/api/ActionContext;)L" + returnType + ";");
+                        "(Lorg/sonatype/restsimple/api/ActionContext;)" + returnType.getDescriptor());
                 mv.visitInsn(ARETURN);
                 mv.visitMaxs(2, 2);
                 mv.visitEnd();
             }
             cw.visitEnd();
 
-            byte[] bytes = cw.toByteArray();
+            return cw.toByteArray();
+        }
+
+        private static Type boxed(Type type) {
+            switch (type.getSort()) {
+                case Type.VOID:
+                    return Type.getType(Object.class);
+                case Type.BOOLEAN:
+                    return Type.getType(Boolean.class);
+                case Type.CHAR:
+                    return Type.getType(Character.class);
+                case Type.BYTE:
+                    return Type.getType(Byte.class);
+                case Type.SHORT:
+                    return Type.getType(Short.class);
+                case Type.INT:
+                    return Type.getType(Integer.class);
+                case Type.FLOAT:
+                    return Type.getType(Float.class);
+                case Type.LONG:
+                    return Type.getType(Long.class);
+                case Type.DOUBLE:
+                    return Type.getType(Double.class);
+                default:
+                    return type;
+            }
+        }
 
-            try {
-                String classToLoad = className.replace("/", ".");
-                ClassLoader cl = new ByteClassloader(bytes, ActionGenerator.class.getClassLoader(), classToLoad);
-                Class<? extends Action> newClazz = (Class<? extends Action>) cl.loadClass(classToLoad);
+        private static void box(MethodVisitor mv, Type type) {
+            Type boxed = boxed(type);
+            if (boxed != type) {
+                mv.visitMethodInsn(INVOKESTATIC, boxed.getInternalName(), "valueOf",
+                        "(" + type.getDescriptor() + ")" + boxed.getDescriptor());
+            }
+        }
 
-                Constructor<? extends Action> c = newClazz.getConstructor(new Class[]{Object.class, Method.class});
-                return c.newInstance(new Object[]{instance, method});
-            } catch (Throwable e) {
-                e.printStackTrace();
+        private static void unbox(MethodVisitor mv, Type type) {
+            Type boxed = boxed(type);
+            if (boxed != type) {
+                mv.visitMethodInsn(INVOKEVIRTUAL, boxed.getInternalName(), type.getClassName() + "Value",
+                        "()" + type.getDescriptor());
             }
-            return null;
         }
 
+        /**
+         * Define the {@link Action}s generated for the types of one ClassLoader. The generated classes reference their
+         * target's type, which is looked up using that ClassLoader first. A ByteClassloader is shared by every
+         * {@link MethodServiceDefinitionBuilder}, so a type's {@link Action}s are only defined once.
+         */
         private final static class ByteClassloader extends ClassLoader {
 
-            private final byte[] clazzBytes;
-            private final String className;
+            // The RestSimple API is always loaded from the parent, so the generated classes share its types.
+            private final static String API_PACKAGE = Action.class.getPackage().getName() + ".";
+
+            /**
+             * The ByteClassloader of each target ClassLoader. A ByteClassloader references its target, so it is
+             * weakly referenced to not prevent the target from being garbage collected.
+             */
+            private final static Map<ClassLoader, WeakReference<ByteClassloader>> classLoaders =
+                    new WeakHashMap<ClassLoader, WeakReference<ByteClassloader>>();
+
+            private final ClassLoader targetClassLoader;
 
-            protected ByteClassloader(byte[] clazzBytes, ClassLoader parent, String className) {
+            private ByteClassloader(ClassLoader parent, ClassLoader targetClassLoader) {
                 super(parent);
-                this.clazzBytes = clazzBytes;
-                this.className = className;
+                this.targetClassLoader = targetClassLoader;
             }
 
-            protected Class findClass(String name) throws ClassNotFoundException {
+            static ByteClassloader of(ClassLoader targetClassLoader) {
+                synchronized (classLoaders) {
+                    WeakReference<ByteClassloader> ref = classLoaders.get(targetClassLoader);
+                    ByteClassloader classLoader = ref == null ? null : ref.get();
+                    if (classLoader == null) {
+                        ClassLoader parent = ActionGenerator.class.getClassLoader();
+                        classLoader = new ByteClassloader(parent,
+                                targetClassLoader == parent ? null : targetClassLoader);
+                        classLoaders.put(targetClassLoader, new WeakReference<ByteClassloader>(classLoader));
+                    }
+                    return classLoader;
+                }
+            }
 
-                if (name.compareTo(className) == 0) {
-                    return defineClass(name, clazzBytes, 0, clazzBytes.length);
-                } else {
-                    return super.findClass(name);
+            synchronized Class<?> loaded(String className) {
+                return findLoadedClass(className);
+            }
+
+            synchronized Class<?> define(String className, byte[] clazzBytes) {
+                return defineClass(className, clazzBytes, 0, clazzBytes.length);
+            }
+
+            @Override
+            protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                // The generated classes implement the Action the builder sees, and use their target's types.
+                if (targetClassLoader == null || name.startsWith("java.") || name.startsWith(API_PACKAGE)) {
+                    return super.loadClass(name, resolve);
+                }
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    try {
+                        c = targetClassLoader.loadClass(name);
+                    } catch (ClassNotFoundException e) {
+                        return super.loadClass(name, resolve);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(c);
                 }
+                return c;
             }
         }
     }
@@ -46,7 +46,7 @@ public class ServiceDefinitionCreatorConfig {
     public final static String UPDATE = "update";
     public final static String DELETE = "delete";
 
-    private final static MediaType APPLICATION_JSON = new MediaType(APPLICATION, JSON);
+    private final static MediaType APPLICATION_JSON = MediaType.of(APPLICATION, JSON);
 
     private final HashMap<String, MethodMapper> methodMappers = new HashMap<String, MethodMapper>();
 
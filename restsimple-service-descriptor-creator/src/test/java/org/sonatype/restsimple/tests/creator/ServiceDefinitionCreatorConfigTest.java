@@ -120,27 +120,30 @@ public class ServiceDefinitionCreatorConfigTest {
         assertNotNull(serviceDefinition);
 
         AddressBookClient client = WebProxy.createProxy(AddressBookClient.class, URI.create(targetUrl));
-        Person person = client.createPerson(new Person("me", "jfarcand@apache.org", "jf", "arcand"));
+        try {
+            Person person = client.createPerson(new Person("me", "jfarcand@apache.org", "jf", "arcand"));
 
-        assertNotNull(person);
-        assertEquals(person.getFirstName(), "jf");
+            assertNotNull(person);
+            assertEquals(person.getFirstName(), "jf");
 
-        person = client.readPerson("me");
+            person = client.readPerson("me");
 
-        assertNotNull(person);
-        assertEquals(person.getFirstName(), "jf");
+            assertNotNull(person);
+            assertEquals(person.getFirstName(), "jf");
 
-        person = client.deletePerson("me");
+            person = client.deletePerson("me");
 
-        assertNotNull(person);
-        assertEquals(person.getFirstName(), "jf");
+            assertNotNull(person);
+            assertEquals(person.getFirstName(), "jf");
 
-        try {
-            person = client.readPerson("me");
-        } catch (WebException ex) {
-            assertEquals(ex.getStatusCode(), 404);
+            try {
+                person = client.readPerson("me");
+            } catch (WebException ex) {
+                assertEquals(ex.getStatusCode(), 404);
+            }
+        } finally {
+            WebProxy.close(client);
         }
-
     }
 }
 
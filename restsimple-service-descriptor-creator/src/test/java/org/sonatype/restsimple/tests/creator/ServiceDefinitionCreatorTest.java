@@ -23,20 +23,29 @@ import org.sonatype.restsimple.annotation.Post;
 import org.sonatype.restsimple.annotation.Produces;
 import org.sonatype.restsimple.annotation.Put;
 import org.sonatype.restsimple.api.ServiceDefinition;
+import org.sonatype.restsimple.api.ServiceHandler;
 import org.sonatype.restsimple.client.WebException;
 import org.sonatype.restsimple.client.WebProxy;
 import org.sonatype.restsimple.creator.MethodServiceDefinitionBuilder;
 import org.sonatype.restsimple.creator.ServiceDefinitionCreatorConfig;
+import org.sonatype.restsimple.spi.GeneratedClassCache;
 import org.sonatype.restsimple.tests.creator.model.Person;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNotSame;
 
 public class ServiceDefinitionCreatorTest {
 
@@ -103,27 +112,103 @@ public class ServiceDefinitionCreatorTest {
         assertNotNull(serviceDefinition);
 
         AddressBookClient client = WebProxy.createProxy(AddressBookClient.class, URI.create(targetUrl));
-        Person person = client.createPerson(new Person("me", "jfarcand@apache.org", "jf", "arcand"));
+        try {
+            Person person = client.createPerson(new Person("me", "jfarcand@apache.org", "jf", "arcand"));
 
-        assertNotNull(person);
-        assertEquals(person.getFirstName(), "jf");
+            assertNotNull(person);
+            assertEquals(person.getFirstName(), "jf");
 
-        person = client.readPerson("me");
+            person = client.readPerson("me");
 
-        assertNotNull(person);
-        assertEquals(person.getFirstName(), "jf");
+            assertNotNull(person);
+            assertEquals(person.getFirstName(), "jf");
 
-        person = client.deletePerson("me");
+            person = client.deletePerson("me");
 
-        assertNotNull(person);
-        assertEquals(person.getFirstName(), "jf");
+            assertNotNull(person);
+            assertEquals(person.getFirstName(), "jf");
 
-        try {
-            person = client.readPerson("me");
-        } catch (WebException ex) {
-            assertEquals(ex.getStatusCode(), 404);
+            try {
+                person = client.readPerson("me");
+            } catch (WebException ex) {
+                assertEquals(ex.getStatusCode(), 404);
+            }
+        } finally {
+            WebProxy.close(client);
+        }
+    }
+
+    @Test
+    public void testGeneratedActionsShareClassLoader() throws Exception {
+        ServiceDefinition other = new MethodServiceDefinitionBuilder().type(AddressBook.class).build();
+
+        Set<Class<?>> actionClasses = new HashSet<Class<?>>();
+        Set<ClassLoader> classLoaders = new HashSet<ClassLoader>();
+        for (ServiceDefinition sd : new ServiceDefinition[]{serviceDefinition, other}) {
+            for (ServiceHandler serviceHandler : sd.serviceHandlers()) {
+                actionClasses.add(serviceHandler.getAction().getClass());
+                classLoaders.add(serviceHandler.getAction().getClass().getClassLoader());
+            }
         }
 
+        // Every builder defines the Actions of a type once, in the ByteClassloader of the type's ClassLoader.
+        assertEquals(actionClasses.size(), serviceDefinition.serviceHandlers().size());
+        assertEquals(classLoaders.size(), 1);
     }
-}
 
+    @Test
+    public void testGeneratedActionsAreCached() throws Exception {
+        File directory = File.createTempFile("restsimple", "cache");
+        directory.delete();
+
+        // The Actions are only generated once per ClassLoader, so each build loads its own AddressBook.
+        GeneratedClassCache classCache = new GeneratedClassCache(directory);
+        ServiceDefinition first = new MethodServiceDefinitionBuilder().classCache(classCache).type(isolate(AddressBook.class)).build();
+        File[] files = directory.listFiles();
+        assertEquals(files.length, first.serviceHandlers().size());
+
+        ServiceDefinition second = new MethodServiceDefinitionBuilder().classCache(classCache).type(isolate(AddressBook.class)).build();
+        assertEquals(directory.listFiles().length, files.length);
+        assertEquals(second.serviceHandlers().size(), first.serviceHandlers().size());
+        for (ServiceHandler serviceHandler : second.serviceHandlers()) {
+            assertNotNull(serviceHandler.getAction());
+        }
+        assertNotSame(second.serviceHandlers().get(0).getAction().getClass().getClassLoader(),
+                first.serviceHandlers().get(0).getAction().getClass().getClassLoader());
+
+        for (File f : directory.listFiles()) {
+            f.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Load a class again, in a new ClassLoader.
+     */
+    private static Class<?> isolate(final Class<?> type) throws ClassNotFoundException {
+        return new ClassLoader(type.getClassLoader()) {
+            @Override
+            protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (!name.equals(type.getName())) {
+                    return super.loadClass(name, resolve);
+                }
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded != null) {
+                    return loaded;
+                }
+                try {
+                    InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class");
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                        bytes.write(buffer, 0, n);
+                    }
+                    in.close();
+                    return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }.loadClass(type.getName());
+    }
+}
@@ -38,10 +38,9 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import static com.google.inject.matcher.Matchers.annotatedWith;
-
 /**
  * Base class for deploying {@link org.sonatype.restsimple.api.ServiceDefinition} to a Sitebricks.
  */
@@ -50,11 +49,16 @@ public class RestSimpleSitebricksModule
 
     private final Logger logger = LoggerFactory.getLogger(RestSimpleSitebricksModule.class);
 
+    private final static Classes SERVICES = Classes.annotatedWith(Service.class);
+    private final static Classes RESOURCES = Classes.annotatedWith(At.class, EmbedAs.class, With.class, Show.class);
+
     private Injector parent;
     private Injector injector;
     private final List<Package> packages = new ArrayList<Package>();
     private final Set<Class<?>> classesSet = new HashSet<Class<?>>();
+    private Map<Classes, Set<Class<?>>> scanned;
     private final Set<ServiceDefinition> sdSet = new HashSet<ServiceDefinition>();
+    private int routeCacheSize;
 
     public RestSimpleSitebricksModule() {
         this(null, null);
@@ -113,6 +117,9 @@ public class RestSimpleSitebricksModule
         bind(NegotiationTokenGenerator.class).toInstance( token );
         
         ServiceHandlerMapper mapper = injector.getInstance(ServiceHandlerMapper.class);
+        if (routeCacheSize > 0) {
+            mapper.withRouteCache(routeCacheSize);
+        }
         bind( ServiceHandlerMapper.class ).toInstance( mapper );
 
         if (sdSet != null && sdSet.size() > 0) {
@@ -122,16 +129,8 @@ public class RestSimpleSitebricksModule
         }
 
         classesSet.clear();
-        for (Package pkg : packages) {
-
-            //look for any classes annotated with @At, @EmbedAs and @With
-            classesSet.addAll(Classes.matching(
-                            annotatedWith(At.class).or(
-                            annotatedWith(EmbedAs.class)).or(
-                            annotatedWith(With.class)).or(
-                            annotatedWith(Show.class))
-            ).in(pkg));
-        }
+        //look for any classes annotated with @At, @EmbedAs, @With and @Show
+        classesSet.addAll(scanned(RESOURCES));
 
         ServiceDefinition sd;
         for (Class<?> clazz: classesSet) {
@@ -145,12 +144,8 @@ public class RestSimpleSitebricksModule
      */
     @Override
     public List<ServiceDefinition> defineServices(Injector injector) {
-        for (Package pkg : packages) {
-            //look for any classes annotated with @Service
-            classesSet.addAll(Classes.matching(
-                    annotatedWith(Service.class)
-            ).in(pkg));
-        }
+        //look for any classes annotated with @Service
+        classesSet.addAll(scanned(SERVICES));
 
         List<ServiceDefinition> list = new ArrayList<ServiceDefinition>();
         // Now let's find the method that returns a ServiceDefinition
@@ -198,6 +193,7 @@ public class RestSimpleSitebricksModule
     @Override
     public RestSimpleSitebricksModule scan(Package packageName) {
         packages.add(packageName);
+        scanned = null;
         return this;
     }
 
@@ -210,9 +206,30 @@ public class RestSimpleSitebricksModule
         return this;
     }
 
+    /**
+     * Enable the {@link ServiceHandlerMapper} route cache, which remembers up to <tt>maxSize</tt> resolved paths.
+     *
+     * @param maxSize the maximum number of cached lookups.
+     * @return this
+     */
+    public RestSimpleSitebricksModule withRouteCache(int maxSize) {
+        routeCacheSize = maxSize;
+        return this;
+    }
+
     @Override
     public RestSimpleSitebricksModule addInstance( ServiceDefinition instance ) {
         sdSet.add( instance );
         return this;
     }
+
+    /**
+     * Scan the packages once for both the {@link #SERVICES} and the {@link #RESOURCES}.
+     */
+    private Set<Class<?>> scanned(Classes classes) {
+        if (scanned == null) {
+            scanned = Classes.in(packages, SERVICES, RESOURCES);
+        }
+        return scanned.get(classes);
+    }
 }
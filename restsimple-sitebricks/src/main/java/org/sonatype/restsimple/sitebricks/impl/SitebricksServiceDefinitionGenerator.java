@@ -37,18 +37,25 @@ import org.sonatype.restsimple.api.ActionException;
 import org.sonatype.restsimple.api.MediaType;
 import org.sonatype.restsimple.api.ServiceDefinition;
 import org.sonatype.restsimple.api.ServiceHandler;
+import org.sonatype.restsimple.spi.LazyMap;
+import org.sonatype.restsimple.spi.MediaRange;
+import org.sonatype.restsimple.spi.MediaTypeMatcher;
 import org.sonatype.restsimple.spi.NegotiationTokenGenerator;
 import org.sonatype.restsimple.spi.ResourceModuleConfig;
+import org.sonatype.restsimple.spi.RouteMatch;
 import org.sonatype.restsimple.spi.ServiceDefinitionGenerator;
 import org.sonatype.restsimple.spi.ServiceHandlerMapper;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -74,9 +81,7 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
     @Override
     public void generate(final ServiceDefinition serviceDefinition, ServiceHandlerMapper mapper) {
 
-        for(ServiceHandler sh : serviceDefinition.serviceHandlers()) {
-            mapper.addServiceHandler( serviceDefinition.path(), sh);
-        }
+        mapper.addServiceDefinition(serviceDefinition);
 
         try {
             final String path = serviceDefinition.path().contains("/{") ? convert(serviceDefinition.path()) : serviceDefinition.path();
@@ -167,28 +172,10 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
 
     }
 
-    private final static Map<String, String> deriveNamed(Map<Integer, String> namedParams, String[] pathParam) {
-        if (namedParams.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        HashMap<String, String> map = new HashMap<String,String>();
-        for (int i=0; i < pathParam.length; i++) {
-            boolean added = false;
-            for (Map.Entry<Integer, String> e : namedParams.entrySet()) {
-                if (i == e.getKey() && e.getValue().startsWith(":")) {
-                    added = true;
-                    map.put(e.getValue().substring(1), pathParam[i]);
-                }
-            }
-
-            if (!added) {
-                map.put(pathParam[i], "");
-            }
-        }
-        return map;
-    }
-
+    /**
+     * The base of the Sitebricks {@link Action} bound to each path. One instance serves every request to its path, so
+     * the request's state is only kept in local variables.
+     */
     public abstract static class ActionBase implements Action {
         @Inject
         protected ServiceHandlerMapper mapper;
@@ -196,145 +183,159 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
         @Inject
         protected Provider<Request> requestProvider;
 
+        @Inject
+        protected Provider<HttpServletRequest> servletRequestProvider;
+
         @Inject
         protected NegotiationTokenGenerator tokenGenerator;
 
-        protected HttpServletRequest hreq;
+        private final String methodName;
+
+        // The literal segments of the bound path, exposed as path parameters with an empty value. They aren't counted
+        // by the positional accessors of the ActionContext, which only index the route's template variables.
+        private final String[] literalSegments;
 
-        protected final Map<Integer,String> namedMapping = new HashMap<Integer,String>();
+        public ActionBase(String path, String methodName) {
+            this.methodName = methodName;
 
-        public ActionBase(String path) {
             if (path.startsWith("/")) {
                 path = path.substring(1);
             }
 
-            String[] token = path.split("/");
-            for(int i = 0; i < token.length; i++) {
-                namedMapping.put(i, token[i]);
+            List<String> literals = new ArrayList<String>();
+            for (String token : path.split("/")) {
+                if (!token.startsWith(":") && !literals.contains(token)) {
+                    literals.add(token);
+                }
             }
+            literalSegments = literals.toArray(new String[literals.size()]);
         }
 
         @Override
         public boolean shouldCall(HttpServletRequest request) {
-            hreq = request;
             return true;
         }
 
-        abstract public Object call(Object page, Map<String, String> map);
-
-    }
-
-    public static class PutAction extends ActionBase {
-
-        public PutAction( String path ) {
-            super( path );
-        }
-
+        @Override
         public Object call(Object page, Map<String, String> map) {
             Request request = requestProvider.get();
-            ServiceHandler serviceHandler = mapper.map("put", hreq.getServletPath());
+            HttpServletRequest servletRequest = servletRequestProvider.get();
+            String servletPath = servletRequest.getServletPath();
+            RouteMatch route = mapper.match(methodName, convertToJaxRs(servletPath));
 
-            if (serviceHandler == null) {
+            if (route == null) {
                 return Reply.with("Method not allowed or ServiceDefinitionMapper not correctly binded").status(405);
             }
 
-            Object body = readBody(serviceHandler, request);
-            String p = hreq.getServletPath();
-            if (p.startsWith("/")) {
-                p = p.substring(1);
+            String accept = accept(servletRequest);
+            Object body = null;
+            InputStream bodyStream = null;
+            if (readsBody()) {
+                if (route.serviceHandler().isStreaming()) {
+                    try {
+                        bodyStream = servletRequest.getInputStream();
+                    } catch (IOException e) {
+                        logger.debug("call", e);
+                        return Reply.with(e).error();
+                    }
+                } else {
+                    body = readBody(route.serviceHandler(), request);
+                }
             }
-            Map<String,String> pathParams = deriveNamed(namedMapping, p.split("/"));
-            Object response = createResponse(tokenGenerator, "put", hreq.getServletPath(), pathParams, body, request, mapper);
+            Object response = createResponse(tokenGenerator, methodName, servletPath, accept, route, pathParams(route), body, bodyStream, request);
+            return reply(accept, route, response);
+        }
 
+        protected Map<String, String> pathParams(RouteMatch route) {
+            if (literalSegments.length == 0) {
+                return route.pathParams();
+            }
+
+            Map<String, String> params = route.pathParams();
+            Map<String, String> map = new LinkedHashMap<String, String>((literalSegments.length + params.size()) * 2);
+            for (String literal : literalSegments) {
+                map.put(literal, "");
+            }
+            map.putAll(params);
+            return map;
+        }
+
+        /**
+         * Return true if the request's body is passed to the action.
+         * @return true if the request's body is passed to the action.
+         */
+        protected abstract boolean readsBody();
+
+        /**
+         * Turn the action's response into the {@link Reply} sent back to the client.
+         * @param accept the request's <tt>Accept</tt> header, or null
+         * @param route the matched route
+         * @param response the action's response, or a {@link Reply}
+         * @return the {@link Reply} sent back to the client.
+         */
+        protected Object reply(String accept, RouteMatch route, Object response) {
             if (response == null) {
                 return Reply.NO_REPLY.noContent();
             } else if (Reply.class.isAssignableFrom(response.getClass())) {
                 return Reply.class.cast(response);
             }
-
-            return serializeResponse(request, response).status(201);
+            return serializeResponse(accept, route, response);
         }
     }
 
-    public static class PostAction extends ActionBase {
+    public static class PutAction extends ActionBase {
 
-        public PostAction( String path ) {
-            super( path );
+        public PutAction( String path ) {
+            super( path, "put" );
         }
 
         @Override
-        public Object call(Object page, Map<String, String> map) {
-            Request request = requestProvider.get();
-            ServiceHandler serviceHandler = mapper.map("post", hreq.getServletPath());
+        protected boolean readsBody() {
+            return true;
+        }
 
-            if (serviceHandler == null) {
-                return Reply.with("Method not allowed or ServiceDefinitionMapper not correctly binded").status(405);
+        @Override
+        protected Object reply(String accept, RouteMatch route, Object response) {
+            if (response == null || Reply.class.isAssignableFrom(response.getClass())) {
+                return super.reply(accept, route, response);
             }
+            return serializeResponse(accept, route, response).status(201);
+        }
+    }
 
-            Object body = readBody(serviceHandler, request);
-            String p = hreq.getServletPath();
-            if (p.startsWith("/")) {
-                p = p.substring(1);
-            }
-            Map<String,String> pathParams = deriveNamed(namedMapping, p.split("/"));
-            Object response = createResponse(tokenGenerator, "post", hreq.getServletPath(), pathParams, body, request, mapper);
+    public static class PostAction extends ActionBase {
 
-            if (Reply.class.isAssignableFrom(response.getClass())) {
-                return Reply.class.cast(response);
-            }
-            return serializeResponse(request, response);
+        public PostAction( String path ) {
+            super( path, "post" );
+        }
+
+        @Override
+        protected boolean readsBody() {
+            return true;
         }
     }
 
     public static class GetAction extends ActionBase {
 
         public GetAction( String path ) {
-            super( path );
+            super( path, "get" );
         }
 
         @Override
-        public Object call(Object page, Map<String, String> map) {
-
-            Request request = requestProvider.get();
-            String p = hreq.getServletPath();
-            if (p.startsWith("/")) {
-                p = p.substring(1);
-            }
-            Map<String,String> pathParams = deriveNamed(namedMapping, p.split("/"));
-            Object response = createResponse(tokenGenerator, "get", hreq.getServletPath(), pathParams, null, request, mapper);
-
-            if (response == null) {
-                return Reply.NO_REPLY.noContent();
-            } else if (Reply.class.isAssignableFrom(response.getClass())) {
-                return Reply.class.cast(response);
-            }
-
-            return serializeResponse(request, response);
+        protected boolean readsBody() {
+            return false;
         }
     }
 
     public static class DeleteAction extends ActionBase {
 
         public DeleteAction( String path ) {
-            super( path );
+            super( path, "delete" );
         }
 
         @Override
-        public Object call(Object page, Map<String, String> map) {
-            Request request = requestProvider.get();
-            String p = hreq.getServletPath();
-            if (p.startsWith("/")) {
-                p = p.substring(1);
-            }
-            Map<String,String> pathParams = deriveNamed(namedMapping, p.split("/"));
-            Object response = createResponse(tokenGenerator, "delete", hreq.getServletPath(), pathParams, null, request, mapper);
-            if (response == null) {
-                return Reply.NO_REPLY.noContent();
-            } else if (Reply.class.isAssignableFrom(response.getClass())) {
-                return Reply.class.cast(response);
-            }
-
-            return serializeResponse(request, response);
+        protected boolean readsBody() {
+            return false;
         }
     }
 
@@ -353,31 +354,37 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
         }
     }
 
-    private static Reply<?> serializeResponse(Request request, Object response) {
-        Collection<String> c = request.headers().get("Accept");
-
-        String accept = c.size() > 0 ? c.iterator().next() : null;
-
-        boolean wildCard = false;
-        if (accept.equalsIgnoreCase("*/*")) {
-            wildCard = true;
-        }
-
+    private static Reply<?> serializeResponse(String accept, RouteMatch route, Object response) {
         if (response == null) {
             return Reply.with("").noContent();
-        } else if (accept != null) {
-            Map<String, String> m = new HashMap<String, String>();
-            // Default to JSON
-            if (wildCard) {
-                m.put("Content-Type", "text/json");
-                return Reply.with(response).headers(m).as(Json.class);
-            } else if (accept.endsWith("json")) {
-                m.put("Content-Type", "application/json");
-                return Reply.with(response).headers(m).as(Json.class);
-            } else if (accept.endsWith("xml")) {
-                m.put("Content-Type", "application/xml");
-                return Reply.with(response).headers(m).as(Xml.class);
+        }
+
+        String type;
+        String subType;
+        MediaType selected = route.producedMediaTypes().select(accept);
+        if (selected != null) {
+            type = selected.type();
+            subType = selected.subType();
+        } else {
+            MediaRange preferred = MediaTypeMatcher.preferred(accept);
+            if (preferred == null) {
+                return Reply.with(response.toString()).as(Text.class);
             }
+            type = preferred.type();
+            subType = preferred.subType();
+        }
+
+        Map<String, String> m = new HashMap<String, String>();
+        // Default to JSON
+        if (type.equals("*")) {
+            m.put("Content-Type", "text/json");
+            return Reply.with(response).headers(m).as(Json.class);
+        } else if (subType.endsWith("json")) {
+            m.put("Content-Type", "application/json");
+            return Reply.with(response).headers(m).as(Json.class);
+        } else if (subType.endsWith("xml")) {
+            m.put("Content-Type", "application/xml");
+            return Reply.with(response).headers(m).as(Xml.class);
         }
         return Reply.with(response.toString()).as(Text.class);
     }
@@ -385,21 +392,18 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
     private static <T> Object createResponse(NegotiationTokenGenerator tokenGenerator,
                                              String methodName,
                                              String servletPath,
+                                             String accept,
+                                             RouteMatch route,
                                              Map<String,String> pathParams,
                                              T body,
-                                             Request request,
-                                             ServiceHandlerMapper mapper) {
-
-        ServiceHandler serviceHandler = mapper.map(methodName, convertToJaxRs(servletPath));
+                                             InputStream bodyStream,
+                                             Request request) {
 
-        if (serviceHandler == null) {
-            return Reply.with("Method not allowed or ServiceDefinitionMapper not correctly binded").status(405);
-        }
+        ServiceHandler serviceHandler = route.serviceHandler();
 
-        if (!contentNegotiate(request.headers(), serviceHandler.mediaToProduce())) {
+        if (!route.producedMediaTypes().accepts(accept)) {
             Map<String, String> m = new HashMap<String, String>();
-            m.put(tokenGenerator.challengedHeaderName(),
-                    tokenGenerator.generateNegotiationHeader(servletPath, serviceHandler.mediaToProduce()));
+            m.put(tokenGenerator.challengedHeaderName(), route.negotiationHeader(tokenGenerator, servletPath));
 
             return Reply.with("Not Acceptable").headers(m).status(406);
         }
@@ -408,8 +412,12 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
             return Reply.with("Method not allowed").status(405);
         }
 
-        if (body == null) {
-            body = (T) "";
+        // A streaming action reads the request's stream itself.
+        if (bodyStream == null) {
+            if (body == null) {
+                body = (T) "";
+            }
+            bodyStream = new ByteArrayInputStream(body.toString().getBytes());
         }
 
         Object response = null;
@@ -419,8 +427,9 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
                     mapHeaders(request.headers()),
                     mapFormParams(request.params()),
                     mapMatrixParams(request.matrix()),
-                    new ByteArrayInputStream(body.toString().getBytes()),
+                    bodyStream,
                     pathParams,
+                    route.pathParamNames(),
                     body);
 
             response = action.action(actionContext);
@@ -433,51 +442,47 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
         return response;
     }
 
-    private static boolean contentNegotiate(Multimap<String, String> headers, List<MediaType> mediaTypes) {
-
-        if (mediaTypes.size() == 0) {
-            return true;
+    private static String accept(HttpServletRequest request) {
+        Enumeration<?> values = request.getHeaders("Accept");
+        if (values == null || !values.hasMoreElements()) {
+            return null;
         }
 
-        //TODO: Wildcard support
-        for (Map.Entry<String, String> e : headers.entries()) {
-            if (e.getKey().equalsIgnoreCase("Accept")) {
-                if (e.getValue().trim().equals("*/*")) {
-                    return true;
-                }
+        String accept = (String) values.nextElement();
+        while (values.hasMoreElements()) {
+            accept = accept + "," + values.nextElement();
+        }
+        return accept;
+    }
 
-                for (MediaType mediaType : mediaTypes) {
-                    if (mediaType.toMediaType().equalsIgnoreCase(e.getValue())) {
-                        return true;
-                    }
-                }
+    private static Map<String, Collection<String>> mapMatrixParams(final Multimap<String, String> matrixParams) {
+        return new LazyMap<String, Collection<String>>() {
+            @Override
+            protected Map<String, Collection<String>> build() {
+                return lastValues(matrixParams);
             }
-        }
-        return false;
+        };
     }
 
-    private static Map<String, Collection<String>> mapMatrixParams(Multimap<String, String> matrixParams) {
-        Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
-        if (matrixParams != null) {
-            for (Map.Entry<String, String> e : matrixParams.entries()) {
-                ArrayList<String> list = new ArrayList<String>();
-                list.add(e.getValue());
-                map.put(e.getKey(), list);
+    private static Map<String, Collection<String>> mapFormParams(final Multimap<String, String> formParams) {
+        return new LazyMap<String, Collection<String>>() {
+            @Override
+            protected Map<String, Collection<String>> build() {
+                return lastValues(formParams);
             }
-        }
-        return Collections.unmodifiableMap(map);
+        };
     }
 
-    private static Map<String, Collection<String>> mapFormParams(Multimap<String, String> formParams) {
+    private static Map<String, Collection<String>> lastValues(Multimap<String, String> multimap) {
         Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
-        if (formParams != null) {
-            for (Map.Entry<String, String> e : formParams.entries()) {
+        if (multimap != null) {
+            for (Map.Entry<String, String> e : multimap.entries()) {
                 ArrayList<String> list = new ArrayList<String>();
                 list.add(e.getValue());
                 map.put(e.getKey(), list);
             }
         }
-        return Collections.unmodifiableMap(map);
+        return map;
     }
 
     private static ServiceDefinition.METHOD mapMethod(String method) {
@@ -496,18 +501,23 @@ public class SitebricksServiceDefinitionGenerator implements ServiceDefinitionGe
         }
     }
 
-    private static Map<String, Collection<String>> mapHeaders(Multimap<String, String> gMap) {
-        Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
-        for (Map.Entry<String, String> e : gMap.entries()) {
-            if (map.get(e.getKey()) != null) {
-                map.get(e.getKey()).add(e.getValue());
-            } else {
-                ArrayList<String> list = new ArrayList<String>();
-                list.add(e.getValue());
-                map.put(e.getKey(), list);
+    private static Map<String, Collection<String>> mapHeaders(final Multimap<String, String> gMap) {
+        return new LazyMap<String, Collection<String>>() {
+            @Override
+            protected Map<String, Collection<String>> build() {
+                Map<String, Collection<String>> map = new HashMap<String, Collection<String>>();
+                for (Map.Entry<String, String> e : gMap.entries()) {
+                    if (map.get(e.getKey()) != null) {
+                        map.get(e.getKey()).add(e.getValue());
+                    } else {
+                        ArrayList<String> list = new ArrayList<String>();
+                        list.add(e.getValue());
+                        map.put(e.getKey(), list);
+                    }
+                }
+                return map;
             }
-        }
-        return Collections.unmodifiableMap(map);
+        };
     }
 
     private static String convertToJaxRs(String path) {
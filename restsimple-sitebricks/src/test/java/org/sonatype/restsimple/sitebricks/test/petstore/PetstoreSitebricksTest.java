@@ -96,6 +96,44 @@ public class PetstoreSitebricksTest {
         c.close();
     }
 
+    @Test(timeOut = 20000)
+    public void testPostWithMediaRanges() throws Throwable {
+        logger.info("running test: testPostWithMediaRanges");
+        AsyncHttpClient c = new AsyncHttpClient();
+
+        Response r = c.preparePost(targetUrl + "/create/myPets").setBody("{\"name\":\"pouetpouet\"}")
+                .addHeader("Accept", "text/html;level=1;q=0.5, " + acceptHeader + ";q=0.9").execute().get();
+
+        assertNotNull(r);
+        assertEquals(r.getStatusCode(), 200);
+        assertEquals(r.getResponseBody(), "{\"name\":\"pouetpouet\"}");
+
+        r = c.preparePost(targetUrl + "/create/myPets").setBody("{\"name\":\"pouetpouet\"}")
+                .addHeader("Accept", "application/*").execute().get();
+
+        assertNotNull(r);
+        assertEquals(r.getStatusCode(), 200);
+        assertEquals(r.getResponseBody(), "{\"name\":\"pouetpouet\"}");
+
+        c.close();
+    }
+
+    @Test(timeOut = 20000)
+    public void testPostWithRejectedMediaType() throws Throwable {
+        logger.info("running test: testPostWithRejectedMediaType");
+        AsyncHttpClient c = new AsyncHttpClient();
+
+        // The most specific media range wins, so */* doesn't make the rejected media type acceptable.
+        Response r = c.preparePost(targetUrl + "/create/myPets").setBody("{\"name\":\"pouetpouet\"}")
+                .addHeader("Accept", acceptHeader + ";q=0, */*;q=0.1").execute().get();
+
+        assertNotNull(r);
+        assertEquals(r.getStatusCode(), 406);
+        assertNotNull(r.getHeader("Alternates"));
+
+        c.close();
+    }
+
     @Test(timeOut = 20000)
     public void testExtensiont() throws Throwable {
         logger.info("running test: testPost");